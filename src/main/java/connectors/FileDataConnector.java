@@ -10,6 +10,7 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -17,6 +18,8 @@ import java.util.Scanner;
 import java.util.TreeMap;
 import java.util.stream.Collectors;
 
+import matcher.LogisticRegressionClassifier;
+import models.matcher.DataFrame.FeatureColumn;
 import models.matcher.Schema;
 
 import org.json.simple.JSONArray;
@@ -133,6 +136,71 @@ public class FileDataConnector {
 		return trainingSet.toArray(new double[][] {});
 	}
 
+	/**
+	 * Reads the coefficients of a model exported in CSV [Coefficient,Value]
+	 * (see RConnector#exportCoefficients). NA values are read as 0.
+	 * 
+	 * @param path
+	 * @return coefficient name --> value, in order of file
+	 */
+	public Map<String, Double> readModelCoefficients(String path) {
+		Scanner inputStream = null;
+		File f = new File(path);
+		Map<String, Double> coefficients = new LinkedHashMap<>();
+
+		try {
+			inputStream = new Scanner(f);
+			// skip header
+			if (inputStream.hasNextLine())
+				inputStream.nextLine();
+			// read rows
+			while (inputStream.hasNextLine()) {
+				String line = inputStream.nextLine().trim();
+				if (line.isEmpty())
+					continue;
+				int separator = line.lastIndexOf(',');
+				String value = line.substring(separator + 1);
+				coefficients.put(line.substring(0, separator),
+						value.equals("NA") ? 0.0 : Double.valueOf(value));
+			}
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		} finally {
+			if (inputStream != null)
+				inputStream.close();
+		}
+
+		return coefficients;
+	}
+
+	/**
+	 * Prints the coefficients of the model in CSV [Coefficient,Value], the
+	 * format read by {@link #readModelCoefficients(String)}
+	 * 
+	 * @param path
+	 * @param model
+	 */
+	public void printModelCoefficients(String path, LogisticRegressionClassifier model) {
+		PrintWriter writer = null;
+
+		try {
+			writer = new PrintWriter(new File(path));
+			writer.print("Coefficient,Value");
+			writer.println();
+			writer.print(LogisticRegressionClassifier.INTERCEPT + "," + model.getIntercept());
+			double[] coefficients = model.getCoefficients();
+			for (FeatureColumn feature : FeatureColumn.FEATURES) {
+				writer.println();
+				writer.print(feature.name() + "," + coefficients[feature.ordinal()]);
+			}
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		} finally {
+			if (writer != null)
+				writer.close();
+		}
+	}
+
 	public Properties readConfig() {
 		Properties prop = new Properties();
 		InputStream input = null;
@@ -1,18 +1,23 @@
 package connectors;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.bson.Document;
 
 import com.mongodb.WriteConcern;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Indexes;
 
 import model.AbstractProductPage;
 import model.CatalogueProductPage;
 import model.SourceProductPage;
+import utils.UrlUtils;
 
 /**
  * Common methods for DAO
@@ -31,6 +36,16 @@ public class MongoDbUtils {
 	public static final String URL = "url";
 	public static final String CATEGORY = "category";
 	public static final String ATTRIBUTES = "attributes";
+	/** websites of the pages in linkage, derived from {@link #LINKAGE} */
+	public static final String LINKED_WEBSITES = "linkedWebsites";
+	/** names of the attributes, derived from {@link #SPECS} */
+	public static final String SPEC_KEYS = "specKeys";
+	/** random key in [0, 1) of the page, used to sample pages with indexed reads */
+	public static final String RANDOM = "rnd";
+	/** true if {@link #SPECS} is not empty */
+	public static final String HAS_SPECS = "hasSpecs";
+	/** true if {@link #LINKAGE} is not empty */
+	public static final String HAS_LINKAGE = "hasLinkage";
 
 	public static final String SCHEMAS_COLLECTION = "Schemas";
 	public static final String PRODUCTS_COLLECTION_NAME = "Products";
@@ -42,6 +57,24 @@ public class MongoDbUtils {
 		collection.insertMany(docs);
 	}
 
+	/**
+	 * Creates the indexes used by the DAOs on the products' pages (if they do not
+	 * exist yet)
+	 * 
+	 * @param collection
+	 */
+	public static void createProductsIndexes(MongoCollection<Document> collection) {
+		collection.createIndex(Indexes.ascending(CATEGORY));
+		collection.createIndex(Indexes.ascending(WEBSITE));
+		collection.createIndex(Indexes.ascending(WEBSITE, CATEGORY));
+		collection.createIndex(Indexes.hashed(URL));
+		collection.createIndex(Indexes.ascending(CATEGORY, LINKED_WEBSITES));
+		collection.createIndex(Indexes.ascending(CATEGORY, SPEC_KEYS));
+		collection.createIndex(Indexes.ascending(URL, SPEC_KEYS));
+		collection.createIndex(Indexes.ascending(HAS_SPECS, HAS_LINKAGE, CATEGORY, RANDOM));
+		collection.createIndex(Indexes.ascending(HAS_SPECS, HAS_LINKAGE, RANDOM));
+	}
+
 	public static CatalogueProductPage convertDocumentToCataloguePage(Document doc) {
 		CatalogueProductPage cpp = new CatalogueProductPage(doc.getInteger(ID), doc.getString(CATEGORY));
 		addSpecsToDocument(doc, cpp);
@@ -66,12 +99,29 @@ public class MongoDbUtils {
 		page.append(CATEGORY, sourceProductPage.getSource().getCategory());
 		page.append(URL, sourceProductPage.getUrl());
 		page.append(SPECS, sourceProductPage.getSpecifications());
+		page.append(SPEC_KEYS, new ArrayList<>(sourceProductPage.getSpecifications().keySet()));
 		page.append(LINKAGE, sourceProductPage.getLinkage());
+		page.append(LINKED_WEBSITES, getLinkedWebsites(sourceProductPage.getLinkage()));
 		page.append(IDS, sourceProductPage.getIds());
 		page.append(WEBSITE, sourceProductPage.getSource().getWebsite());
+		page.append(RANDOM, ThreadLocalRandom.current().nextDouble());
+		page.append(HAS_SPECS, !sourceProductPage.getSpecifications().isEmpty());
+		page.append(HAS_LINKAGE, !sourceProductPage.getLinkage().isEmpty());
 		return page;
 	}
 
+	/**
+	 * @param linkage
+	 *            urls of the pages in linkage
+	 * @return distinct websites of the urls, in order of first occurrence
+	 */
+	public static List<String> getLinkedWebsites(List<String> linkage) {
+		LinkedHashSet<String> websites = new LinkedHashSet<>();
+		for (String url : linkage)
+			websites.add(UrlUtils.getDomain(url));
+		return new ArrayList<>(websites);
+	}
+
 	@SuppressWarnings("unchecked")
 	public static SourceProductPage convertDocumentToProductPage(Document doc) {
 		SourceProductPage page = docToProductPageHelper(doc);
@@ -4,7 +4,10 @@ import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import matcher.Classifier;
+import matcher.LogisticRegressionClassifier;
 import models.matcher.DataFrame;
+import models.matcher.DataFrame.FeatureColumn;
 
 import org.rosuda.REngine.REXP;
 import org.rosuda.REngine.REXPDouble;
@@ -14,7 +17,7 @@ import org.rosuda.REngine.REngineException;
 import org.rosuda.REngine.REngineStdOutput;
 import org.rosuda.REngine.RList;
 
-public class RConnector {
+public class RConnector implements Classifier {
 
 	private REngine eng = null;
 	private String modelName;
@@ -57,6 +60,7 @@ public class RConnector {
 	public void stop() {
 		if (this.eng != null)
 			this.eng.close();
+		this.eng = null;
 	}
 
 	public void loadModel() {
@@ -94,30 +98,51 @@ public class RConnector {
 	}
 
 	/**
-	 * Return probability of match given features between 2 attributes
+	 * Writes the coefficients of the trained (or loaded) model to a CSV file
+	 * [Coefficient,Value], to be used by {@link LogisticRegressionClassifier}.
+	 * <p>
+	 * Match is a factor with levels c("true","false"), so glm models the
+	 * log-odds of "false": coefficients are negated to be those of "true". NA
+	 * coefficients (features dropped by glm) are written as 0.
+	 * 
+	 * @param coefficientsPath
+	 */
+	public void exportCoefficients(String coefficientsPath) {
+		try {
+			this.eng.parseAndEval("coefficients <- coef(" + this.modelName + "$finalModel)");
+			this.eng.parseAndEval("coefficients[is.na(coefficients)] <- 0");
+			this.eng.parseAndEval("writeLines(c(\"Coefficient,Value\", paste(names(coefficients),"
+					+ " sprintf(\"%.17g\", -coefficients), sep=\",\")), \"" + coefficientsPath + "\")");
+		} catch (REngineException | REXPMismatchException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Return probability of match given features between 2 attributes.
+	 * <p>
+	 * The R engine is shared, so categories aligned in parallel are classified
+	 * one at a time
 	 * 
 	 * @param df
 	 * @return
 	 */
-	public double[] classify(DataFrame df) {
+	@Override
+	public synchronized double[] classify(DataFrame df) {
 		double[] predictions = null;
 
 		try {
-			// build dataframe columns
-			String[] colNames = { "JSDs", "JSDc", "JCs", "JCc", "MIs", "MIc" };
-			double[] colJSDs = df.getJSDs().stream().mapToDouble(Double::doubleValue).toArray();
-			double[] colJSDc = df.getJSDc().stream().mapToDouble(Double::doubleValue).toArray();
-			double[] colJCs = df.getJCs().stream().mapToDouble(Double::doubleValue).toArray();
-			double[] colJCc = df.getJCc().stream().mapToDouble(Double::doubleValue).toArray();
-			double[] colMIs = df.getMIs().stream().mapToDouble(Double::doubleValue).toArray();
-			double[] colMIc = df.getMIc().stream().mapToDouble(Double::doubleValue).toArray();
+			// build dataframe columns (arrays are shared with the frame, no copy)
+			FeatureColumn[] features = FeatureColumn.FEATURES;
+			String[] colNames = new String[features.length];
+			REXP[] columns = new REXP[features.length];
+			for (int i = 0; i < features.length; i++) {
+				colNames[i] = features[i].name();
+				columns[i] = new REXPDouble(df.getColumn(features[i]));
+			}
 
 			// create dataframe
-			REXP mydf = REXP
-					.createDataFrame(new RList(
-							new REXP[] { new REXPDouble(colJSDs), new REXPDouble(colJSDc), new REXPDouble(colJCs),
-									new REXPDouble(colJCc), new REXPDouble(colMIs), new REXPDouble(colMIc) },
-							colNames));
+			REXP mydf = REXP.createDataFrame(new RList(columns, colNames));
 			// pass dataframe to REngine
 			this.eng.assign("dataFrame", mydf);
 			// predict matches
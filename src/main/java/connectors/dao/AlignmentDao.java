@@ -1,5 +1,6 @@
 package connectors.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -72,13 +73,33 @@ public interface AlignmentDao {
 	public Map<SourceProductPage, List<SourceProductPage>> getProdsInRL(List<String> websites, String category);
 
 	/**
-	 * Return product pages that match given filters.If a parameter is not provided
-	 * (empty string), that filter won't be applied
+	 * Fetches the pages of a source with at least 1 attribute (their linkage may
+	 * be empty), used to keep the catalog in memory (see
+	 * {@link matcher.IncrementalCatalog})
+	 * 
+	 * @param source
+	 * @return
+	 */
+	public List<SourceProductPage> getPagesOfSource(Source source);
+
+	/**
+	 * Linkage of the pages of a category, used to compute the order of the
+	 * sources. Only pages with at least 1 attribute and 1 page in linkage are
+	 * considered (as in {@link #getProdsInRL(List, String)}).
+	 * 
+	 * @param category
+	 * @return website --> url of each page --> urls of the pages in its linkage
+	 */
+	public Map<String, Map<String, List<String>>> getSourcesLinkage(String category);
+
+	/**
+	 * Return product pages that match given filters
 	 * 
 	 * @param category
 	 *            category of product page
 	 * @param website2
 	 *            the PP should be linked with at least a page of that website
+	 *            (domain of the url, see {@link utils.UrlUtils#getDomain})
 	 * @param attribute1
 	 *            the PP should provide that attribute
 	 * @return
@@ -87,7 +108,8 @@ public interface AlignmentDao {
 			String website2, String attribute1);
 
 	/**
-	 * Find all pages of source website2 linked by pages in cList1, and having
+	 * Find all pages of source website2 (domain of their url, see
+	 * {@link utils.UrlUtils#getDomain}) linked by pages in cList1, and having
 	 * attribute2.
 	 * <p>
 	 * For each of them (say linked page), build an 'inverse' map entry [spec of
@@ -115,4 +137,14 @@ public interface AlignmentDao {
 	 * @return the product page with that link, null if it does not exist
 	 */
 	public SourceProductPage getPageFromUrlIfExistsInDataset(String url);
+
+	/**
+	 * Bulk version of {@link #getPageFromUrlIfExistsInDataset(String)}, for many
+	 * URLs at once
+	 * 
+	 * @param urls
+	 * @return URL --> product page with that URL, only for the URLs of pages that
+	 *         exist in the dataset
+	 */
+	public Map<String, SourceProductPage> getPagesFromUrls(Collection<String> urls);
 }
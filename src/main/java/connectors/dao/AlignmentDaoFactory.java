@@ -0,0 +1,37 @@
+package connectors.dao;
+
+import connectors.MongoDbConnectionFactory;
+import models.generator.Configurations;
+
+/**
+ * Factory for {@link AlignmentDao}s
+ *
+ */
+public class AlignmentDaoFactory {
+
+	/**
+	 * <ul>
+	 * <li>MONGO -> joins on the linkage computed by the client
+	 * <li>FILE -> pages in local files, without MongoDB (see
+	 * {@link FileAlignmentDao})
+	 * </ul>
+	 */
+	public enum AlignmentDaoType {
+		MONGO, FILE
+	}
+
+	public static AlignmentDao buildAlignmentDao(Configurations conf) {
+		switch (conf.getDaoType()) {
+		case MONGO:
+			return new MongoAlignmentDao(getMongoFactory(conf));
+		case FILE:
+			return FileAlignmentDao.getInstance(conf.getStorePath());
+		default:
+			throw new IllegalArgumentException("Unknown alignment DAO type");
+		}
+	}
+
+	private static MongoDbConnectionFactory getMongoFactory(Configurations conf) {
+		return MongoDbConnectionFactory.getMongoInstance(conf.getMongoURI(), conf.getDatabaseName());
+	}
+}
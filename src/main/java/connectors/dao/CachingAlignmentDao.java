@@ -0,0 +1,192 @@
+package connectors.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import model.AbstractProductPage.Specifications;
+import model.Source;
+import model.SourceProductPage;
+
+/**
+ * {@link AlignmentDao} remembering the results of the queries of the training
+ * set generation, which are repeated many times with the same parameters (e.g.
+ * the same pages in linkage for positive and negative examples, or for every
+ * website1).
+ * <p>
+ * Results of {@link #getPagesLinkedWithSource2filtered} and
+ * {@link #getPairsOfPagesInLinkage} are kept in size-bounded LRU caches keyed
+ * on the parameters of the query (the pages of cList1 by their url). Pages
+ * found by url are kept in a shared LRU cache, also filled by the pages of
+ * {@link #getPagesLinkedWithSource2filtered} (they are in linkage and have
+ * attributes, so they are the pages {@link #getPageFromUrlIfExistsInDataset}
+ * would return); urls not in the dataset are remembered too.
+ * <p>
+ * Other methods are not cached. Cached results are copied, so they can be
+ * modified by the caller. Caches are thread safe, but two threads missing the
+ * same key at the same time both query the DAO.
+ */
+public class CachingAlignmentDao implements AlignmentDao {
+
+	private AlignmentDao dao;
+	private Map<List<Object>, List<SourceProductPage>> linkedPagesCache;
+	private Map<List<Object>, List<Entry<Specifications, SourceProductPage>>> pairsCache;
+	/** url --> page, empty if the url is not in the dataset */
+	private Map<String, Optional<SourceProductPage>> pagesCache;
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param dao
+	 *            DAO queried on cache misses
+	 * @param maxQueries
+	 *            max number of results kept for each type of query
+	 * @param maxPages
+	 *            max number of pages kept by url
+	 */
+	public CachingAlignmentDao(AlignmentDao dao, int maxQueries, int maxPages) {
+		this.dao = dao;
+		this.linkedPagesCache = lruCache(maxQueries);
+		this.pairsCache = lruCache(maxQueries);
+		this.pagesCache = lruCache(maxPages);
+	}
+
+	private static <K, V> Map<K, V> lruCache(int maxSize) {
+		return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > maxSize;
+			}
+		});
+	}
+
+	@Override
+	public List<SourceProductPage> getPagesLinkedWithSource2filtered(String category, String website2,
+			String attribute1) {
+		List<Object> key = Arrays.asList(category, website2, attribute1);
+		List<SourceProductPage> pages = this.linkedPagesCache.get(key);
+		if (pages != null) {
+			this.hits.incrementAndGet();
+		} else {
+			this.misses.incrementAndGet();
+			pages = this.dao.getPagesLinkedWithSource2filtered(category, website2, attribute1);
+			this.linkedPagesCache.put(key, pages);
+			for (SourceProductPage page : pages)
+				this.pagesCache.put(page.getUrl(), Optional.of(page));
+		}
+		return new ArrayList<>(pages);
+	}
+
+	@Override
+	public List<Entry<Specifications, SourceProductPage>> getPairsOfPagesInLinkage(List<SourceProductPage> cList1,
+			String website2, String attribute2) {
+		List<String> urls = cList1.stream().map(SourceProductPage::getUrl).collect(Collectors.toList());
+		List<Object> key = Arrays.asList(urls, website2, attribute2);
+		List<Entry<Specifications, SourceProductPage>> pairs = this.pairsCache.get(key);
+		if (pairs != null) {
+			this.hits.incrementAndGet();
+		} else {
+			this.misses.incrementAndGet();
+			pairs = this.dao.getPairsOfPagesInLinkage(cList1, website2, attribute2);
+			this.pairsCache.put(key, pairs);
+		}
+		return new ArrayList<>(pairs);
+	}
+
+	@Override
+	public SourceProductPage getPageFromUrlIfExistsInDataset(String url) {
+		Optional<SourceProductPage> page = this.pagesCache.get(url);
+		if (page != null) {
+			this.hits.incrementAndGet();
+		} else {
+			this.misses.incrementAndGet();
+			page = Optional.ofNullable(this.dao.getPageFromUrlIfExistsInDataset(url));
+			this.pagesCache.put(url, page);
+		}
+		return page.orElse(null);
+	}
+
+	@Override
+	public Map<String, SourceProductPage> getPagesFromUrls(Collection<String> urls) {
+		Map<String, SourceProductPage> pages = new HashMap<>();
+		List<String> missingUrls = new ArrayList<>();
+		for (String url : urls) {
+			Optional<SourceProductPage> page = this.pagesCache.get(url);
+			if (page == null)
+				missingUrls.add(url);
+			else
+				page.ifPresent(p -> pages.put(url, p));
+		}
+		this.hits.addAndGet(urls.size() - missingUrls.size());
+		if (!missingUrls.isEmpty()) {
+			this.misses.addAndGet(missingUrls.size());
+			Map<String, SourceProductPage> fetched = this.dao.getPagesFromUrls(missingUrls);
+			for (String url : missingUrls)
+				this.pagesCache.put(url, Optional.ofNullable(fetched.get(url)));
+			pages.putAll(fetched);
+		}
+		return pages;
+	}
+
+	/**
+	 * @return queries (or urls) served by the caches
+	 */
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	/**
+	 * @return queries (or urls) sent to the DAO
+	 */
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	@Override
+	public String toString() {
+		long total = getHits() + getMisses();
+		return "hits=" + getHits() + ", misses=" + getMisses() + ", hit rate="
+				+ (total == 0 ? 0 : getHits() * 100 / total) + "%";
+	}
+
+	@Override
+	public List<SourceProductPage> getSamplePagesFromCategory(int size, String category) {
+		return this.dao.getSamplePagesFromCategory(size, category);
+	}
+
+	@Override
+	public Map<Source, List<String>> getSchemas(List<String> categories) {
+		return this.dao.getSchemas(categories);
+	}
+
+	@Override
+	public List<String> getSingleSchema(Source source) {
+		return this.dao.getSingleSchema(source);
+	}
+
+	@Override
+	public Map<SourceProductPage, List<SourceProductPage>> getProdsInRL(List<String> websites, String category) {
+		return this.dao.getProdsInRL(websites, category);
+	}
+
+	@Override
+	public List<SourceProductPage> getPagesOfSource(Source source) {
+		return this.dao.getPagesOfSource(source);
+	}
+
+	@Override
+	public Map<String, Map<String, List<String>>> getSourcesLinkage(String category) {
+		return this.dao.getSourcesLinkage(category);
+	}
+}
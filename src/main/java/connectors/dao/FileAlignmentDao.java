@@ -0,0 +1,362 @@
+package connectors.dao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import model.AbstractProductPage.Specifications;
+import model.CatalogueProductPage;
+import model.Source;
+import model.SourceProductPage;
+import utils.UrlUtils;
+
+/**
+ * DAO on local files, without MongoDB: source pages are kept in a
+ * {@link PageStore} (memory mapped, with indexes in memory), the catalogue is
+ * kept in memory and written to a file at each upload.
+ * <p>
+ * Queries return the same pages as {@link MongoAlignmentDao}, but always whole
+ * (where MongoDB returns only some fields). Only one DAO is built for each
+ * directory (see {@link #getInstance(String)}), so that pages uploaded by the
+ * generator of the dataset are seen by the alignment in the same process.
+ * Queries can run in many threads at the same time, but not during an upload.
+ */
+public class FileAlignmentDao implements AlignmentDao, SyntheticDatasetDao {
+
+	private static final String PAGES_FILE = "pages.dat";
+	private static final String CATALOGUE_FILE = "catalogue.dat";
+
+	private static Map<Path, FileAlignmentDao> instances = new HashMap<>();
+
+	/**
+	 * @param path
+	 *            directory of the files, created if it does not exist
+	 * @return the DAO of the directory, opened at the first call
+	 */
+	public static synchronized FileAlignmentDao getInstance(String path) {
+		Path directory = Paths.get(path).toAbsolutePath().normalize();
+		return instances.computeIfAbsent(directory, FileAlignmentDao::new);
+	}
+
+	private PageStore store;
+	private Path catalogueFile;
+	/** id --> product of the catalogue */
+	private Map<Integer, CatalogueProductPage> catalogue = new LinkedHashMap<>();
+
+	public FileAlignmentDao(Path directory) {
+		try {
+			Files.createDirectories(directory);
+			this.store = new PageStore(directory.resolve(PAGES_FILE));
+			this.catalogueFile = directory.resolve(CATALOGUE_FILE);
+			if (Files.exists(this.catalogueFile))
+				loadCatalogue();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * ALIGNMENT
+	 */
+
+	/**
+	 * Random sample (Floyd's algorithm) of the pages with attributes and linkage
+	 */
+	@Override
+	public List<SourceProductPage> getSamplePagesFromCategory(int size, String category) {
+		int[] pages = this.store.getSampleablePages(category.equals("all") ? null : category);
+		Random random = ThreadLocalRandom.current();
+		List<Integer> sampled;
+		if (size >= pages.length) {
+			sampled = new ArrayList<>();
+			for (int i = 0; i < pages.length; i++)
+				sampled.add(i);
+		} else {
+			Set<Integer> indexes = new LinkedHashSet<>();
+			for (int j = pages.length - size; j < pages.length; j++) {
+				int i = random.nextInt(j + 1);
+				indexes.add(indexes.contains(i) ? j : i);
+			}
+			sampled = new ArrayList<>(indexes);
+		}
+		Collections.shuffle(sampled, random);
+		List<SourceProductPage> sample = new ArrayList<>();
+		for (int i : sampled)
+			sample.add(this.store.getPage(pages[i]));
+		return sample;
+	}
+
+	@Override
+	public Map<Source, List<String>> getSchemas(List<String> categories) {
+		// Source is not comparable
+		Map<Source, List<String>> fetchedSchemas = new TreeMap<>(Comparator.comparing(Source::toString));
+		for (String category : categories)
+			this.store.getSchemas().getOrDefault(category, Collections.emptyMap()).forEach((website, attributes) -> {
+				if (!attributes.isEmpty())
+					fetchedSchemas.put(new Source(category, website), new ArrayList<>(attributes));
+			});
+		return fetchedSchemas;
+	}
+
+	@Override
+	public List<String> getSingleSchema(Source source) {
+		Set<String> attributes = this.store.getSchemas().getOrDefault(source.getCategory(), Collections.emptyMap())
+				.getOrDefault(source.getWebsite(), Collections.emptySet());
+		return new ArrayList<>(attributes);
+	}
+
+	@Override
+	public Map<SourceProductPage, List<SourceProductPage>> getProdsInRL(List<String> websites, String category) {
+		Set<String> catalogWebsites = new HashSet<>(websites);
+
+		// pages in catalog, in order of insertion as in MongoDB
+		Set<Integer> catalogIds = new TreeSet<>();
+		for (String website : catalogWebsites)
+			for (int id : this.store.getPagesOfSource(category, website))
+				if (this.store.hasSpecs(id) && this.store.hasLinkage(id))
+					catalogIds.add(id);
+
+		// <URL of a linked page, URL of the (last found) page in catalog linking to it>
+		Map<String, String> linkageUrls = new HashMap<>();
+		for (int id : catalogIds) {
+			SourceProductPage page = this.store.getPage(id);
+			page.getLinkage().forEach(linkedUrl -> linkageUrls.put(linkedUrl, page.getUrl()));
+		}
+
+		// <linked page outside catalog, URL of the page in catalog>
+		Map<SourceProductPage, String> extL = new LinkedHashMap<>();
+		// <URL of a page in catalog, URLs of the page and of the pages in catalog in linkage with it>
+		Map<String, List<String>> intL = new HashMap<>();
+		for (SourceProductPage page : getPagesWithUrls(linkageUrls.keySet(), category)) {
+			String url = page.getUrl();
+			String catalogUrl = linkageUrls.get(url);
+			if (!catalogWebsites.contains(UrlUtils.getDomain(url)))
+				extL.put(page, catalogUrl);
+			else
+				LinkageMaps.addInternalLinkage(intL, url, catalogUrl);
+		}
+
+		// read only the pages in catalog that are in linkage with a page outside catalog
+		Set<String> catalogUrls = new HashSet<>();
+		extL.values().forEach(url -> catalogUrls.addAll(intL.getOrDefault(url, Arrays.asList(url))));
+		Map<String, SourceProductPage> catalogPages = new HashMap<>();
+		for (SourceProductPage page : getPagesWithUrls(catalogUrls, category))
+			catalogPages.put(page.getUrl(), page);
+
+		return LinkageMaps.buildLinkageMap(extL, intL, catalogPages);
+	}
+
+	/**
+	 * @return pages of the category with attributes and one of the urls, in
+	 *         order of insertion
+	 */
+	private List<SourceProductPage> getPagesWithUrls(Collection<String> urls, String category) {
+		Set<Integer> ids = new TreeSet<>();
+		for (String url : urls)
+			for (int id : this.store.getPagesWithUrl(url))
+				if (this.store.hasSpecs(id))
+					ids.add(id);
+		List<SourceProductPage> pages = new ArrayList<>();
+		for (int id : ids) {
+			SourceProductPage page = this.store.getPage(id);
+			if (category.equals(page.getSource().getCategory()))
+				pages.add(page);
+		}
+		return pages;
+	}
+
+	@Override
+	public List<SourceProductPage> getPagesOfSource(Source source) {
+		List<SourceProductPage> pages = new ArrayList<>();
+		for (int id : this.store.getPagesOfSource(source.getCategory(), source.getWebsite()))
+			if (this.store.hasSpecs(id))
+				pages.add(this.store.getPage(id));
+		return pages;
+	}
+
+	@Override
+	public Map<String, Map<String, List<String>>> getSourcesLinkage(String category) {
+		Map<String, Map<String, List<String>>> sourcesLinkage = new HashMap<>();
+		for (String website : this.store.getWebsites(category))
+			for (int id : this.store.getPagesOfSource(category, website))
+				if (this.store.hasSpecs(id) && this.store.hasLinkage(id)) {
+					SourceProductPage page = this.store.getPage(id);
+					sourcesLinkage.computeIfAbsent(website, w -> new HashMap<>()).put(page.getUrl(),
+							page.getLinkage());
+				}
+		return sourcesLinkage;
+	}
+
+	/**
+	 * Intersection of the (sorted) pages with the attribute and of the pages
+	 * linked with the website
+	 */
+	@Override
+	public List<SourceProductPage> getPagesLinkedWithSource2filtered(String category, String website2,
+			String attribute1) {
+		int[] withAttribute = this.store.getPagesWithSpecKey(category, attribute1);
+		int[] linked = this.store.getPagesLinkedWithWebsite(category, website2);
+		List<SourceProductPage> prods = new ArrayList<>();
+		for (int i = 0, j = 0; i < withAttribute.length && j < linked.length;) {
+			if (withAttribute[i] < linked[j]) {
+				i++;
+			} else if (withAttribute[i] > linked[j]) {
+				j++;
+			} else {
+				prods.add(this.store.getPage(withAttribute[i]));
+				i++;
+				j++;
+			}
+		}
+		return prods;
+	}
+
+	@Override
+	public List<Entry<Specifications, SourceProductPage>> getPairsOfPagesInLinkage(List<SourceProductPage> prods,
+			String website, String attribute) {
+		// <URL of a linked page, indexes of the pages in prods linking to it>
+		Map<String, List<Integer>> rlMap = new HashMap<>();
+		for (int i = 0; i < prods.size(); i++)
+			for (String url : prods.get(i).getLinkage())
+				if (website.equals(UrlUtils.getDomain(url)))
+					rlMap.computeIfAbsent(url, u -> new ArrayList<>()).add(i);
+
+		// linked pages with the attribute, in any category
+		Set<Integer> ids = new TreeSet<>();
+		for (String url : rlMap.keySet())
+			for (int id : this.store.getPagesWithUrl(url))
+				ids.add(id);
+		List<Entry<Specifications, SourceProductPage>> rlList = new ArrayList<>();
+		for (int id : ids) {
+			SourceProductPage page = this.store.getPage(id);
+			if (page.getSpecifications().containsKey(attribute))
+				for (int i : rlMap.get(page.getUrl()))
+					rlList.add(new AbstractMap.SimpleEntry<>(prods.get(i).getSpecifications(), page));
+		}
+		return rlList;
+	}
+
+	@Override
+	public SourceProductPage getPageFromUrlIfExistsInDataset(String url) {
+		for (int id : this.store.getPagesWithUrl(url))
+			if (this.store.hasSpecs(id) && this.store.hasLinkage(id))
+				return this.store.getPage(id);
+		return null;
+	}
+
+	@Override
+	public Map<String, SourceProductPage> getPagesFromUrls(Collection<String> urls) {
+		Map<String, SourceProductPage> pages = new HashMap<>();
+		for (String url : urls)
+			if (!pages.containsKey(url)) {
+				SourceProductPage page = getPageFromUrlIfExistsInDataset(url);
+				if (page != null)
+					pages.put(url, page);
+			}
+		return pages;
+	}
+
+	/*
+	 * SYNTHETIC DATASET
+	 */
+
+	@Override
+	public void uploadCatalogue(List<CatalogueProductPage> catalogue, boolean delete) {
+		if (delete)
+			this.catalogue.clear();
+		for (CatalogueProductPage product : catalogue)
+			this.catalogue.put(product.getId(), product);
+		saveCatalogue();
+	}
+
+	@Override
+	public void uploadSource(List<SourceProductPage> productPages) {
+		productPages.forEach(this.store::append);
+	}
+
+	@Override
+	public void finalizeSourceUpload() {
+		this.store.flush();
+	}
+
+	@Override
+	public void deleteAllSourceProductPages() {
+		this.store.clear();
+	}
+
+	@Override
+	public List<CatalogueProductPage> getCatalogueProductsWithIds(List<Integer> ids) {
+		List<CatalogueProductPage> products = new ArrayList<>();
+		for (int id : ids)
+			if (this.catalogue.containsKey(id))
+				products.add(this.catalogue.get(id));
+		return products;
+	}
+
+	/**
+	 * Products as [id, category, number of attributes, attribute, value...]
+	 */
+	private void saveCatalogue() {
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(this.catalogueFile)))) {
+			out.writeInt(this.catalogue.size());
+			for (CatalogueProductPage product : this.catalogue.values()) {
+				out.writeInt(product.getId());
+				PageStore.writeString(out, product.getCategory());
+				out.writeInt(product.getSpecifications().size());
+				for (Entry<String, String> spec : product.getSpecifications().entrySet()) {
+					PageStore.writeString(out, spec.getKey());
+					PageStore.writeString(out, spec.getValue());
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void loadCatalogue() throws IOException {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(this.catalogueFile)))) {
+			for (int products = in.readInt(); products > 0; products--) {
+				CatalogueProductPage product = new CatalogueProductPage(in.readInt(), readString(in));
+				for (int specs = in.readInt(); specs > 0; specs--)
+					product.addAttributeValue(readString(in), readString(in));
+				this.catalogue.put(product.getId(), product);
+			}
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
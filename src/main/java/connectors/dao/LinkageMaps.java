@@ -0,0 +1,60 @@
+package connectors.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import model.SourceProductPage;
+
+/**
+ * Common steps of the implementations of
+ * {@link AlignmentDao#getProdsInRL(List, String)}, joining the pages outside
+ * catalog with the pages in catalog linking to them
+ */
+class LinkageMaps {
+
+	/**
+	 * Two pages in catalog, one linking the other, are in linkage in both
+	 * directions
+	 * 
+	 * @param intL
+	 *            URL of a page in catalog --> URLs of the page and of the pages
+	 *            in catalog in linkage with it
+	 */
+	static void addInternalLinkage(Map<String, List<String>> intL, String url, String catalogUrl) {
+		if (url.equals(catalogUrl))
+			return;
+		intL.computeIfAbsent(url, u -> new ArrayList<>(Arrays.asList(u))).add(catalogUrl);
+		intL.computeIfAbsent(catalogUrl, u -> new ArrayList<>(Arrays.asList(u))).add(url);
+	}
+
+	/**
+	 * Joins the pages outside catalog with the pages in catalog, see
+	 * {@link AlignmentDao#getProdsInRL(List, String)}. Lists are shared by the pages linked to
+	 * the same page in catalog.
+	 * 
+	 * @param extL
+	 *            linked page outside catalog --> URL of the page in catalog
+	 *            linking to it
+	 * @param intL
+	 *            see {@link #addInternalLinkage(Map, String, String)}
+	 * @param catalogPages
+	 *            URL --> page in catalog
+	 * @return linked page --> list of pages in catalog
+	 */
+	static Map<SourceProductPage, List<SourceProductPage>> buildLinkageMap(
+			Map<SourceProductPage, String> extL, Map<String, List<String>> intL,
+			Map<String, SourceProductPage> catalogPages) {
+		Map<String, List<SourceProductPage>> catalogLinkage = new HashMap<>();
+		Map<SourceProductPage, List<SourceProductPage>> rlMap = new LinkedHashMap<>();
+		extL.forEach((page, catalogUrl) -> rlMap.put(page, catalogLinkage.computeIfAbsent(catalogUrl,
+				url -> intL.getOrDefault(url, Arrays.asList(url)).stream().map(catalogPages::get)
+						.filter(Objects::nonNull).collect(Collectors.toList()))));
+		return rlMap;
+	}
+}
@@ -3,12 +3,19 @@ package connectors.dao;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import org.bson.Document;
@@ -19,6 +26,7 @@ import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
 
 import connectors.MongoDbConnectionFactory;
 import connectors.MongoDbUtils;
@@ -29,15 +37,126 @@ import utils.UrlUtils;
 
 public class MongoAlignmentDao implements AlignmentDao {
 
+	/** Maximum number of urls in a single $in query */
+	private static final int URLS_PER_QUERY = 1000;
+	/** Pages in catalog joined at a time with their linked pages */
+	private static final int CATALOG_PAGES_PER_BATCH = 1000;
+	/**
+	 * Indexed reads of a sample of pages, each one from a random pivot: more
+	 * reads give less correlated samples (pages with close random keys are
+	 * always sampled together)
+	 */
+	private static final int SAMPLE_READS = 10;
+
 	private MongoDatabase database;
+	/**
+	 * False if some pages were loaded before {@link MongoDbUtils#LINKED_WEBSITES}
+	 * and have not been migrated, in that case the linkage is matched with a
+	 * regex
+	 */
+	private final boolean linkedWebsitesMigrated;
+	/**
+	 * False if some pages were loaded before {@link MongoDbUtils#SPEC_KEYS} and
+	 * have not been migrated, in that case attributes are matched with $exists
+	 */
+	private final boolean specKeysMigrated;
 
 	public MongoAlignmentDao(MongoDbConnectionFactory mongoConnector) {
 		super();
 		this.database = mongoConnector.getDatabase();
+		this.linkedWebsitesMigrated = isMigrated(MongoDbUtils.LINKED_WEBSITES);
+		this.specKeysMigrated = isMigrated(MongoDbUtils.SPEC_KEYS);
+	}
+
+	/**
+	 * @param field
+	 *            field derived at upload time, or by launchers.MongoIndexesMigration
+	 * @return true if all the pages have the field, false otherwise
+	 */
+	private boolean isMigrated(String field) {
+		boolean migrated = this.database.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME)
+				.find(Filters.exists(field, false)).projection(Projections.include("_id")).first() == null;
+		if (!migrated)
+			System.err.println("Pagine senza il campo " + field
+					+ ": lanciare launchers.MongoIndexesMigration, fino ad allora le query non usano gli indici");
+		return migrated;
+	}
+
+	/**
+	 * @return filter of the pages with the attribute
+	 */
+	private Bson attributeFilter(String attribute) {
+		if (this.specKeysMigrated)
+			return Filters.eq(MongoDbUtils.SPEC_KEYS, attribute);
+		return Filters.exists(MongoDbUtils.SPECS + "." + attribute, true);
+	}
+
+	/**
+	 * @return filter of the pages linked with a page of the website; without
+	 *         {@link MongoDbUtils#LINKED_WEBSITES} it also matches pages linked
+	 *         with urls only containing the website, to be checked with
+	 *         {@link #isLinkedWith(SourceProductPage, String)}
+	 */
+	private Bson linkedWebsiteFilter(String website) {
+		if (this.linkedWebsitesMigrated)
+			return Filters.eq(MongoDbUtils.LINKED_WEBSITES, website);
+		return Filters.eq(MongoDbUtils.LINKAGE, Pattern.compile(Pattern.quote(website)));
+	}
+
+	/**
+	 * @return true if the domain of a url in the linkage of the page is the
+	 *         website
+	 */
+	private static boolean isLinkedWith(SourceProductPage page, String website) {
+		return page.getLinkage().stream().anyMatch(url -> website.equals(UrlUtils.getDomain(url)));
 	}
 
 	@Override
 	public List<SourceProductPage> getSamplePagesFromCategory(int size, String category) {
+		MongoCollection<Document> collection = this.database.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME);
+		Bson flagsFilter = Filters.and(Filters.eq(MongoDbUtils.HAS_SPECS, true),
+				Filters.eq(MongoDbUtils.HAS_LINKAGE, true));
+		Bson filter = category.equals("all") ? flagsFilter
+				: Filters.and(flagsFilter, Filters.eq(MongoDbUtils.CATEGORY, category));
+
+		// <URL, page>, runs from different pivots may overlap
+		Map<String, SourceProductPage> sample = new LinkedHashMap<>();
+		int runSize = (size + SAMPLE_READS - 1) / SAMPLE_READS;
+		// a few more reads if runs overlap
+		for (int read = 0; read < 2 * SAMPLE_READS && sample.size() < size; read++) {
+			int limit = Math.min(runSize, size - sample.size());
+			double pivot = ThreadLocalRandom.current().nextDouble();
+			int found = addSampleRun(collection, Filters.and(filter, Filters.gte(MongoDbUtils.RANDOM, pivot)), limit,
+					sample);
+			// past the last key, continue from the first one
+			if (found < limit)
+				addSampleRun(collection, Filters.and(filter, Filters.lt(MongoDbUtils.RANDOM, pivot)), limit - found,
+						sample);
+		}
+		if (sample.size() < size)
+			return getSamplePagesWithAggregation(size, category);
+		return new ArrayList<>(sample.values());
+	}
+
+	/**
+	 * @return number of pages read
+	 */
+	private static int addSampleRun(MongoCollection<Document> collection, Bson filter, int limit,
+			Map<String, SourceProductPage> sample) {
+		int found = 0;
+		for (Document d : collection.find(filter).sort(Sorts.ascending(MongoDbUtils.RANDOM)).limit(limit)) {
+			SourceProductPage page = MongoDbUtils.convertDocumentToProductPage(d);
+			sample.putIfAbsent(page.getUrl(), page);
+			found++;
+		}
+		return found;
+	}
+
+	/**
+	 * Sample with $match and $sample, for pages without random keys (or
+	 * categories with less pages than the sample)
+	 */
+	private List<SourceProductPage> getSamplePagesWithAggregation(int size, String category) {
 		// uses sample method of MongoDB
 		MongoCollection<Document> collection = this.database.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME);
 		List<SourceProductPage> sample = new ArrayList<>();
@@ -59,7 +178,8 @@ public class MongoAlignmentDao implements AlignmentDao {
 
 	@Override
 	public Map<Source, List<String>> getSchemas(List<String> categories) {
-		Map<Source, List<String>> fetchedSchemas = new TreeMap<>();
+		// Source is not comparable
+		Map<Source, List<String>> fetchedSchemas = new TreeMap<>(Comparator.comparing(Source::toString));
 
 		this.database.getCollection(MongoDbUtils.SCHEMAS_COLLECTION)
 				.find(Filters.and(Filters.in(MongoDbUtils.CATEGORY, categories),
@@ -87,76 +207,155 @@ public class MongoAlignmentDao implements AlignmentDao {
 		return fetchedSchema;
 	}
 
-	// TODO extract some parts
+	/**
+	 * Catalog pages are read with a streaming cursor in batches of
+	 * {@link #CATALOG_PAGES_PER_BATCH}, with their linkage only: the linked pages
+	 * of each batch are fetched (with queries of at most {@link #URLS_PER_QUERY}
+	 * urls) and joined before reading the next batch. Besides the current batch,
+	 * only the linked pages outside catalog (which are in the result) and the
+	 * urls of the linkage inside catalog are kept. Catalog pages are fetched at
+	 * the end, only those in linkage with a page outside catalog.
+	 */
 	@Override
 	public Map<SourceProductPage, List<SourceProductPage>> getProdsInRL(List<String> websites, String category) {
-		Map<SourceProductPage, List<SourceProductPage>> rlMap = new HashMap<>();
 		MongoCollection<Document> collection = this.database.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME);
+		Set<String> catalogWebsites = new HashSet<>(websites);
 
 		Bson wFilter = Filters.in(MongoDbUtils.WEBSITE, websites);
 		Bson cFilter = Filters.eq(MongoDbUtils.CATEGORY, category);
 		Bson sFilter = Filters.ne(MongoDbUtils.SPECS, new Document());
 		Bson lFilter = Filters.ne(MongoDbUtils.LINKAGE, Collections.EMPTY_LIST);
-		Bson andFilter = Filters.and(wFilter, cFilter, sFilter, lFilter);
-		Bson matchBson = Aggregates.match(andFilter);
-		Bson unwindBson = Aggregates.unwind("$linkage");
-
-		// get all product's pages in "catalog" with linkage (unwinding the
-		// linkage attribute)
-		List<Document> prods = new ArrayList<>();
-		collection.aggregate(Arrays.asList(matchBson, unwindBson)).forEach((Document d) -> prods.add(d));
-
-		// create map <URL of a linked page, page in catalog>
-		Map<String, Document> linkageUrls = new HashMap<>();
-		prods.stream().forEach(p -> linkageUrls.put(p.getString(MongoDbUtils.LINKAGE), p));
-
-		// get all the linked product's pages
-		// <url, list of document in linkage with the one associated to the key>
-		Map<String, List<SourceProductPage>> intL = new HashMap<>();
-		// <linked page, page in catalog>
-		Map<Document, Document> extL = new HashMap<>();
-		Bson uFilter = Filters.in(MongoDbUtils.URL, linkageUrls.keySet());
-		andFilter = Filters.and(cFilter, uFilter, sFilter);
-		collection.find(andFilter)
-				.projection(Projections.include(MongoDbUtils.SPECS, MongoDbUtils.URL, MongoDbUtils.WEBSITE))
-				.forEach((Document p) -> {
-					// if it's not a page in the
-					// catalog create new map
-					// entry
-					if (!websites.contains(UrlUtils.getDomain(p.getString(MongoDbUtils.URL)))) {
-						Document catalogPage = linkageUrls.get(p.getString(MongoDbUtils.URL));
-						extL.put(p, catalogPage);
-					}
-					// if it's a page in the
-					// catalog add it to the
-					// temporary
-					// list
-					else {
-						Document rlDoc = linkageUrls.get(p.getString(MongoDbUtils.URL));
-						String urlP = p.getString(MongoDbUtils.URL);
-						String urlRlDoc = linkageUrls.get(p.getString(MongoDbUtils.URL)).getString(MongoDbUtils.URL);
-						List<SourceProductPage> linkageP = intL.getOrDefault(urlP, new ArrayList<SourceProductPage>());
-						List<SourceProductPage> linkageRlDoc = intL.getOrDefault(urlRlDoc,
-								new ArrayList<SourceProductPage>());
-						linkageP.add(MongoDbUtils.convertDocumentToProductPage(rlDoc));
-						linkageRlDoc.add(MongoDbUtils.convertDocumentToProductPage(p));
-						intL.put(urlP, linkageP);
-						intL.put(urlRlDoc, linkageRlDoc);
-					}
-				});
 
-		// add internal linkage to the lists in rlMap
-		for (Map.Entry<Document, Document> entry : extL.entrySet()) {
-			List<SourceProductPage> linkageList = new ArrayList<>();
-			if (intL.containsKey(entry.getValue().getString(MongoDbUtils.URL)))
-				linkageList = intL.get(entry.getValue().getString(MongoDbUtils.URL));
-			else
-				linkageList.add(MongoDbUtils.convertUnwindedDocumentToProductPage(entry.getValue()));
-			rlMap.put(MongoDbUtils.convertDocumentToProductPage(entry.getKey()), linkageList);
+		LinkageJoin join = new LinkageJoin(collection, catalogWebsites, Filters.and(cFilter, sFilter));
+		int batchPages = 0;
+		for (Document p : collection.find(Filters.and(wFilter, cFilter, sFilter, lFilter))
+				.projection(Projections.include(MongoDbUtils.URL, MongoDbUtils.LINKAGE))
+				.batchSize(CATALOG_PAGES_PER_BATCH)) {
+			String url = p.getString(MongoDbUtils.URL);
+			@SuppressWarnings("unchecked")
+			List<String> linkage = p.get(MongoDbUtils.LINKAGE, List.class);
+			linkage.forEach(linkedUrl -> join.batch.put(linkedUrl, url));
+			if (++batchPages == CATALOG_PAGES_PER_BATCH) {
+				join.joinBatch();
+				batchPages = 0;
+			}
+		}
+		join.joinBatch();
+
+		// <URL of a page in catalog, URLs of the page and of the pages in catalog in linkage with it>
+		Map<String, List<String>> intL = new HashMap<>();
+		join.internalLinks.forEach((url, catalogUrl) -> LinkageMaps.addInternalLinkage(intL, url, catalogUrl));
+
+		// fetch only the pages in catalog that are in linkage with a page outside catalog
+		Set<String> catalogUrls = new HashSet<>();
+		join.extL.values().forEach(url -> catalogUrls.addAll(intL.getOrDefault(url, Arrays.asList(url))));
+		Map<String, SourceProductPage> catalogPages = new HashMap<>();
+		forEachChunk(new ArrayList<>(catalogUrls), urls -> collection
+				.find(Filters.and(cFilter, Filters.in(MongoDbUtils.URL, urls), sFilter)).forEach((Document p) -> {
+					catalogPages.put(p.getString(MongoDbUtils.URL), MongoDbUtils.convertDocumentToProductPage(p));
+				}));
+
+		return LinkageMaps.buildLinkageMap(join.extL, intL, catalogPages);
+	}
+
+	/**
+	 * Join of the batches of pages in catalog of
+	 * {@link MongoAlignmentDao#getProdsInRL(List, String)} with their linked pages.
+	 * A linked page is joined with the last page in catalog found linking to it.
+	 */
+	private static class LinkageJoin {
+		private final MongoCollection<Document> collection;
+		private final Set<String> catalogWebsites;
+		/** linked pages of the category with attributes */
+		private final Bson linkedFilter;
+
+		/** <URL of a linked page, URL of the page in catalog>, for the current batch */
+		private final Map<String, String> batch = new HashMap<>();
+		/** <linked page outside catalog, URL of the page in catalog> */
+		private final Map<SourceProductPage, String> extL = new LinkedHashMap<>();
+		/** <URL of a linked page outside catalog, its pages>, already fetched */
+		private final Map<String, List<SourceProductPage>> extPages = new HashMap<>();
+		/** <URL of a linked page in catalog, URL of the page in catalog> */
+		private final Map<String, String> internalLinks = new LinkedHashMap<>();
+
+		private LinkageJoin(MongoCollection<Document> collection, Set<String> catalogWebsites, Bson linkedFilter) {
+			this.collection = collection;
+			this.catalogWebsites = catalogWebsites;
+			this.linkedFilter = linkedFilter;
+		}
+
+		/**
+		 * Joins the current batch, fetching only the linked pages not found in the
+		 * previous batches, then clears it
+		 */
+		private void joinBatch() {
+			List<String> newUrls = new ArrayList<>();
+			this.batch.forEach((linkedUrl, catalogUrl) -> {
+				if (this.extPages.containsKey(linkedUrl))
+					this.extPages.get(linkedUrl).forEach(page -> this.extL.put(page, catalogUrl));
+				else if (this.internalLinks.containsKey(linkedUrl))
+					this.internalLinks.put(linkedUrl, catalogUrl);
+				else
+					newUrls.add(linkedUrl);
+			});
+			forEachChunk(newUrls, urls -> this.collection
+					.find(Filters.and(this.linkedFilter, Filters.in(MongoDbUtils.URL, urls)))
+					.projection(Projections.include(MongoDbUtils.SPECS, MongoDbUtils.URL, MongoDbUtils.WEBSITE,
+							MongoDbUtils.CATEGORY))
+					.forEach((Document p) -> {
+						String url = p.getString(MongoDbUtils.URL);
+						String catalogUrl = this.batch.get(url);
+						if (!this.catalogWebsites.contains(UrlUtils.getDomain(url))) {
+							SourceProductPage page = MongoDbUtils.convertDocumentToProductPage(p);
+							this.extPages.computeIfAbsent(url, u -> new ArrayList<>()).add(page);
+							this.extL.put(page, catalogUrl);
+						} else
+							this.internalLinks.put(url, catalogUrl);
+					}));
+			this.batch.clear();
 		}
+	}
+
+	/**
+	 * Splits the urls in chunks of at most {@link #URLS_PER_QUERY}, to keep the
+	 * $in queries small
+	 */
+	private static void forEachChunk(List<String> urls, Consumer<List<String>> action) {
+		for (int from = 0; from < urls.size(); from += URLS_PER_QUERY)
+			action.accept(urls.subList(from, Math.min(from + URLS_PER_QUERY, urls.size())));
+	}
+
+	@Override
+	public List<SourceProductPage> getPagesOfSource(Source source) {
+		List<SourceProductPage> pages = new ArrayList<>();
+		Bson wFilter = Filters.eq(MongoDbUtils.WEBSITE, source.getWebsite());
+		Bson cFilter = Filters.eq(MongoDbUtils.CATEGORY, source.getCategory());
+		Bson sFilter = Filters.ne(MongoDbUtils.SPECS, new Document());
+
+		this.database.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME).find(Filters.and(wFilter, cFilter, sFilter))
+				.forEach((Document d) -> pages.add(MongoDbUtils.convertDocumentToProductPage(d)));
+
+		return pages;
+	}
+
+	@Override
+	public Map<String, Map<String, List<String>>> getSourcesLinkage(String category) {
+		Map<String, Map<String, List<String>>> sourcesLinkage = new HashMap<>();
+		Bson cFilter = Filters.eq(MongoDbUtils.CATEGORY, category);
+		Bson sFilter = Filters.ne(MongoDbUtils.SPECS, new Document());
+		Bson lFilter = Filters.ne(MongoDbUtils.LINKAGE, Collections.EMPTY_LIST);
+
+		this.database.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME)
+				.find(Filters.and(cFilter, sFilter, lFilter))
+				.projection(Projections.include(MongoDbUtils.URL, MongoDbUtils.WEBSITE, MongoDbUtils.LINKAGE))
+				.forEach((Document d) -> {
+					@SuppressWarnings("unchecked")
+					List<String> linkage = d.get(MongoDbUtils.LINKAGE, List.class);
+					sourcesLinkage.computeIfAbsent(d.getString(MongoDbUtils.WEBSITE), w -> new HashMap<>())
+							.put(d.getString(MongoDbUtils.URL), linkage);
+				});
 
-		// <linked page, list of pages in catalog>
-		return rlMap;
+		return sourcesLinkage;
 	}
 
 	@Override
@@ -164,14 +363,16 @@ public class MongoAlignmentDao implements AlignmentDao {
 		MongoCollection<Document> collection = this.database.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME);
 		List<SourceProductPage> prods = new ArrayList<>();
 		Bson cFilter = Filters.eq(MongoDbUtils.CATEGORY, category);
-		Pattern regex = Pattern.compile(".*" + website2.replace(".", "\\.") + ".*", Pattern.CASE_INSENSITIVE);
-		Bson lFilter = Filters.eq(MongoDbUtils.LINKAGE, regex);
-		Bson aFilter = Filters.exists(MongoDbUtils.SPECS + "." + attribute, true);
+		Bson lFilter = linkedWebsiteFilter(website2);
+		Bson aFilter = attributeFilter(attribute);
 		
 		Bson andFilter = Filters.and(Arrays.asList(cFilter, aFilter, lFilter));
 
-		collection.find(andFilter)
-				.forEach((Document d) -> prods.add(MongoDbUtils.convertDocumentToProductPage(d)));
+		collection.find(andFilter).forEach((Document d) -> {
+			SourceProductPage page = MongoDbUtils.convertDocumentToProductPage(d);
+			if (this.linkedWebsitesMigrated || isLinkedWith(page, website2))
+				prods.add(page);
+		});
 
 		return prods;
 	}
@@ -180,7 +381,6 @@ public class MongoAlignmentDao implements AlignmentDao {
 	public List<Entry<Specifications, SourceProductPage>> getPairsOfPagesInLinkage(List<SourceProductPage> prods, String website,
 			String attribute) {
 		Map<String, List<Integer>> rlMap = new HashMap<>();
-		List<String> docsToFetch = new ArrayList<>();
 		List<SourceProductPage> fetchedProducts = new ArrayList<>();
 		List<Entry<Specifications, SourceProductPage>> rlList = new ArrayList<>();
 
@@ -188,21 +388,20 @@ public class MongoAlignmentDao implements AlignmentDao {
 		for (int i = 0; i < prods.size(); i++) {
 			SourceProductPage p = prods.get(i);
 			for (String url : p.getLinkage())
-				if (url.contains(website)) {
+				if (website.equals(UrlUtils.getDomain(url))) {
 					List<Integer> indexes = rlMap.getOrDefault(url, new ArrayList<Integer>());
 					indexes.add(i);
 					rlMap.put(url, indexes);
-					docsToFetch.add(url);
 				}
 		}
 
 		// get all the linkage products containing the relevant attribute
 		MongoCollection<Document> collection = this.database.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME);
-		Bson inFilter = Filters.in(MongoDbUtils.URL, docsToFetch);
-		Bson attFilter = Filters.exists(MongoDbUtils.SPECS + "." + attribute, true);
-		Bson andFilter = Filters.and(inFilter, attFilter);
-		collection.find(andFilter).projection(Projections.include(MongoDbUtils.SPECS, MongoDbUtils.URL))
-				.forEach((Document d) -> fetchedProducts.add(MongoDbUtils.convertDocumentToProductPage(d)));
+		Bson attFilter = attributeFilter(attribute);
+		forEachChunk(new ArrayList<>(rlMap.keySet()), urls -> collection
+				.find(Filters.and(Filters.in(MongoDbUtils.URL, urls), attFilter))
+				.projection(Projections.include(MongoDbUtils.SPECS, MongoDbUtils.URL))
+				.forEach((Document d) -> fetchedProducts.add(MongoDbUtils.convertDocumentToProductPage(d))));
 
 		// create record linkage list
 		fetchedProducts.stream().forEach(d -> {
@@ -226,4 +425,18 @@ public class MongoAlignmentDao implements AlignmentDao {
 		}
 		return res;
 	}
+
+	@Override
+	public Map<String, SourceProductPage> getPagesFromUrls(Collection<String> urls) {
+		MongoCollection<Document> collection = this.database.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME);
+		Map<String, SourceProductPage> pages = new HashMap<>();
+		Bson lFilter = Filters.ne(MongoDbUtils.LINKAGE, Collections.EMPTY_LIST);
+		Bson sFilter = Filters.ne(MongoDbUtils.SPECS, new Document());
+		// as in getPageFromUrlIfExistsInDataset, the first page found with an URL is kept
+		forEachChunk(new ArrayList<>(new HashSet<>(urls)),
+				chunk -> collection.find(Filters.and(Filters.in(MongoDbUtils.URL, chunk), lFilter, sFilter))
+						.forEach((Document d) -> pages.putIfAbsent(d.getString(MongoDbUtils.URL),
+								MongoDbUtils.convertDocumentToProductPage(d))));
+		return pages;
+	}
 }
@@ -110,7 +110,7 @@ public class MongoSyntheticDao implements SyntheticDatasetDao {
 	public void finalizeSourceUpload() {
 		MongoCollection<Document> productCollection = this.database
 				.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME);
-		addProductsIndexes(productCollection);
+		MongoDbUtils.createProductsIndexes(productCollection);
 		dropCollection(MongoDbUtils.SCHEMAS_COLLECTION);
 		initializeSchemaCollection();
 	}
@@ -131,20 +131,13 @@ public class MongoSyntheticDao implements SyntheticDatasetDao {
 
 			schemas.entrySet().stream().map(this::schema2Document).forEach(schemaCollection::insertOne);
 
-			// TODO factorize with addProductsIndexes? just URL more
+			// TODO factorize with MongoDbUtils.createProductsIndexes? just URL more
 			schemaCollection.createIndex(Indexes.ascending(MongoDbUtils.CATEGORY));
 			schemaCollection.createIndex(Indexes.ascending(MongoDbUtils.WEBSITE));
 			schemaCollection.createIndex(Indexes.ascending(MongoDbUtils.WEBSITE, MongoDbUtils.CATEGORY));
 		}
 	}
 
-	private void addProductsIndexes(MongoCollection<Document> collection) {
-		collection.createIndex(Indexes.ascending(MongoDbUtils.CATEGORY));
-		collection.createIndex(Indexes.ascending(MongoDbUtils.WEBSITE));
-		collection.createIndex(Indexes.ascending(MongoDbUtils.WEBSITE, MongoDbUtils.CATEGORY));
-		collection.createIndex(Indexes.hashed(MongoDbUtils.URL));
-	}
-
 	private void dropCollection(String name) {
 		this.database.getCollection(name).drop();
 	}
@@ -0,0 +1,506 @@
+package connectors.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+
+import connectors.MongoDbUtils;
+import model.SourceProductPage;
+
+/**
+ * Append-only file of product pages, read through memory mapping.
+ * <p>
+ * Each page is a record [length, url, category, website, ids, linkage, specs]
+ * and is identified by its position in the file (0 is the first page). The
+ * indexes are kept in memory, built when the file is opened and updated at each
+ * append:
+ * <ul>
+ * <li>hash index of the urls (open addressing on the ids of the pages, so urls
+ * are not kept in memory);
+ * <li>pages of each source and pages that can be sampled (with attributes and
+ * linkage) of each category;
+ * <li>pages of each category with an attribute (spec key), and pages of each
+ * category linked with a website;
+ * <li>schema (attributes) of each source.
+ * </ul>
+ * Lists of pages are always in order of insertion. A record left half written
+ * at the end of the file (e.g. by a crash during an upload) is discarded when
+ * the file is opened.
+ * <p>
+ * Pages can be read by many threads at the same time, but not while pages are
+ * appended.
+ *
+ * @see FileAlignmentDao
+ */
+public class PageStore implements Closeable {
+
+	private static final int MAGIC = 0x50414753;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	/** Max size of a mapped region, pages may be split between 2 regions */
+	private static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+	private static final byte HAS_SPECS = 1;
+	private static final byte HAS_LINKAGE = 2;
+
+	private FileChannel channel;
+	private int segmentSize;
+	private long fileSize;
+	/** regions of the file mapped in memory, the last one may be partial */
+	private volatile List<MappedByteBuffer> segments = new ArrayList<>();
+	private volatile long mappedSize;
+
+	// indexes, by id of the page
+	private int size;
+	private long[] offsets = new long[1024];
+	private int[] urlHashes = new int[1024];
+	private byte[] flags = new byte[1024];
+	/** ids of the pages + 1 (0 is an empty slot), in position hash(url) or the following ones */
+	private int[] urlTable = new int[2048];
+
+	/** category --> website --> pages */
+	private Map<String, Map<String, IntList>> sourcePages = new LinkedHashMap<>();
+	/** category --> pages with attributes and linkage */
+	private Map<String, IntList> sampleablePages = new HashMap<>();
+	private IntList allSampleablePages = new IntList();
+	/** category --> attribute --> pages */
+	private Map<String, Map<String, IntList>> specKeyPages = new HashMap<>();
+	/** category --> linked website --> pages */
+	private Map<String, Map<String, IntList>> linkedWebsitePages = new HashMap<>();
+	/** category --> website --> attributes */
+	private Map<String, Map<String, Set<String>>> schemas = new LinkedHashMap<>();
+
+	public PageStore(Path file) throws IOException {
+		this(file, DEFAULT_SEGMENT_SIZE);
+	}
+
+	PageStore(Path file, int segmentSize) throws IOException {
+		this.segmentSize = segmentSize;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.fileSize = this.channel.size();
+		if (this.fileSize < HEADER_SIZE) {
+			writeHeader();
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(header, 0);
+			header.flip();
+			if (header.getInt() != MAGIC || header.getInt() != VERSION)
+				throw new IOException("Not a page store: " + file);
+			loadIndexes();
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		this.channel.truncate(0);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).flip();
+		writeFully(header, 0);
+		this.fileSize = HEADER_SIZE;
+	}
+
+	/**
+	 * Reads all the records to build the indexes
+	 */
+	private void loadIndexes() throws IOException {
+		remap();
+		long position = HEADER_SIZE;
+		ByteBuffer length = ByteBuffer.allocate(4);
+		while (position + 4 <= this.fileSize) {
+			length.clear();
+			readFully(length, position);
+			int recordLength = length.getInt(0);
+			if (recordLength < 0 || position + 4 + recordLength > this.fileSize)
+				break;
+			index(decode(read(position + 4, recordLength)), position);
+			position += 4 + recordLength;
+		}
+		if (position < this.fileSize) {
+			System.err.println("Discarded incomplete page at the end of the page store");
+			this.channel.truncate(position);
+			this.fileSize = position;
+			this.segments = new ArrayList<>();
+			this.mappedSize = 0;
+			remap();
+		}
+	}
+
+	/**
+	 * @return id of the page
+	 */
+	public synchronized int append(SourceProductPage page) {
+		byte[] record = encode(page);
+		ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+		buffer.putInt(record.length).put(record).flip();
+		long position = this.fileSize;
+		try {
+			writeFully(buffer, position);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.fileSize += buffer.limit();
+		return index(page, position);
+	}
+
+	/**
+	 * Writes the appended pages to the disk
+	 */
+	public synchronized void flush() {
+		try {
+			this.channel.force(false);
+			remap();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Deletes all the pages
+	 */
+	public synchronized void clear() {
+		try {
+			this.segments = new ArrayList<>();
+			this.mappedSize = 0;
+			writeHeader();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.size = 0;
+		Arrays.fill(this.urlTable, 0);
+		this.sourcePages.clear();
+		this.sampleablePages.clear();
+		this.allSampleablePages = new IntList();
+		this.specKeyPages.clear();
+		this.linkedWebsitePages.clear();
+		this.schemas.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/*
+	 * INDEXES
+	 */
+
+	private int index(SourceProductPage page, long position) {
+		int id = this.size++;
+		if (id == this.offsets.length) {
+			this.offsets = Arrays.copyOf(this.offsets, 2 * id);
+			this.urlHashes = Arrays.copyOf(this.urlHashes, 2 * id);
+			this.flags = Arrays.copyOf(this.flags, 2 * id);
+		}
+		this.offsets[id] = position;
+		this.urlHashes[id] = page.getUrl().hashCode();
+		String category = page.getSource().getCategory();
+		String website = page.getSource().getWebsite();
+		boolean hasSpecs = !page.getSpecifications().isEmpty();
+		boolean hasLinkage = !page.getLinkage().isEmpty();
+		this.flags[id] = (byte) ((hasSpecs ? HAS_SPECS : 0) | (hasLinkage ? HAS_LINKAGE : 0));
+
+		if (2 * this.size > this.urlTable.length)
+			rehash(2 * this.urlTable.length);
+		else
+			putUrl(this.urlTable, id);
+		this.sourcePages.computeIfAbsent(category, c -> new LinkedHashMap<>())
+				.computeIfAbsent(website, w -> new IntList()).add(id);
+		if (hasSpecs && hasLinkage) {
+			this.sampleablePages.computeIfAbsent(category, c -> new IntList()).add(id);
+			this.allSampleablePages.add(id);
+		}
+		Map<String, IntList> categorySpecKeys = this.specKeyPages.computeIfAbsent(category, c -> new HashMap<>());
+		for (String key : page.getSpecifications().keySet())
+			categorySpecKeys.computeIfAbsent(key, k -> new IntList()).add(id);
+		Map<String, IntList> categoryLinkedWebsites = this.linkedWebsitePages.computeIfAbsent(category,
+				c -> new HashMap<>());
+		for (String linkedWebsite : MongoDbUtils.getLinkedWebsites(page.getLinkage()))
+			categoryLinkedWebsites.computeIfAbsent(linkedWebsite, w -> new IntList()).add(id);
+		this.schemas.computeIfAbsent(category, c -> new LinkedHashMap<>())
+				.computeIfAbsent(website, w -> new TreeSet<>()).addAll(page.getSpecifications().keySet());
+		return id;
+	}
+
+	private void rehash(int capacity) {
+		int[] table = new int[capacity];
+		for (int id = 0; id < this.size; id++)
+			putUrl(table, id);
+		this.urlTable = table;
+	}
+
+	/**
+	 * Linear probing: pages with the same url are found in order of insertion
+	 */
+	private void putUrl(int[] table, int id) {
+		int mask = table.length - 1;
+		int slot = spread(this.urlHashes[id]) & mask;
+		while (table[slot] != 0)
+			slot = (slot + 1) & mask;
+		table[slot] = id + 1;
+	}
+
+	private static int spread(int hash) {
+		hash *= 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * @return ids of the pages with the url, in order of insertion
+	 */
+	public int[] getPagesWithUrl(String url) {
+		int hash = url.hashCode();
+		int[] table = this.urlTable;
+		int mask = table.length - 1;
+		IntList pages = new IntList();
+		for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int id = table[slot] - 1;
+			if (this.urlHashes[id] == hash && url.equals(readUrl(id)))
+				pages.add(id);
+		}
+		return pages.toArray();
+	}
+
+	/**
+	 * @return ids of the pages of the source, in order of insertion
+	 */
+	public int[] getPagesOfSource(String category, String website) {
+		IntList pages = this.sourcePages.getOrDefault(category, Collections.emptyMap()).get(website);
+		return pages == null ? new int[0] : pages.toArray();
+	}
+
+	/**
+	 * @return websites of the category, in order of insertion of their first page
+	 */
+	public List<String> getWebsites(String category) {
+		return new ArrayList<>(this.sourcePages.getOrDefault(category, Collections.emptyMap()).keySet());
+	}
+
+	/**
+	 * @param category
+	 *            null for all the categories
+	 * @return ids of the pages with attributes and linkage
+	 */
+	public int[] getSampleablePages(String category) {
+		IntList pages = category == null ? this.allSampleablePages : this.sampleablePages.get(category);
+		return pages == null ? new int[0] : pages.toArray();
+	}
+
+	/**
+	 * @return ids of the pages of the category with the attribute
+	 */
+	public int[] getPagesWithSpecKey(String category, String attribute) {
+		IntList pages = this.specKeyPages.getOrDefault(category, Collections.emptyMap()).get(attribute);
+		return pages == null ? new int[0] : pages.toArray();
+	}
+
+	/**
+	 * @return ids of the pages of the category linked with a page of the website
+	 */
+	public int[] getPagesLinkedWithWebsite(String category, String website) {
+		IntList pages = this.linkedWebsitePages.getOrDefault(category, Collections.emptyMap()).get(website);
+		return pages == null ? new int[0] : pages.toArray();
+	}
+
+	/**
+	 * @return category --> website --> attributes of the pages of the source
+	 */
+	public Map<String, Map<String, Set<String>>> getSchemas() {
+		return this.schemas;
+	}
+
+	public boolean hasSpecs(int id) {
+		return (this.flags[id] & HAS_SPECS) != 0;
+	}
+
+	public boolean hasLinkage(int id) {
+		return (this.flags[id] & HAS_LINKAGE) != 0;
+	}
+
+	/**
+	 * @return number of pages
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/*
+	 * RECORDS
+	 */
+
+	public SourceProductPage getPage(int id) {
+		return decode(readRecord(id));
+	}
+
+	private String readUrl(int id) {
+		return readString(readRecord(id));
+	}
+
+	private ByteBuffer readRecord(int id) {
+		long position = this.offsets[id];
+		return read(position + 4, read(position, 4).getInt());
+	}
+
+	private static byte[] encode(SourceProductPage page) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			writeString(out, page.getUrl());
+			writeString(out, page.getSource().getCategory());
+			writeString(out, page.getSource().getWebsite());
+			out.writeInt(page.getIds().size());
+			for (int id : page.getIds())
+				out.writeInt(id);
+			out.writeInt(page.getLinkage().size());
+			for (String url : page.getLinkage())
+				writeString(out, url);
+			out.writeInt(page.getSpecifications().size());
+			for (Entry<String, String> spec : page.getSpecifications().entrySet()) {
+				writeString(out, spec.getKey());
+				writeString(out, spec.getValue());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static SourceProductPage decode(ByteBuffer record) {
+		String url = readString(record);
+		String category = readString(record);
+		String website = readString(record);
+		SourceProductPage page = new SourceProductPage(category, url, website);
+		List<Integer> ids = new ArrayList<>();
+		for (int i = record.getInt(); i > 0; i--)
+			ids.add(record.getInt());
+		page.setIds(ids);
+		List<String> linkage = new ArrayList<>();
+		for (int i = record.getInt(); i > 0; i--)
+			linkage.add(readString(record));
+		page.setLinkage(linkage);
+		for (int i = record.getInt(); i > 0; i--)
+			page.addAttributeValue(readString(record), readString(record));
+		return page;
+	}
+
+	/**
+	 * Length (-1 for null) and UTF-8 bytes, strings are not limited to 64KB as
+	 * with {@link DataOutputStream#writeUTF(String)}
+	 */
+	static void writeString(DataOutputStream out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0)
+			return null;
+		String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+				StandardCharsets.UTF_8);
+		buffer.position(buffer.position() + length);
+		return string;
+	}
+
+	/*
+	 * FILE ACCESS
+	 */
+
+	/**
+	 * @return bytes of the file from the position, read from the mapped regions
+	 */
+	private ByteBuffer read(long position, int length) {
+		if (position + length > this.mappedSize)
+			ensureMapped(position + length);
+		List<MappedByteBuffer> mapped = this.segments;
+		byte[] bytes = new byte[length];
+		int read = 0;
+		while (read < length) {
+			// duplicates, as positions of the shared buffers are not thread safe
+			ByteBuffer segment = mapped.get((int) (position / this.segmentSize)).duplicate();
+			segment.position((int) (position % this.segmentSize));
+			int n = Math.min(length - read, segment.remaining());
+			segment.get(bytes, read, n);
+			read += n;
+			position += n;
+		}
+		return ByteBuffer.wrap(bytes);
+	}
+
+	private synchronized void ensureMapped(long end) {
+		if (end <= this.mappedSize)
+			return;
+		try {
+			remap();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Maps the regions appended since the last mapping
+	 */
+	private void remap() throws IOException {
+		List<MappedByteBuffer> mapped = new ArrayList<>(this.segments);
+		if (!mapped.isEmpty() && mapped.get(mapped.size() - 1).capacity() < this.segmentSize)
+			mapped.remove(mapped.size() - 1);
+		for (long start = (long) mapped.size() * this.segmentSize; start < this.fileSize; start += this.segmentSize)
+			mapped.add(this.channel.map(FileChannel.MapMode.READ_ONLY, start,
+					Math.min(this.segmentSize, this.fileSize - start)));
+		this.segments = mapped;
+		this.mappedSize = this.fileSize;
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = this.channel.read(buffer, position);
+			if (n < 0)
+				throw new IOException("Unexpected end of the page store");
+			position += n;
+		}
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining())
+			position += this.channel.write(buffer, position);
+	}
+
+	/**
+	 * Growable list of ints, without boxing
+	 */
+	private static class IntList {
+		private int[] values = new int[8];
+		private int size;
+
+		void add(int value) {
+			if (this.size == this.values.length)
+				this.values = Arrays.copyOf(this.values, 2 * this.size);
+			this.values[this.size++] = value;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(this.values, this.size);
+		}
+	}
+}
@@ -11,6 +11,7 @@ import java.util.Random;
 import java.util.Set;
 
 import connectors.dao.SyntheticDatasetDao;
+import matcher.LinkageOrderEngine;
 import model.CatalogueProductPage;
 import model.HeadOrTail;
 import model.SourceProductPage;
@@ -524,43 +525,16 @@ public class SourcesGenerator {
 		return syntheticSources;
 	}
 
-	// returns a list of source names ordered by linkage with the previous
-	// sources
+	/**
+	 * @return sources ordered by linkage with the previous sources (the first is
+	 *         the first provided, in case of same linkage the source provided
+	 *         first comes first), see {@link LinkageOrderEngine}
+	 */
 	public List<SyntheticSource> getLinkageOrder(List<SyntheticSource> sourcesNames) {
-		List<SyntheticSource> orderedSources = new ArrayList<>();
-		List<SyntheticSource> sources2Visit = new ArrayList<>(sourcesNames);
-		// the first is the one with the most product pages
-		orderedSources.add(sourcesNames.get(0));
-		sources2Visit.remove(sourcesNames.get(0));
-
-		// each iteration adds a new source to orderedSources
-		while (sources2Visit.size() > 0) {
-			int maxLinkage = -1;
-			SyntheticSource source = null;
-			// Set of product ids of the sources in orderedSources
-			Set<Integer> idsInPrevSources = new HashSet<>();
-			for (SyntheticSource s : orderedSources) {
-				idsInPrevSources.addAll(this.source2Ids.get(s));
-			}
-			/*
-			 * each iteration searches for the source with the most linkage towards the
-			 * sources in orderedSources
-			 */
-			for (int j = 0; j < sources2Visit.size(); j++) {
-				SyntheticSource currentSource = sources2Visit.get(j);
-				Set<Integer> idsInCurrentSource = new HashSet<>(this.source2Ids.get(currentSource));
-				idsInCurrentSource.retainAll(idsInPrevSources);
-				int linkage = idsInCurrentSource.size();
-				if (linkage > maxLinkage) {
-					source = currentSource;
-					maxLinkage = linkage;
-				}
-			}
-			orderedSources.add(source);
-			sources2Visit.remove(source);
-		}
-
-		return orderedSources;
+		LinkageOrderEngine<SyntheticSource> engine = new LinkageOrderEngine<>();
+		for (SyntheticSource source : sourcesNames)
+			engine.addSource(source, this.source2Ids.get(source).stream().mapToInt(Integer::intValue).toArray());
+		return engine.getLinkageOrder();
 	}
 
 	// generates the complete sources and returns attributes' linkage info
@@ -1,24 +1,45 @@
 package launchers;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import connectors.FileDataConnector;
-import connectors.MongoDbConnectionFactory;
 import connectors.RConnector;
 import connectors.dao.AlignmentDao;
-import connectors.dao.MongoAlignmentDao;
+import connectors.dao.AlignmentDaoFactory;
+import connectors.dao.CachingAlignmentDao;
+import matcher.CandidatePairsGeneratorFactory;
 import matcher.CategoryMatcher;
+import matcher.ClonedSourcesFinder;
+import matcher.Classifier;
+import matcher.Classifier.ClassifierEngine;
+import matcher.FeaturesBuilder;
+import matcher.LinkageOrderEngine;
+import matcher.LogisticRegressionClassifier;
+import matcher.LogisticRegressionTrainer;
+import matcher.MatchSelector;
 import matcher.TrainingSetGenerator;
 import model.Source;
 import models.generator.Configurations;
 import models.generator.LaunchConfiguration;
 import models.matcher.Schema;
+import models.matcher.SchemaCheckpoint;
 
 /**
  * Main class for the Agrawal dataset alignment algorithm
@@ -31,15 +52,6 @@ import models.matcher.Schema;
  */
 public class DatasetAlignmentAlgorithm {
 
-	/**
-	 * List of websites in real dataset, ordered by linkage. In the dataset we
-	 * already have a Schemas collection with sources, BUT we don't have the good
-	 * order.
-	 */
-	// TODO 1 move to configuration 2 COMPUTE this order using dataset
-	private static final List<String> WEBSITES_SORTED_REAL_DATASET = Arrays.asList("gosale.com", "price-hunt.com",
-			"shopping.dealtime.com");
-
 	/**
 	 * Se TRUE, gli attributi delle sorgenti che non matchano con nessun attributo
 	 * del catalogo vengono scartati. 
@@ -58,9 +70,7 @@ public class DatasetAlignmentAlgorithm {
 	 */
 	public static  DatasetAlignmentAlgorithm datasetAlignmentFactory(LaunchConfiguration lc) {
 		RConnector r = new RConnector(lc.getConf().getModelPath());
-		MongoDbConnectionFactory factory = MongoDbConnectionFactory.getMongoInstance(lc.getConf().getMongoURI(),
-				lc.getConf().getDatabaseName());
-		AlignmentDao dao = new MongoAlignmentDao(factory);
+		AlignmentDao dao = AlignmentDaoFactory.buildAlignmentDao(lc.getConf());
 		DatasetAlignmentAlgorithm algorithm = new DatasetAlignmentAlgorithm(dao, lc.getFdc(), r, lc.getConf());
 		return algorithm;
 	}
@@ -75,30 +85,18 @@ public class DatasetAlignmentAlgorithm {
 	
 	public Schema launchAlgorithmOnSyntheticDataset(List<String> sourcesByLinkage) {
 		try {
-			r.start();
-			List<String> categories = config.getCategories();
+			List<String> categories = getCategoriesToAlign();
 			// Training / model loading
-			if (config.isAlreadyTrained()) {
-				System.out.println("LOADING DEL MODEL");
-				r.loadModel();
-				System.out.println("FINE LOADING DEL MODEL");
-			} else {
+			Classifier classifier = prepareClassifier(() -> {
 				System.out.println("INIZIO GENERAZIONE TRAINING SET");
 				// As we are in Synthetic dataset, there are no cloned sources
 				Map<String, List<String>> tSet = generateTrainingSets(categories, new HashMap<String, List<String>>());
-				fdc.printTrainingSet("trainingSet", tSet.get(categories.get(0)));
-				System.out.println("FINE GENERAZIONE TRAINING SET - INIZIO TRAINING");
-				r.train(config.getTrainingSetPath() + "/trainingSet.csv");
-				System.out.println("FINE TRAINING");
-			}
+				return printTrainingSets(categories, tSet);
+			});
 	
 			// Classification
-			System.out.println("INIZIO GENERAZIONE SCHEMA");
-			CategoryMatcher cm = new CategoryMatcher(this.dao, r);
-			Schema schema = launchClassification(sourcesByLinkage, categories.get(0), cm, 0, true, WITH_REFERENCE);
-			fdc.printMatchSchema("clusters", schema);
-			System.out.println("FINE GENERAZIONE SCHEMA");
-			return schema;
+			Map<String, Schema> schemas = launchClassifications(category -> sourcesByLinkage, categories, classifier);
+			return schemas.get(categories.get(0));
 		} finally {
 			r.stop();
 		}
@@ -106,88 +104,272 @@ public class DatasetAlignmentAlgorithm {
 
 	public void launchAlgorithmOnRealDataset() {
 		try {
-			r.start();
 			// si possono definire più categorie nel fine di configurazione
-			List<String> categories = config.getCategories();
+			List<String> categories = getCategoriesToAlign();
 			// Training / model loading
-			if (config.isAlreadyTrained()) {
-				System.out.println("LOADING DEL MODEL");
-				r.loadModel();
-				System.out.println("FINE LOADING DEL MODEL");
-			} else {
+			Classifier classifier = prepareClassifier(() -> {
 				System.out.println("INIZIO GENERAZIONE TRAINING SET");
-				String csPath = config.getTrainingSetPath() + "/clones.csv";
-				fdc.printClonedSources("clones", findClonedSources(categories));
-				Map<String, List<String>> clonedSources = fdc.readClonedSources(csPath);
+				Map<String, List<String>> clonedSources = findClonedSources(categories);
 				Map<String, List<String>> tSet = generateTrainingSets(categories, clonedSources);
-				fdc.printTrainingSet("trainingSet", tSet.get(categories.get(0)));
-				System.out.println("FINE GENERAZIONE TRAINING SET - INIZIO TRAINING");
-				r.train(config.getTrainingSetPath() + "/trainingSet.csv");
-				System.out.println("FINE TRAINING");
-			}
+				return printTrainingSets(categories, tSet);
+			});
 			// Classification
-			System.out.println("INIZIO GENERAZIONE SCHEMA");
-			CategoryMatcher cm = new CategoryMatcher(this.dao, r);
-			Schema schema = launchClassification(WEBSITES_SORTED_REAL_DATASET, categories.get(0), cm, 0, true,
-					WITH_REFERENCE);
-			fdc.printMatchSchema("clusters", schema);
-			System.out.println("FINE GENERAZIONE SCHEMA");
+			launchClassifications(this::getWebsitesByLinkage, categories, classifier);
 		} finally {
 			r.stop();
 		}
 	}
 
+	/**
+	 * @return all the categories of the configuration in multi-category mode,
+	 *         otherwise only the first one
+	 */
+	private List<String> getCategoriesToAlign() {
+		List<String> categories = config.getCategories();
+		return config.isAlignAllCategories() ? categories : categories.subList(0, 1);
+	}
+
+	/**
+	 * Prints the training set used for the model (union of the training sets of
+	 * the categories) and, in multi-category mode, the one of each category
+	 * 
+	 * @return rows of the training set used for the model
+	 */
+	private List<String> printTrainingSets(List<String> categories, Map<String, List<String>> tSet) {
+		List<String> trainingSet = new ArrayList<>();
+		for (String category : categories) {
+			trainingSet.addAll(tSet.get(category));
+			if (categories.size() > 1)
+				fdc.printTrainingSet("trainingSet_" + category, tSet.get(category));
+		}
+		fdc.printTrainingSet("trainingSet", trainingSet);
+		return trainingSet;
+	}
+
+	/**
+	 * Alignment of each category (in parallel, see
+	 * {@link Configurations#getCategoryThreads()}), each with its own
+	 * {@link CategoryMatcher}. The clusters of a category are printed as soon as
+	 * it is aligned, in "clusters" if there is a single category, else in
+	 * "clusters_[category]"
+	 * 
+	 * @param websitesByLinkage
+	 *            category --> its websites in linkage order
+	 * @return category --> schema
+	 */
+	private Map<String, Schema> launchClassifications(Function<String, List<String>> websitesByLinkage,
+			List<String> categories, Classifier classifier) {
+		System.out.println("INIZIO GENERAZIONE SCHEMA");
+		Map<String, Schema> schemas = computeForEachCategory(categories, category -> {
+			long start = System.currentTimeMillis();
+			CategoryMatcher cm = new CategoryMatcher(this.dao, classifier, config.getMatcherThreads(),
+					CandidatePairsGeneratorFactory.buildCandidatePairsGenerator(config),
+					new MatchSelector(config.getMatchSelectionType()));
+			cm.setIncrementalCatalog(config.isIncrementalCatalog());
+			Schema schema;
+			try {
+				schema = launchClassification(websitesByLinkage.apply(category), category, cm, 0, true,
+						WITH_REFERENCE);
+			} finally {
+				cm.shutdown();
+			}
+			fdc.printMatchSchema(categories.size() > 1 ? "clusters_" + category : "clusters", schema);
+			System.out.println("SCHEMA DI " + category.toUpperCase() + " GENERATO IN "
+					+ (System.currentTimeMillis() - start) + " ms");
+			return schema;
+		});
+		System.out.println("FINE GENERAZIONE SCHEMA");
+		return schemas;
+	}
+
+	/**
+	 * Computes the task for each category, on a pool of at most
+	 * {@link Configurations#getCategoryThreads()} threads (categories are
+	 * independent)
+	 * 
+	 * @return category --> result, in order of categories
+	 */
+	private <T> Map<String, T> computeForEachCategory(List<String> categories, Function<String, T> task) {
+		Map<String, T> results = new LinkedHashMap<>();
+		int threads = config.getCategoryThreads() <= 0 ? Runtime.getRuntime().availableProcessors()
+				: config.getCategoryThreads();
+		threads = Math.min(threads, categories.size());
+		if (threads <= 1) {
+			for (String category : categories)
+				results.put(category, task.apply(category));
+			return results;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<T>> futures = new ArrayList<>();
+			for (String category : categories)
+				futures.add(pool.submit(() -> task.apply(category)));
+			for (int i = 0; i < categories.size(); i++)
+				results.put(categories.get(i), futures.get(i).get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while aligning the categories", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * Training (or loading) of the model.
+	 * <p>
+	 * With the JAVA engine the model is trained in the JVM, and R is started
+	 * only to export the coefficients of an R model already trained. With the R
+	 * engine, the coefficients of the model are exported after training or
+	 * loading.
+	 * 
+	 * @param trainingSetGenerator
+	 *            prints and returns the rows of the training set, if the model
+	 *            has to be trained
+	 * @return the classifier to be used in the classification
+	 */
+	private Classifier prepareClassifier(Supplier<List<String>> trainingSetGenerator) {
+		boolean javaEngine = config.getClassifierEngine() == ClassifierEngine.JAVA;
+		String coefficientsPath = config.getCoefficientsPath();
+		if (javaEngine && coefficientsPath == null)
+			throw new IllegalStateException("coefficientsPath is needed by the JAVA classifier engine");
+		if (javaEngine && config.isAlreadyTrained() && new File(coefficientsPath).exists()) {
+			System.out.println("LOADING DEI COEFFICIENTI DEL MODEL");
+			return new LogisticRegressionClassifier(fdc.readModelCoefficients(coefficientsPath));
+		}
+		if (javaEngine && !config.isAlreadyTrained()) {
+			List<String> trainingSet = trainingSetGenerator.get();
+			System.out.println("FINE GENERAZIONE TRAINING SET - INIZIO TRAINING");
+			LogisticRegressionClassifier classifier = new LogisticRegressionTrainer(
+					config.getCrossValidationThreads()).train(trainingSet);
+			fdc.printModelCoefficients(coefficientsPath, classifier);
+			System.out.println("FINE TRAINING");
+			return classifier;
+		}
+
+		r.start();
+		if (config.isAlreadyTrained()) {
+			System.out.println("LOADING DEL MODEL");
+			r.loadModel();
+			System.out.println("FINE LOADING DEL MODEL");
+		} else {
+			trainingSetGenerator.get();
+			System.out.println("FINE GENERAZIONE TRAINING SET - INIZIO TRAINING");
+			r.train(config.getTrainingSetPath() + "/trainingSet.csv");
+			System.out.println("FINE TRAINING");
+		}
+		if (coefficientsPath != null)
+			r.exportCoefficients(coefficientsPath);
+		if (!javaEngine)
+			return r;
+		r.stop();
+		return new LogisticRegressionClassifier(fdc.readModelCoefficients(coefficientsPath));
+	}
+
+	/**
+	 * Order of the websites of the real dataset, computed on the linkage of
+	 * their pages (see {@link LinkageOrderEngine})
+	 */
+	private List<String> getWebsitesByLinkage(String category) {
+		long start = System.currentTimeMillis();
+		List<String> websites = LinkageOrderEngine.fromLinkage(this.dao.getSourcesLinkage(category))
+				.getLinkageOrder();
+		System.out.println("ORDINE DI " + websites.size() + " SORGENTI DI " + category.toUpperCase()
+				+ " CALCOLATO IN " + (System.currentTimeMillis() - start) + " ms");
+		return websites;
+	}
+
+	/**
+	 * Alignment of the websites of a category, one source at a time. Every
+	 * {@link Configurations#getCheckpointInterval()} sources (and at the end) the
+	 * state is saved in a {@link SchemaCheckpoint}; in resume mode the alignment
+	 * restarts from the last checkpoint of the category, if present.
+	 */
 	// cardinality parameter is currently useless
 	private Schema launchClassification(List<String> orderedWebsites, String category, CategoryMatcher cm,
 			int cardinality, boolean useMI, boolean matchToOne) {
 		
+		int interval = config.getCheckpointInterval();
+		Path checkpointPath = interval > 0 || config.isResume()
+				? Paths.get(config.getCheckpointPath(), "checkpoint_" + category + ".bin")
+				: null;
 		String catalogueSourceName = orderedWebsites.get(0);
 		Schema schema = new Schema(catalogueSourceName);
+		int completedSources = 1;
+		if (config.isResume() && Files.exists(checkpointPath)) {
+			SchemaCheckpoint checkpoint = readCheckpoint(checkpointPath);
+			if (!checkpoint.getCategory().equals(category)
+					|| !checkpoint.getOrderedWebsites().equals(orderedWebsites))
+				throw new IllegalStateException(
+						"Checkpoint " + checkpointPath + " was saved with a different order of the websites");
+			schema = checkpoint.getSchema();
+			completedSources = checkpoint.getCompletedSources();
+			System.out.println("RIPRESA DI " + category.toUpperCase() + " DALLA SORGENTE " + completedSources);
+		}
+		// getMatch removes the source to be matched, the catalog is always the first source
 		List<String> currentMatchSources = new ArrayList<>();
 		currentMatchSources.add(catalogueSourceName);
 		// match su tutte le altre sorgenti
-		for (int i = 1; i < orderedWebsites.size(); i++) {
+		for (int i = completedSources; i < orderedWebsites.size(); i++) {
 			System.out.println("-->" + orderedWebsites.get(i) + "<-- (" + i + ")");
 			currentMatchSources.add(orderedWebsites.get(i));
 			cm.getMatch(currentMatchSources, category, cardinality, schema, useMI, matchToOne);
+			if (interval > 0 && (i % interval == 0 || i == orderedWebsites.size() - 1))
+				writeCheckpoint(checkpointPath, new SchemaCheckpoint(category, orderedWebsites, i + 1, schema));
 		}
 
 		return schema;
 	}
 
+	private SchemaCheckpoint readCheckpoint(Path path) {
+		try {
+			return SchemaCheckpoint.read(path);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read checkpoint " + path, e);
+		}
+	}
+
+	private void writeCheckpoint(Path path, SchemaCheckpoint checkpoint) {
+		try {
+			Files.createDirectories(path.getParent());
+			checkpoint.write(path);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to write checkpoint " + path, e);
+		}
+	}
+
 	/**
 	 * checks the schemas of the sources in the selected categories and returns the
 	 * couples of sources with schemas that have an overlap of attribute (based on
-	 * their names) above 50% of the smallest of the two sources.
+	 * their names) above 50% of the smallest of the two sources (see
+	 * {@link ClonedSourcesFinder}). They are printed in "clones" if
+	 * {@link Configurations#isPrintClonedSources()}.
+	 * 
+	 * @return source --> its clones, sources rendered as in
+	 *         {@link FileDataConnector#readClonedSources(String)}
 	 */
-	private Map<Source, List<Source>> findClonedSources(List<String> categories) {
-		Map<Source, List<Source>> clonedSources = new HashMap<>();
-		Map<Source, List<String>> sourceSchemas = this.dao.getSchemas(categories);
-
-		for (Source source1 : sourceSchemas.keySet()) {
-			List<String> attributes1 = sourceSchemas.get(source1);
-			for (Source source2 : sourceSchemas.keySet()) {
-				if (source1.equals(source2))
-					continue;
-				if (!source1.getCategory().equals(source2.getCategory()))
-					continue;
-				List<String> attributes2 = sourceSchemas.get(source2);
-				double minSize = (attributes1.size() > attributes2.size()) ? attributes2.size() : attributes1.size();
-				Set<String> intersection = new HashSet<>(attributes1);
-				intersection.retainAll(attributes2);
-				if (intersection.size() >= (minSize / 2)) {
-					List<Source> clones = clonedSources.getOrDefault(source1, new ArrayList<>());
-					clones.add(source2);
-					clonedSources.put(source1, clones);
-				}
-			}
-		}
+	private Map<String, List<String>> findClonedSources(List<String> categories) {
+		long start = System.currentTimeMillis();
+		Map<Source, List<Source>> clones = new ClonedSourcesFinder()
+				.findClonedSources(this.dao.getSchemas(categories));
+		System.out.println("SORGENTI CLONATE TROVATE IN " + (System.currentTimeMillis() - start) + " ms");
+		if (config.isPrintClonedSources())
+			fdc.printClonedSources("clones", clones);
 
+		Map<String, List<String>> clonedSources = new HashMap<>();
+		clones.forEach((source, sourceClones) -> clonedSources.put(source.toString(),
+				sourceClones.stream().map(Source::toString).collect(Collectors.toList())));
 		return clonedSources;
 	}
 
 	/**
-	 * Launch the generation of tranining sets (cf {@link TrainingSetGenerator})
+	 * Launch the generation of tranining sets (cf {@link TrainingSetGenerator}),
+	 * one category per thread (see {@link #computeForEachCategory})
 	 * 
 	 * @param mdbc
 	 * @param categories
@@ -197,10 +379,15 @@ public class DatasetAlignmentAlgorithm {
 	private Map<String, List<String>> generateTrainingSets(List<String> categories,
 			Map<String, List<String>> clonedSources) {
 
-		TrainingSetGenerator tsg = new TrainingSetGenerator(this.dao, clonedSources);
-		Map<String, List<String>> trainingSets = new HashMap<>();
-
-		for (String category : categories) {
+		return computeForEachCategory(categories, category -> {
+			long start = System.currentTimeMillis();
+			// one generator (and cache) per category, as the features builder is not shared between threads
+			CachingAlignmentDao cache = null;
+			if (config.getTrainingCacheSize() > 0)
+				cache = new CachingAlignmentDao(this.dao, config.getTrainingCacheSize(),
+						config.getTrainingPageCacheSize());
+			TrainingSetGenerator tsg = new TrainingSetGenerator(new FeaturesBuilder(), cache != null ? cache : this.dao,
+					clonedSources, config.getTrainingThreads(), config.getMaxConcurrentDaoCalls());
 			System.out.println(category.toUpperCase());
 			/*
 			 * FIXME: non ha senso avere 2 numeri fissi (300 = quantità di sample, e
@@ -209,10 +396,13 @@ public class DatasetAlignmentAlgorithm {
 			 * calcolati in funzione delle altre dimensioni, anche se questo calcolo non è
 			 * semplice da definire
 			 */
-			trainingSets.put(category, tsg.getTrainingSetWithTuples(300, 10000, true, 0.25, category));
-		}
-
-		return trainingSets;
+			List<String> trainingSet = tsg.getTrainingSetWithTuples(300, 10000, true, 0.25, category);
+			System.out.println("TRAINING SET DI " + category.toUpperCase() + " GENERATO IN "
+					+ (System.currentTimeMillis() - start) + " ms");
+			if (cache != null)
+				System.out.println("Cache DAO di " + category + ": " + cache);
+			return trainingSet;
+		});
 	}
 
 	public AlignmentDao getDao() {
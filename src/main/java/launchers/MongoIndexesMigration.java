@@ -0,0 +1,82 @@
+package launchers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+
+import connectors.MongoDbConnectionFactory;
+import connectors.MongoDbUtils;
+import models.generator.Configurations;
+import models.generator.LaunchConfiguration;
+
+/**
+ * Adds to an existing Products collection (e.g. a real dataset loaded outside
+ * of this project) the derived fields and the indexes that synthetic datasets
+ * get at upload time (see {@link connectors.dao.MongoSyntheticDao}).
+ * <p>
+ * Only documents without the derived fields are updated, so the migration can
+ * be interrupted and launched again.
+ */
+public class MongoIndexesMigration {
+
+	private static final int BATCH_SIZE = 1000;
+
+	public static void main(String[] args) {
+		Configurations conf = LaunchConfiguration.setupConfiguration(args).getConf();
+		MongoDatabase database = MongoDbConnectionFactory.getMongoInstance(conf.getMongoURI(), conf.getDatabaseName())
+				.getDatabase();
+		MongoCollection<Document> products = database.getCollection(MongoDbUtils.PRODUCTS_COLLECTION_NAME);
+		System.out.println("INIZIO MIGRAZIONE");
+		int updated = addDerivedFields(products);
+		System.out.println("Added derived fields to " + updated + " pages");
+		MongoDbUtils.createProductsIndexes(products);
+		System.out.println("FINE MIGRAZIONE");
+	}
+
+	/**
+	 * @return number of updated pages
+	 */
+	@SuppressWarnings("unchecked")
+	private static int addDerivedFields(MongoCollection<Document> products) {
+		List<WriteModel<Document>> updates = new ArrayList<>();
+		int updated = 0;
+		Bson missingFilter = Filters.or(Filters.exists(MongoDbUtils.LINKED_WEBSITES, false),
+				Filters.exists(MongoDbUtils.SPEC_KEYS, false), Filters.exists(MongoDbUtils.RANDOM, false));
+		for (Document d : products.find(missingFilter)
+				.projection(Projections.include(MongoDbUtils.LINKAGE, MongoDbUtils.SPECS))) {
+			List<String> linkage = d.get(MongoDbUtils.LINKAGE, List.class);
+			List<String> linkedWebsites = MongoDbUtils
+					.getLinkedWebsites(linkage != null ? linkage : new ArrayList<>());
+			Document specs = d.get(MongoDbUtils.SPECS, Document.class);
+			List<String> specKeys = specs != null ? new ArrayList<>(specs.keySet()) : new ArrayList<>();
+			updates.add(new UpdateOneModel<>(Filters.eq("_id", d.get("_id")),
+					Updates.combine(Updates.set(MongoDbUtils.LINKED_WEBSITES, linkedWebsites),
+							Updates.set(MongoDbUtils.SPEC_KEYS, specKeys),
+							Updates.set(MongoDbUtils.RANDOM, ThreadLocalRandom.current().nextDouble()),
+							Updates.set(MongoDbUtils.HAS_SPECS, !specKeys.isEmpty()),
+							Updates.set(MongoDbUtils.HAS_LINKAGE, !linkedWebsites.isEmpty()))));
+			if (updates.size() == BATCH_SIZE) {
+				products.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+				updated += updates.size();
+				updates.clear();
+			}
+		}
+		if (!updates.isEmpty()) {
+			products.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+			updated += updates.size();
+		}
+		return updated;
+	}
+}
@@ -5,6 +5,8 @@ import java.util.Map;
 import java.util.Scanner;
 
 import connectors.MongoDbConnectionFactory;
+import connectors.dao.AlignmentDaoFactory.AlignmentDaoType;
+import connectors.dao.FileAlignmentDao;
 import connectors.dao.MongoSyntheticDao;
 import connectors.dao.SyntheticDatasetDao;
 import generator.CatalogueGenerator;
@@ -56,9 +58,14 @@ public class SyntheticDatasetGenerator {
 		} else
 			stringGenerator = new DictionaryStringGenerator(path);
 		
-		MongoDbConnectionFactory factory = MongoDbConnectionFactory.getMongoInstance(lc.getConf().getMongoURI(),
-				lc.getConf().getDatabaseName());
-		MongoSyntheticDao dao = new MongoSyntheticDao(factory);
+		SyntheticDatasetDao dao;
+		if (lc.getConf().getDaoType() == AlignmentDaoType.FILE) {
+			dao = FileAlignmentDao.getInstance(lc.getConf().getStorePath());
+		} else {
+			MongoDbConnectionFactory factory = MongoDbConnectionFactory.getMongoInstance(lc.getConf().getMongoURI(),
+					lc.getConf().getDatabaseName());
+			dao = new MongoSyntheticDao(factory);
+		}
 		
 		SyntheticDatasetGenerator sdg = new SyntheticDatasetGenerator(lc.getConf(), stringGenerator, 
 				dao);
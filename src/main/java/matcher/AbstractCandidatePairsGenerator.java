@@ -0,0 +1,104 @@
+package matcher;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.AbstractProductPage.Specifications;
+import model.SourceProductPage;
+import models.matcher.BitmapPostingList;
+import models.matcher.InvertedIndexesManager;
+import models.matcher.TokenCache;
+
+/**
+ * Common part of the {@link CandidatePairsGenerator}s: keeps statistics on
+ * pruned pairs and extracts the value tokens of attributes
+ *
+ */
+public abstract class AbstractCandidatePairsGenerator implements CandidatePairsGenerator {
+
+	private AtomicLong prunedPairs = new AtomicLong();
+	private AtomicLong totalPairs = new AtomicLong();
+
+	@Override
+	public Map<Integer, List<Integer>> getCandidates(List<Entry<Specifications, SourceProductPage>> linkedProds,
+			InvertedIndexesManager invIndexes) {
+		Map<Integer, List<Integer>> candidates = selectCandidates(linkedProds, invIndexes);
+
+		long total = (long) invIndexes.getSourceIndex().size() * invIndexes.getCatalogIndex().size();
+		long kept = candidates.values().stream().mapToLong(List::size).sum();
+		this.totalPairs.addAndGet(total);
+		this.prunedPairs.addAndGet(total - kept);
+		if (total > kept)
+			System.out.println(getClass().getSimpleName() + ": pruned " + (total - kept) + " of " + total
+					+ " pairs of attributes");
+
+		return candidates;
+	}
+
+	/**
+	 * @see CandidatePairsGenerator#getCandidates(List, InvertedIndexesManager)
+	 */
+	protected abstract Map<Integer, List<Integer>> selectCandidates(
+			List<Entry<Specifications, SourceProductPage>> linkedProds, InvertedIndexesManager invIndexes);
+
+	@Override
+	public long getPrunedPairs() {
+		return this.prunedPairs.get();
+	}
+
+	@Override
+	public long getTotalPairs() {
+		return this.totalPairs.get();
+	}
+
+	/**
+	 * @return catalog attribute --> distinct tokens of its values in the linked
+	 *         pages, in catalog index order
+	 */
+	protected Map<Integer, Set<String>> getCatalogTokens(List<Entry<Specifications, SourceProductPage>> linkedProds,
+			InvertedIndexesManager invIndexes) {
+		Map<Integer, Set<String>> tokens = new LinkedHashMap<>();
+		for (Entry<Integer, BitmapPostingList> attribute : invIndexes.getCatalogIndex().entrySet()) {
+			String name = invIndexes.getDictionary().getName(attribute.getKey());
+			Set<String> attributeTokens = new HashSet<>();
+			attribute.getValue().forEach(i -> addTokens(attributeTokens, linkedProds.get(i).getKey().get(name)));
+			tokens.put(attribute.getKey(), attributeTokens);
+		}
+		return tokens;
+	}
+
+	/**
+	 * @return source attribute --> distinct tokens of its values in the pages of
+	 *         the new source, in source index order
+	 */
+	protected Map<Integer, Set<String>> getSourceTokens(List<Entry<Specifications, SourceProductPage>> linkedProds,
+			InvertedIndexesManager invIndexes) {
+		Map<Integer, Set<String>> tokens = new LinkedHashMap<>();
+		for (Entry<Integer, BitmapPostingList> attribute : invIndexes.getSourceIndex().entrySet()) {
+			String name = invIndexes.getDictionary().getName(attribute.getKey());
+			Set<String> attributeTokens = new HashSet<>();
+			attribute.getValue().forEach(
+					i -> addTokens(attributeTokens, linkedProds.get(i).getValue().getSpecifications().get(name)));
+			tokens.put(attribute.getKey(), attributeTokens);
+		}
+		return tokens;
+	}
+
+	/**
+	 * Same tokenization used for the features (see {@link TokenCache}), without
+	 * the empty tokens of values with separators at the beginning or at the end,
+	 * which would be shared by unrelated attributes
+	 */
+	private static void addTokens(Set<String> tokens, String value) {
+		if (value == null)
+			return;
+		for (String token : TokenCache.split(value))
+			if (!token.isEmpty())
+				tokens.add(token);
+	}
+}
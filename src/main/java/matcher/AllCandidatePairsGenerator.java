@@ -0,0 +1,29 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import model.AbstractProductPage.Specifications;
+import model.SourceProductPage;
+import models.matcher.InvertedIndexesManager;
+
+/**
+ * No blocking: every source attribute is compared with every catalog attribute
+ *
+ */
+public class AllCandidatePairsGenerator extends AbstractCandidatePairsGenerator {
+
+	@Override
+	protected Map<Integer, List<Integer>> selectCandidates(List<Entry<Specifications, SourceProductPage>> linkedProds,
+			InvertedIndexesManager invIndexes) {
+		List<Integer> catalogAttributes = new ArrayList<>(invIndexes.getCatalogIndex().keySet());
+		Map<Integer, List<Integer>> candidates = new LinkedHashMap<>();
+		for (int sourceAttribute : invIndexes.getSourceIndex().keySet())
+			candidates.put(sourceAttribute, catalogAttributes);
+		return candidates;
+	}
+
+}
@@ -0,0 +1,43 @@
+package matcher;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import model.AbstractProductPage.Specifications;
+import model.SourceProductPage;
+import models.matcher.InvertedIndexesManager;
+
+/**
+ * Blocking stage of the classification: selects the pairs [attribute of new
+ * source, attribute of catalog] on which features are computed and that are
+ * provided to the classifier. All other pairs are considered as non-matching.
+ * 
+ * @see CategoryMatcher
+ * @see CandidatePairsGeneratorFactory
+ *
+ */
+public interface CandidatePairsGenerator {
+
+	/**
+	 * @param linkedProds
+	 *            specifications in catalog (merged) --> linked page
+	 * @param invIndexes
+	 *            indexes of linkedProds for each attribute
+	 * @return source attribute --> catalog attributes to compare with it. Source
+	 *         attributes are provided in the same order as in the source index,
+	 *         catalog attributes in the same order as in the catalog index.
+	 */
+	public Map<Integer, List<Integer>> getCandidates(List<Entry<Specifications, SourceProductPage>> linkedProds,
+			InvertedIndexesManager invIndexes);
+
+	/**
+	 * @return number of pairs pruned since the creation of the generator
+	 */
+	public long getPrunedPairs();
+
+	/**
+	 * @return number of pairs evaluated since the creation of the generator
+	 */
+	public long getTotalPairs();
+}
@@ -0,0 +1,35 @@
+package matcher;
+
+import models.generator.Configurations;
+
+/**
+ * Factory for {@link CandidatePairsGenerator}s
+ *
+ */
+public class CandidatePairsGeneratorFactory {
+
+	/**
+	 * <ul>
+	 * <li>ALL -> no blocking, all pairs of attributes are classified
+	 * <li>TOKENS -> pairs must share value tokens
+	 * <li>MINHASH -> MinHash/LSH on the sets of value tokens
+	 * </ul>
+	 */
+	public enum CandidatePairsGeneratorType {
+		ALL, TOKENS, MINHASH
+	}
+
+	public static CandidatePairsGenerator buildCandidatePairsGenerator(Configurations conf) {
+		switch (conf.getCandidatePairsType()) {
+		case ALL:
+			return new AllCandidatePairsGenerator();
+		case TOKENS:
+			return new TokenCandidatePairsGenerator(conf.getMinSharedTokens());
+		case MINHASH:
+			return new MinHashCandidatePairsGenerator(conf.getMinHashBands(), conf.getMinHashRows(),
+					conf.getMinHashSeed());
+		default:
+			throw new IllegalArgumentException("Unknown candidate pairs generator type");
+		}
+	}
+}
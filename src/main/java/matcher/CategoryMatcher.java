@@ -2,24 +2,24 @@ package matcher;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.bson.Document;
 
-import connectors.RConnector;
 import connectors.dao.AlignmentDao;
 import model.AbstractProductPage.Specifications;
 import model.SourceProductPage;
+import models.matcher.AttributeDictionary;
+import models.matcher.BitmapPostingList;
 import models.matcher.DataFrame;
 import models.matcher.Features;
 import models.matcher.InvertedIndexesManager;
@@ -35,13 +35,82 @@ import models.matcher.Schema;
 public class CategoryMatcher {
 
 	private AlignmentDao dao;
-	private RConnector r;
+	private Classifier classifier;
 	private FeaturesBuilder fb;
+	/** Blocking stage, selects the pairs of attributes to be classified */
+	private CandidatePairsGenerator candidatesGenerator;
+	/** Selects the one-to-one matches among the classified pairs */
+	private MatchSelector matchSelector;
+	/** Pool used to compute pair features in parallel, null if computation is sequential */
+	private ForkJoinPool pool;
+	/** category --> catalog kept in memory, null if the linkage is fetched from scratch at each match */
+	private Map<String, IncrementalCatalog> catalogs;
+
+	public CategoryMatcher(AlignmentDao dao, Classifier classifier) {
+		this(dao, classifier, 1);
+	}
+
+	/**
+	 * @param dao
+	 * @param classifier
+	 *            computes the match probability of the pairs of attributes (R
+	 *            model or its Java scorer)
+	 * @param parallelism
+	 *            number of threads used to compute the features of the pairs of
+	 *            attributes. 1 means sequential computation, 0 or less means one
+	 *            thread per available core
+	 */
+	public CategoryMatcher(AlignmentDao dao, Classifier classifier, int parallelism) {
+		this(dao, classifier, parallelism, new AllCandidatePairsGenerator());
+	}
+
+	/**
+	 * @param dao
+	 * @param classifier
+	 * @param parallelism
+	 *            see {@link #CategoryMatcher(AlignmentDao, Classifier, int)}
+	 * @param candidatesGenerator
+	 *            blocking stage, selects the pairs of attributes whose features
+	 *            are computed and classified
+	 */
+	public CategoryMatcher(AlignmentDao dao, Classifier classifier, int parallelism,
+			CandidatePairsGenerator candidatesGenerator) {
+		this(dao, classifier, parallelism, candidatesGenerator, new MatchSelector());
+	}
 
-	public CategoryMatcher(AlignmentDao dao, RConnector r) {
+	/**
+	 * @param dao
+	 * @param classifier
+	 * @param parallelism
+	 *            see {@link #CategoryMatcher(AlignmentDao, Classifier, int)}
+	 * @param candidatesGenerator
+	 *            see
+	 *            {@link #CategoryMatcher(AlignmentDao, Classifier, int, CandidatePairsGenerator)}
+	 * @param matchSelector
+	 *            selects the one-to-one matches among the classified pairs
+	 */
+	public CategoryMatcher(AlignmentDao dao, Classifier classifier, int parallelism,
+			CandidatePairsGenerator candidatesGenerator, MatchSelector matchSelector) {
 		this.dao = dao;
-		this.r = r;
+		this.classifier = classifier;
 		this.fb = new FeaturesBuilder();
+		this.candidatesGenerator = candidatesGenerator;
+		this.matchSelector = matchSelector;
+		if (parallelism <= 0)
+			parallelism = Runtime.getRuntime().availableProcessors();
+		if (parallelism > 1)
+			this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * @param incrementalCatalog
+	 *            if true, the pages of the catalog are kept in memory between the
+	 *            matches and only the pages of the new source are fetched (see
+	 *            {@link IncrementalCatalog}), otherwise the whole linkage is
+	 *            fetched at each match
+	 */
+	public void setIncrementalCatalog(boolean incrementalCatalog) {
+		this.catalogs = incrementalCatalog ? new HashMap<>() : null;
 	}
 
 	/**
@@ -62,24 +131,33 @@ public class CategoryMatcher {
 	public boolean getMatch(List<String> websites, String category, int cardinality, Schema schemaMatch, boolean useMI,
 			boolean matchToOne) {
 		boolean matched = false;
+		// values are tokenized once per match
+		this.fb.resetTokenCache();
 		// LAST website is the one to be matched with the catalog
 		String newSource = websites.remove(websites.size() - 1);
 		// linked page -> pages in catalog
-		Map<SourceProductPage, List<SourceProductPage>> linkageMap = this.dao.getProdsInRL(websites, category);
+		Map<SourceProductPage, List<SourceProductPage>> linkageMap = this.catalogs == null
+				? this.dao.getProdsInRL(websites, category)
+				: this.catalogs.computeIfAbsent(category, c -> new IncrementalCatalog(this.dao, c))
+						.getProdsInRL(websites, newSource);
 		// check if new source is matchable
 		if (checkIfValidWebsite(newSource, linkageMap.keySet())) {
 			// specifications in catalog(merged) -> linked page (adding to attribute name the name of website, [att_name###website])
 			List<Entry<Specifications, SourceProductPage>> linkedProds = setupCatalog(linkageMap, schemaMatch);
 
 			// Inverted indexes (attribute name -> indexes of linked pages outside catalog)
-			InvertedIndexesManager invIndexes = getInvertedIndexes(linkedProds, newSource);
+			InvertedIndexesManager invIndexes = getInvertedIndexes(linkedProds, newSource, schemaMatch.getDictionary());
+
+			// pairs [source attribute -> catalog attributes] to be classified
+			Map<Integer, List<Integer>> candidates = this.candidatesGenerator.getCandidates(linkedProds, invIndexes);
 
-			Map<String, Integer> attributesLinkage = new HashMap<>();
-			DataFrame dataFrame = computeAttributesFeatures(linkedProds, invIndexes, cardinality, newSource,
-					attributesLinkage, useMI);
+			// pair of attributes (see pairKey) -> size of their linkage
+			Map<Long, Integer> attributesLinkage = new HashMap<>();
+			DataFrame dataFrame = computeAttributesFeatures(linkedProds, invIndexes, candidates, cardinality,
+					newSource, attributesLinkage, useMI);
 			try {
-				double[] predictions = r.classify(dataFrame);
-				Match match = filterMatch(dataFrame, predictions);
+				double[] predictions = this.classifier.classify(dataFrame);
+				Match match = this.matchSelector.selectMatches(dataFrame, predictions);
 
 				updateSchema(schemaMatch, invIndexes, match, attributesLinkage);
 
@@ -88,7 +166,7 @@ public class CategoryMatcher {
 				System.err.println("Errore durante la classificazione: "+e.getMessage());
 				e.printStackTrace();
 				System.out.println("CON LINKAGE -> " + checkIfValidWebsite(newSource, linkageMap.keySet()));
-				System.out.println("(df di lunghezza : " + dataFrame.getAttrCatalog().size() + ")");
+				System.out.println("(df di lunghezza : " + dataFrame.size() + ")");
 			}
 		}
 
@@ -129,7 +207,9 @@ public class CategoryMatcher {
 
 	private List<Entry<Specifications, SourceProductPage>> setupCatalog(
 			Map<SourceProductPage, List<SourceProductPage>> prods, Schema schema, String reference) {
-		List<Entry<Specifications, SourceProductPage>> updatedList = new LinkedList<Entry<Specifications, SourceProductPage>>();
+		// random access list, as pages are accessed by index while computing features
+		List<Entry<Specifications, SourceProductPage>> updatedList = new ArrayList<Entry<Specifications, SourceProductPage>>(
+				prods.size());
 
 		for (Map.Entry<SourceProductPage, List<SourceProductPage>> linkage : prods.entrySet()) {
 			SourceProductPage sourcePage = linkage.getKey();
@@ -178,12 +258,13 @@ public class CategoryMatcher {
 		Map<String, String> specifications = p.getSpecifications();
 		Map<String, String> newSpecs = new HashMap<>();
 		String website = p.getSource().getWebsite();
-		// update attribute names to the format "attribute###website"
+		AttributeDictionary dictionary = schema.getDictionary();
+		// update attribute names to the format "attribute###website" (names are rendered once by the dictionary)
 		specifications.keySet().forEach(attr -> {
-			if (!attr.contains("###")) {
+			if (!attr.contains(AttributeDictionary.SEPARATOR)) {
 				String value = specifications.get(attr);
-				newSpecs.put(schema.getAttributesMap().getOrDefault(attr + "###" + website, attr + "###" + website),
-						value);
+				int attributeId = schema.getMatchedAttribute(dictionary.getId(attr, website));
+				newSpecs.put(dictionary.getName(attributeId), value);
 			} else
 				/*
 				 * In case of wrong linkage a page could appear twice in the original
@@ -197,12 +278,12 @@ public class CategoryMatcher {
 	}
 
 	private InvertedIndexesManager getInvertedIndexes(List<Entry<Specifications, SourceProductPage>> prods,
-			String website) {
-		Map<String, Set<Integer>> invIndCatalog = new HashMap<>();
-		Map<String, Set<Integer>> invIndLinked = new HashMap<>();
-		Map<String, Set<Integer>> invIndSource = new HashMap<>();
+			String website, AttributeDictionary dictionary) {
+		Map<Integer, BitmapPostingList> invIndCatalog = new HashMap<>();
+		Map<Integer, BitmapPostingList> invIndLinked = new HashMap<>();
+		Map<Integer, BitmapPostingList> invIndSource = new HashMap<>();
 
-		// check all linked product pages
+		// check all linked product pages (in ascending order, the fastest way to fill the posting lists)
 		for (int i = 0; i < prods.size(); i++) {
 			Entry<Specifications, SourceProductPage> pair = prods.get(i);
 			// get the attributes present in those 2 pages
@@ -212,28 +293,21 @@ public class CategoryMatcher {
 			boolean isInSource = pair.getValue().getSource().getWebsite().equals(website);
 
 			// add the attributes in the catalog's index
-			for (String attrC : attrsCatalog) {
-				Set<Integer> indexes = invIndCatalog.getOrDefault(attrC, new HashSet<Integer>());
-				indexes.add(i);
-				invIndCatalog.put(attrC, indexes);
-			}
+			for (String attrC : attrsCatalog)
+				invIndCatalog.computeIfAbsent(dictionary.getId(attrC), a -> new BitmapPostingList()).add(i);
 			// add the attributes in the linked index...
 			for (String attrL : attrsLinked) {
-				Set<Integer> indexesL = invIndLinked.getOrDefault(attrL, new HashSet<Integer>());
-				indexesL.add(i);
-				invIndLinked.put(attrL, indexesL);
+				int attributeId = dictionary.getId(attrL);
+				invIndLinked.computeIfAbsent(attributeId, a -> new BitmapPostingList()).add(i);
 
 				// ...and the source index if the page belongs to the source to
 				// be matched
-				if (isInSource) {
-					Set<Integer> indexesS = invIndSource.getOrDefault(attrL, new HashSet<Integer>());
-					indexesS.add(i);
-					invIndSource.put(attrL, indexesS);
-				}
+				if (isInSource)
+					invIndSource.computeIfAbsent(attributeId, a -> new BitmapPostingList()).add(i);
 			}
 		}
 
-		InvertedIndexesManager invIndexes = new InvertedIndexesManager();
+		InvertedIndexesManager invIndexes = new InvertedIndexesManager(dictionary);
 		invIndexes.setCatalogIndex(invIndCatalog);
 		invIndexes.setLinkedIndex(invIndLinked);
 		invIndexes.setSourceIndex(invIndSource);
@@ -241,47 +315,121 @@ public class CategoryMatcher {
 		return invIndexes;
 	}
 
+	/**
+	 * Computes features for each candidate pair [attribute of new source,
+	 * attribute of catalog] sharing at least one linked page.
+	 * <p>
+	 * Pairs can be computed in parallel, but rows are always added to the
+	 * {@link DataFrame} grouped by source attribute, in the same order as a
+	 * sequential computation (see {@link DataFrame#getSourceRanges()}).
+	 */
 	private DataFrame computeAttributesFeatures(List<Entry<Specifications, SourceProductPage>> linkedProds,
-			InvertedIndexesManager invIndexes, int cardinality, String website, Map<String, Integer> attributesLinkage,
-			boolean useMI) {
-
-		DataFrame df = new DataFrame();
-		// Set<String> attrSet = new TreeSet<>();
-
-		// scorri il prod cartesiano di attributiS x attributiC
-		for (Map.Entry<String, Set<Integer>> attrS : invIndexes.getSourceIndex().entrySet())
-			for (Map.Entry<String, Set<Integer>> attrCatalog : invIndexes.getCatalogIndex().entrySet()) {
-				String attributeCatalog = attrCatalog.getKey();
-				String attributeSource = attrS.getKey();
-
-				// prods in linkage between S and Catalog with the required
-				// attributes
-				Set<Integer> commonPagesS = new HashSet<>(attrS.getValue());
-				commonPagesS.retainAll(attrCatalog.getValue());
-				if (commonPagesS.size() < 1)
-					continue;
-				// prods in linkage between the whole category and Catalog with
-				// the required attributes
-				Set<Integer> commonProdsL = new HashSet<>(invIndexes.getLinkedIndex().get(attributeSource));
-				commonProdsL.retainAll(attrCatalog.getValue());
-
-				List<Entry<Specifications, SourceProductPage>> linkageS = new ArrayList<>();
-				commonPagesS.forEach(i -> linkageS.add(linkedProds.get(i)));
-
-				List<Entry<Specifications, SourceProductPage>> linkageL = new ArrayList<>();
-				commonProdsL.forEach(i -> linkageL.add(linkedProds.get(i)));
-
-				attributesLinkage.put(attributeSource + attributeCatalog, linkageS.size());
-				Features features = this.fb.computeFeatures(linkageS, linkageL, attributeCatalog, attributeSource, useMI);
-				df.addRow(features, attributeCatalog, attributeSource);
-			}
-
-		// System.out.println("Considerati: " + attrSet.size());
-		// System.out.println(attrSet.toString());
+			InvertedIndexesManager invIndexes, Map<Integer, List<Integer>> candidates, int cardinality, String website,
+			Map<Long, Integer> attributesLinkage, boolean useMI) {
+
+		DataFrame df = new DataFrame(invIndexes.getDictionary());
+		List<int[]> candidatePairs = new ArrayList<>();
+		for (Entry<Integer, List<Integer>> sourceCandidates : candidates.entrySet())
+			for (int attributeCatalog : sourceCandidates.getValue())
+				candidatePairs.add(new int[] { sourceCandidates.getKey(), attributeCatalog });
+
+		// scorri le coppie candidate di attributiS x attributiC
+		List<PairFeatures> pairs = computeInOrder(candidatePairs.stream()
+				.map(pair -> computePairFeatures(linkedProds, invIndexes, pair[0], pair[1], useMI)));
+
+		for (PairFeatures pair : pairs) {
+			attributesLinkage.put(pairKey(pair.attributeSource, pair.attributeCatalog), pair.linkageSize);
+			df.addRow(pair.features, pair.attributeCatalog, pair.attributeSource);
+		}
 
 		return df;
 	}
 
+	/**
+	 * Stops the threads of the parallel pool, the matcher cannot be used after
+	 * it (no effect if the computation is sequential)
+	 */
+	public void shutdown() {
+		if (this.pool != null)
+			this.pool.shutdown();
+	}
+
+	/**
+	 * Collects the non-null elements of the stream, in encounter order, using the
+	 * parallel pool if available
+	 */
+	private <T> List<T> computeInOrder(Stream<T> elements) {
+		if (this.pool == null)
+			return elements.filter(e -> e != null).collect(Collectors.toList());
+		try {
+			return this.pool.submit(() -> elements.parallel().filter(e -> e != null).collect(Collectors.toList()))
+					.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while computing features", e);
+		} catch (ExecutionException e) {
+			// same exception as in the sequential computation
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * @return features of the pair, or null if the 2 attributes do not share any
+	 *         linked page
+	 */
+	private PairFeatures computePairFeatures(List<Entry<Specifications, SourceProductPage>> linkedProds,
+			InvertedIndexesManager invIndexes, int attributeSource, int attributeCatalog, boolean useMI) {
+		BitmapPostingList pagesS = invIndexes.getSourceIndex().get(attributeSource);
+		BitmapPostingList pagesCatalog = invIndexes.getCatalogIndex().get(attributeCatalog);
+
+		// skip pairs without prods in linkage between S and Catalog (no copy needed)
+		if (!pagesS.intersects(pagesCatalog))
+			return null;
+		// prods in linkage between S and Catalog with the required
+		// attributes
+		BitmapPostingList commonPagesS = pagesS.and(pagesCatalog);
+		// prods in linkage between the whole category and Catalog with
+		// the required attributes
+		BitmapPostingList commonProdsL = invIndexes.getLinkedIndex().get(attributeSource).and(pagesCatalog);
+
+		List<Entry<Specifications, SourceProductPage>> linkageS = new ArrayList<>(commonPagesS.getCardinality());
+		commonPagesS.forEach(i -> linkageS.add(linkedProds.get(i)));
+
+		List<Entry<Specifications, SourceProductPage>> linkageL = new ArrayList<>(commonProdsL.getCardinality());
+		commonProdsL.forEach(i -> linkageL.add(linkedProds.get(i)));
+
+		AttributeDictionary dictionary = invIndexes.getDictionary();
+		Features features = this.fb.computeFeatures(linkageS, linkageL, dictionary.getName(attributeCatalog),
+				dictionary.getName(attributeSource), useMI);
+		return new PairFeatures(attributeCatalog, attributeSource, linkageS.size(), features);
+	}
+
+	/**
+	 * Result of the features computation on a single pair of attributes
+	 */
+	private static class PairFeatures {
+		private int attributeCatalog;
+		private int attributeSource;
+		private int linkageSize;
+		private Features features;
+
+		private PairFeatures(int attributeCatalog, int attributeSource, int linkageSize, Features features) {
+			this.attributeCatalog = attributeCatalog;
+			this.attributeSource = attributeSource;
+			this.linkageSize = linkageSize;
+			this.features = features;
+		}
+	}
+
+	/**
+	 * @return key of the pair of attributes in attributesLinkage
+	 */
+	private static long pairKey(int attributeSource, int attributeCatalog) {
+		return ((long) attributeSource << 32) | (attributeCatalog & 0xffffffffL);
+	}
+
 	// calls hasSmallDomain using all the products pages in website with the
 	// relevant attribute
 	private boolean checkSourceDomain(List<Document[]> prods, String attribute, String website, int cardinality) {
@@ -312,103 +460,6 @@ public class CategoryMatcher {
 		return true;
 	}
 
-	/**
-	 * Given match probability for pairs of matches, select good pairs and bad
-	 * pairs:
-	 * <ul>
-	 * <li>If match < 0.5, discards it
-	 * <li>If an attribute has matches with different catalog atts, select the best
-	 * match (the one with highest match probabilty) and discards the others.
-	 * </ul>
-	 * 
-	 * @param df
-	 * @param predictions
-	 * @return
-	 */
-	private Match filterMatch(DataFrame df, double[] predictions) {
-		Match match = new Match();
-		List<Double> filteredPredictions = new ArrayList<>();
-
-		// df.updateMatchProbabilities(predictions);
-		// remove all matches where the probability is below 0.5
-		filteredPredictions = filterFalse(df, predictions);
-
-		// FileDataConnector fdc = new FileDataConnector();
-		// fdc.printDataFrame("dataFrame(card5)", df.toCSVFormatSlim());
-
-		// get only the best (unique) matches
-		boolean repeat = false;
-		do {
-			repeat = getMaxMatches(df, match, filteredPredictions);
-		} while (repeat);
-
-		return match;
-	}
-
-	private List<Double> filterFalse(DataFrame df, double[] predictions) {
-		List<Double> predictionsList = new ArrayList<>();
-		List<Integer> indexes = IntStream.range(0, predictions.length).mapToObj(Integer.class::cast)
-				.collect(Collectors.toList());
-
-		predictionsList = IntStream.range(0, predictions.length).filter(i -> predictions[i] >= 0.5).mapToObj(i -> {
-			indexes.remove(indexes.indexOf(i));
-			return predictions[i];
-		}).collect(Collectors.toList());
-
-		// indexes.stream().forEach(i -> {
-		// if(df.getAttrCatalog().get(i).equals(df.getAttrSource().get(i)))
-		// System.out.println(df.getAttrSource().get(i)+"---->"+df.getAttrCatalog().get(i)
-		// +"-----_>"+predictions[i]);
-		// });
-		Collections.reverse(indexes);
-		df.removeByIndexes(indexes);
-
-		return predictionsList;
-	}
-
-	private boolean getMaxMatches(DataFrame df, Match match, List<Double> predictions) {
-		Map<String, Integer> indexes = new HashMap<>();
-		List<Integer> ranges = df.getSourceRanges();
-
-		for (int i = 0; i < ranges.size() - 1; i++) {
-			// select only the probability of matches for the specific Source
-			// Attribute
-			List<Double> probs = predictions.subList(ranges.get(i), ranges.get(i + 1));
-			// get the best match probability
-			double max = Collections.max(probs);
-			boolean isMultiple = Collections.frequency(probs, max) > 1;
-			// check if there aren't more than one optimal match and if so,
-			// accept it
-			if (!isMultiple) {
-				int index = ranges.get(i) + probs.indexOf(max);
-				String catalogAttribute = df.getStringAtIndex("attrCatalog", index);
-				// check that there isn't already a Source Attribute matched to
-				// the same Catalog Attribute
-				if (predictions.get(index) >= predictions.get(indexes.getOrDefault(catalogAttribute, index)))
-					indexes.put(catalogAttribute, index);
-			}
-		}
-
-		TreeSet<Integer> rowsToRemove = new TreeSet<>();
-		for (int index : indexes.values()) {
-			String sourceAttr = df.getStringAtIndex("attrSource", index);
-			String catalogAttr = df.getStringAtIndex("attrCatalog", index);
-			double p = predictions.get(index);
-			// add Match
-			match.addRow(catalogAttr, sourceAttr, p);
-			rowsToRemove.addAll(df.getIndexesByValue("attrSource", sourceAttr));
-			rowsToRemove.addAll(df.getIndexesByValue("attrCatalog", catalogAttr));
-		}
-
-		rowsToRemove = (TreeSet) rowsToRemove.descendingSet();
-		// remove all rows in the dataframe containing one of the two attributes
-		df.removeByIndexes(new ArrayList<>(rowsToRemove));
-		// also remove the probabilities associated to those rows
-		rowsToRemove.stream().forEach(i -> predictions.remove(i));
-
-		return indexes.values().size() > 0;
-	}
-
 	/**
 	 * Insert pairs of attributes in schema.<br/>
 	 * The update consists in adding every attribute found in the matched source
@@ -420,23 +471,25 @@ public class CategoryMatcher {
 	 * @param attributesLinkage
 	 */
 	public void updateSchema(Schema schema, InvertedIndexesManager invIndexes, Match match,
-			Map<String, Integer> attributesLinkage) {
+			Map<Long, Integer> attributesLinkage) {
 
 		// add new catalog's attribute
-		for (String catAttr : invIndexes.getCatalogIndex().keySet())
-			if (!schema.getAttributesMap().containsKey(catAttr))
-				schema.getAttributesMap().put(catAttr, catAttr);
+		for (int catAttr : invIndexes.getCatalogIndex().keySet())
+			if (!schema.containsAttribute(catAttr))
+				schema.putAttribute(catAttr, catAttr);
 		// add matched attributes
-		for (String[] couple : match.getMatchedAttributes()) {
-			schema.getAttributesMap().put(couple[0], couple[1]);
+		for (int i = 0; i < match.getnRows(); i++) {
+			int sourceAttr = match.getSourceAttribute(i);
+			int catalogAttr = match.getCatalogAttribute(i);
+			schema.putAttribute(sourceAttr, catalogAttr);
 			// update linkage count for the matched attributes
-			int counter = attributesLinkage.get(couple[0] + couple[1]);
-			schema.getMatchLinkage().put(couple[0], counter);
+			int counter = attributesLinkage.get(pairKey(sourceAttr, catalogAttr));
+			schema.putMatchLinkage(sourceAttr, counter);
 		}
 		// add non matched attributes
-		for (String sourceAttr : invIndexes.getSourceIndex().keySet())
-			if (!schema.getAttributesMap().containsKey(sourceAttr))
-				schema.getAttributesMap().put(sourceAttr, sourceAttr);
+		for (int sourceAttr : invIndexes.getSourceIndex().keySet())
+			if (!schema.containsAttribute(sourceAttr))
+				schema.putAttribute(sourceAttr, sourceAttr);
 	}
 
 //	public static void main(String[] args) {
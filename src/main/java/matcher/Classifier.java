@@ -0,0 +1,30 @@
+package matcher;
+
+import models.matcher.DataFrame;
+
+/**
+ * Computes the probability of match of the pairs of attributes of a
+ * {@link DataFrame}, from their features
+ *
+ * @see CategoryMatcher
+ */
+public interface Classifier {
+
+	/**
+	 * <ul>
+	 * <li>R -> caret model, classified in an embedded R (see
+	 * connectors.RConnector)
+	 * <li>JAVA -> coefficients of the logistic regression exported from the
+	 * model, see {@link LogisticRegressionClassifier}
+	 * </ul>
+	 */
+	public enum ClassifierEngine {
+		R, JAVA
+	}
+
+	/**
+	 * @param df
+	 * @return probability of match of each row of the frame
+	 */
+	public double[] classify(DataFrame df);
+}
@@ -0,0 +1,258 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import model.Source;
+
+/**
+ * Finds the cloned sources of a dataset: pairs of sources of the same category
+ * whose schemas have in common at least half of the attributes of the smallest
+ * one.
+ * <p>
+ * Candidate pairs are found with MinHash signatures of the schemas and LSH
+ * banding (pairs equal in all rows of at least one band), then verified
+ * exactly. With b bands of r rows, pairs with Jaccard similarity s are
+ * candidates with probability 1-(1-s^r)^b.
+ * <p>
+ * The clone test is a containment, so the Jaccard similarity of clones
+ * depends on the ratio of the sizes of their schemas: a schema of size n
+ * cloned in one of size m >= n has s >= (n/m)/(n/m + 2) (e.g. 1/3 for equal
+ * sizes, 1/13 for a schema of 10 attributes contained in one of 60). LSH is
+ * used only for the pairs whose size ratio n/m keeps s above the similarity
+ * found with probability {@link #MIN_RECALL}; the candidates among the more
+ * unbalanced pairs are found exactly with prefix filtering (see
+ * {@link #addUnbalancedPairs}). With the default 16 bands of 1 row, LSH is
+ * used for the pairs with sizes up to about 2 times each other.
+ * Signatures and verifications are computed in parallel.
+ *
+ * @see TrainingSetGenerator
+ */
+public class ClonedSourcesFinder {
+
+	private static final int DEFAULT_BANDS = 16;
+	private static final int DEFAULT_ROWS = 1;
+	private static final long DEFAULT_SEED = 13;
+	/** Min probability of LSH to find a pair of clones */
+	static final double MIN_RECALL = 0.97;
+
+	private int bands;
+	private int rows;
+	private long[] seeds;
+	private int parallelism;
+	/** Pairs with size ratio (smallest / largest schema) below this are all verified */
+	private double minSizeRatio;
+
+	public ClonedSourcesFinder() {
+		this(DEFAULT_BANDS, DEFAULT_ROWS, DEFAULT_SEED, 0);
+	}
+
+	/**
+	 * @param bands
+	 * @param rows
+	 *            rows of each band
+	 * @param seed
+	 *            seed of the hash functions
+	 * @param parallelism
+	 *            1 means sequential computation, 0 or less means one thread per
+	 *            available core
+	 */
+	public ClonedSourcesFinder(int bands, int rows, long seed, int parallelism) {
+		this.bands = bands;
+		this.rows = rows;
+		Random random = new Random(seed);
+		this.seeds = new long[bands * rows];
+		for (int i = 0; i < this.seeds.length; i++)
+			this.seeds[i] = random.nextLong();
+		this.parallelism = parallelism <= 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+		// Jaccard similarity found by LSH with probability MIN_RECALL
+		double minJaccard = Math.pow(1 - Math.pow(1 - MIN_RECALL, 1.0 / bands), 1.0 / rows);
+		this.minSizeRatio = 2 * minJaccard / (1 - minJaccard);
+	}
+
+	/**
+	 * @param sourceSchemas
+	 *            source --> its attributes
+	 * @return source --> its clones (each pair of clones is present in both
+	 *         directions), clones in order of sourceSchemas
+	 */
+	public Map<Source, List<Source>> findClonedSources(Map<Source, List<String>> sourceSchemas) {
+		List<Source> sources = new ArrayList<>(sourceSchemas.keySet());
+		List<List<String>> schemas = sources.stream().map(sourceSchemas::get).collect(Collectors.toList());
+
+		ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+		try {
+			long[][] signatures = pool.submit(() -> schemas.parallelStream().map(this::signature)
+					.toArray(long[][]::new)).get();
+			long[] candidates = getCandidatePairs(sources, schemas, signatures);
+			long[] clones = pool.submit(() -> Arrays.stream(candidates).parallel()
+					.filter(pair -> areClones(schemas.get((int) (pair >>> 32)), schemas.get((int) pair)))
+					.toArray()).get();
+
+			// each list in order of sources
+			List<List<Integer>> clonesOf = new ArrayList<>();
+			for (int i = 0; i < sources.size(); i++)
+				clonesOf.add(new ArrayList<>());
+			for (long pair : clones) {
+				clonesOf.get((int) (pair >>> 32)).add((int) pair);
+				clonesOf.get((int) pair).add((int) (pair >>> 32));
+			}
+			Map<Source, List<Source>> clonedSources = new LinkedHashMap<>();
+			for (int i = 0; i < sources.size(); i++) {
+				if (clonesOf.get(i).isEmpty())
+					continue;
+				clonesOf.get(i).sort(null);
+				clonedSources.put(sources.get(i),
+						clonesOf.get(i).stream().map(sources::get).collect(Collectors.toList()));
+			}
+			return clonedSources;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while finding cloned sources", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return pairs (i, j) of sources of the same category in the same bucket of
+	 *         at least one band, or with schemas of too different size for LSH
+	 *         (see {@link #addUnbalancedPairs}), i < j, coded as i << 32 | j
+	 */
+	private long[] getCandidatePairs(List<Source> sources, List<List<String>> schemas, long[][] signatures) {
+		Set<Long> pairs = new HashSet<>();
+		addUnbalancedPairs(sources, schemas, pairs);
+		for (int b = 0; b < this.bands; b++) {
+			// (category, band hash) --> sources
+			Map<List<Object>, List<Integer>> buckets = new HashMap<>();
+			for (int i = 0; i < sources.size(); i++)
+				buckets.computeIfAbsent(Arrays.asList(sources.get(i).getCategory(), bandHash(signatures[i], b)),
+						k -> new ArrayList<>()).add(i);
+			for (List<Integer> bucket : buckets.values())
+				for (int i = 0; i < bucket.size(); i++)
+					for (int j = i + 1; j < bucket.size(); j++)
+						pairs.add(((long) bucket.get(i) << 32) | bucket.get(j));
+		}
+		return pairs.stream().mapToLong(Long::longValue).sorted().toArray();
+	}
+
+	/**
+	 * Adds the pairs of sources of the same category whose size ratio is below
+	 * {@link #minSizeRatio}: they may be clones with a Jaccard similarity too low
+	 * to be found by LSH.
+	 * <p>
+	 * They are found exactly with prefix filtering: attributes are ordered by
+	 * frequency in the category, and a schema of n attributes cloned in a larger
+	 * one shares with it at least ceil(n/2) attributes, so at least one of its
+	 * first n - ceil(n/2) + 1. Only the pairs in which the larger schema contains
+	 * one of these attributes of the smaller one are added.
+	 */
+	private void addUnbalancedPairs(List<Source> sources, List<List<String>> schemas, Set<Long> pairs) {
+		Map<String, List<Integer>> categories = new HashMap<>();
+		for (int i = 0; i < sources.size(); i++)
+			categories.computeIfAbsent(sources.get(i).getCategory(), c -> new ArrayList<>()).add(i);
+		int before = pairs.size();
+		// position of each source in its category
+		int[] ranks = new int[sources.size()];
+		for (List<Integer> category : categories.values()) {
+			// by size of the schema, a schema is the smaller one of the pairs with the following ones
+			category.sort((i, j) -> Integer.compare(schemas.get(i).size(), schemas.get(j).size()));
+			for (int k = 0; k < category.size(); k++)
+				ranks[category.get(k)] = k;
+			Map<String, Integer> frequencies = new HashMap<>();
+			for (int i : category)
+				for (String attribute : new HashSet<>(schemas.get(i)))
+					frequencies.merge(attribute, 1, Integer::sum);
+			Comparator<String> byFrequency = Comparator.comparing((String a) -> frequencies.get(a))
+					.thenComparing(Comparator.naturalOrder());
+
+			// attribute --> sources with the attribute in the prefix of their schema
+			Map<String, List<Integer>> prefixIndex = new HashMap<>();
+			for (int i : category) {
+				List<String> attributes = new ArrayList<>(new HashSet<>(schemas.get(i)));
+				// attributes in common needed with a larger schema (as in areClones)
+				int minCommon = (schemas.get(i).size() + 1) / 2;
+				if (minCommon == 0) {
+					// an empty schema is a clone of any larger one
+					for (int l = ranks[i] + 1; l < category.size(); l++)
+						addIfUnbalanced(i, category.get(l), schemas, pairs);
+					continue;
+				}
+				attributes.sort(byFrequency);
+				for (String attribute : attributes.subList(0, Math.max(0, attributes.size() - minCommon + 1)))
+					prefixIndex.computeIfAbsent(attribute, a -> new ArrayList<>()).add(i);
+			}
+			for (int j : category)
+				for (String attribute : new HashSet<>(schemas.get(j)))
+					for (int i : prefixIndex.getOrDefault(attribute, Collections.emptyList()))
+						if (ranks[i] < ranks[j])
+							addIfUnbalanced(i, j, schemas, pairs);
+		}
+		System.out.println((pairs.size() - before)
+				+ " coppie di sorgenti con schemi di dimensioni molto diverse da verificare");
+	}
+
+	/**
+	 * @param i
+	 *            source with the smaller schema
+	 */
+	private void addIfUnbalanced(int i, int j, List<List<String>> schemas, Set<Long> pairs) {
+		if (schemas.get(i).size() < this.minSizeRatio * schemas.get(j).size())
+			pairs.add(((long) Math.min(i, j) << 32) | Math.max(i, j));
+	}
+
+	/**
+	 * Same test of the exhaustive search: attributes in common >= half of the
+	 * size of the smallest schema
+	 */
+	static boolean areClones(List<String> attributes1, List<String> attributes2) {
+		double minSize = Math.min(attributes1.size(), attributes2.size());
+		Set<String> intersection = new HashSet<>(attributes1);
+		intersection.retainAll(attributes2);
+		return intersection.size() >= (minSize / 2);
+	}
+
+	private long[] signature(List<String> attributes) {
+		long[] signature = new long[this.seeds.length];
+		Arrays.fill(signature, Long.MAX_VALUE);
+		for (String attribute : attributes) {
+			long attributeHash = attribute.hashCode();
+			for (int i = 0; i < this.seeds.length; i++) {
+				long h = mix(attributeHash ^ this.seeds[i]);
+				if (h < signature[i])
+					signature[i] = h;
+			}
+		}
+		return signature;
+	}
+
+	private long bandHash(long[] signature, int band) {
+		long hash = band;
+		for (int r = band * this.rows; r < (band + 1) * this.rows; r++)
+			hash = 31 * hash + signature[r];
+		return mix(hash);
+	}
+
+	/** Finalizer of SplitMix64, spreads the bits of the hash */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -1,23 +1,22 @@
 package matcher;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 
 import model.AbstractProductPage.Specifications;
 import model.SourceProductPage;
 import models.matcher.BagsOfWordsManager;
+import models.matcher.TokenCache;
 
 /**
  * Computes features on pair of attributes
  * @author federico
  *
+ * @deprecated the features are computed by {@link FeatureKernel}, with the same
+ *             results; kept as a reference for the tests
  */
+@Deprecated
 public class FeatureExtractor {
 
 	/**
@@ -26,47 +25,44 @@ public class FeatureExtractor {
 	 * @return
 	 */
 	public static double getJSD(BagsOfWordsManager bags) {
-		Map<String, Double> distProbCatalog = new HashMap<>();
-		Map<String, Double> distProbSource = new HashMap<>();
-		Map<String, Double> distProbM = new HashMap<>();
-		Set<String> allWords = new HashSet<>(bags.getCatalogBagOfWords());
-		allWords.addAll(bags.getSourceBagOfWords());
-		// int lM = allWords.size();
-
-		// get frequency of all words
-		bags.getCatalogBagOfWords().forEach(word -> {
-			Double pCat = distProbCatalog.getOrDefault(word, 0.0);
-			distProbCatalog.put(word, pCat + 1);
-		});
-		bags.getSourceBagOfWords().forEach(word -> {
-			Double pSource = distProbSource.getOrDefault(word, 0.0);
-			distProbSource.put(word, pSource + 1);
-		});
+		WordCounts counts = new WordCounts(bags);
+		int[] order = counts.getHashSetOrder(bags.getTokenCache(), bags.getCatalogBagOfWords().length);
+		int n = counts.size();
+		double[] distProbCatalog = new double[n];
+		double[] distProbSource = new double[n];
+		double[] distProbM = new double[n];
+		// normalization on the number of words of each distribution, that grows
+		// with each word found only in the other distribution
+		int sizeCatalog = counts.distinctCatalog;
+		int sizeSource = counts.distinctSource;
+
 		// calculate probability distribuition
-		allWords.forEach(word -> {
-			Double pCat = distProbCatalog.getOrDefault(word, 0.0) / distProbCatalog.size();
-			Double pSource = distProbSource.getOrDefault(word, 0.0) / distProbSource.size();
-			Double pM = (pCat + pSource) / 2;
-			distProbCatalog.put(word, pCat);
-			distProbSource.put(word, pSource);
-			distProbM.put(word, pM);
-		});
-
-		return (getKL(distProbCatalog, distProbM) + getKL(distProbSource, distProbM)) / 2;
+		for (int w : order) {
+			double pCat = counts.catalog[w] / (double) sizeCatalog;
+			double pSource = counts.source[w] / (double) sizeSource;
+			if (counts.catalog[w] == 0)
+				sizeCatalog++;
+			if (counts.source[w] == 0)
+				sizeSource++;
+			distProbCatalog[w] = pCat;
+			distProbSource[w] = pSource;
+			distProbM[w] = (pCat + pSource) / 2;
+		}
+
+		return (getKL(distProbCatalog, distProbM, order) + getKL(distProbSource, distProbM, order)) / 2;
 	}
 
 	// Kullback-Leibler divergence
-	public static double getKL(Map<String, Double> pCatalog, Map<String, Double> pSource) {
+	private static double getKL(double[] pCatalog, double[] pSource, int[] order) {
 		double kl = 0.0;
-		Set<String> words = pCatalog.keySet();
 
-		for (String word : words) {
-			if (pCatalog.get(word) == 0.0)
+		for (int word : order) {
+			if (pCatalog[word] == 0.0)
 				continue;
-			if (pSource.get(word) == 0.0) // p2[i] should never be 0
+			if (pSource[word] == 0.0) // p2[i] should never be 0
 				continue;
 
-			kl += pCatalog.get(word) * Math.log(pCatalog.get(word) / pSource.get(word));
+			kl += pCatalog[word] * Math.log(pCatalog[word] / pSource[word]);
 		}
 
 		return kl;
@@ -74,31 +70,140 @@ public class FeatureExtractor {
 
 	// Jaccard coefficient
 	public static double getJC(BagsOfWordsManager bags) {
-		Set<String> intersection = new HashSet<>(bags.getCatalogBagOfWords());
-		Set<String> union = new HashSet<>(bags.getCatalogBagOfWords());
+		WordCounts counts = new WordCounts(bags);
+		int intersection = 0;
+		for (int w = 0; w < counts.size(); w++)
+			if (counts.catalog[w] > 0 && counts.source[w] > 0)
+				intersection++;
+
+		return intersection / (double) counts.size();
+	}
 
-		intersection.retainAll(bags.getSourceBagOfWords());
-		union.addAll(bags.getSourceBagOfWords());
+	/**
+	 * Distinct words of the 2 bags of words, with their number of occurrences in
+	 * each bag
+	 */
+	private static class WordCounts {
+		/** token id of each word */
+		private int[] tokens;
+		/** position of the first occurrence of each word, in catalog bag then source bag */
+		private int[] firstPositions;
+		private int[] catalog;
+		private int[] source;
+		private int distinctCatalog;
+		private int distinctSource;
+
+		private WordCounts(BagsOfWordsManager bags) {
+			int[] catalogBag = bags.getCatalogBagOfWords();
+			int[] sourceBag = bags.getSourceBagOfWords();
+			// (token, position) sorted, so that occurrences of the same token are contiguous
+			long[] occurrences = new long[catalogBag.length + sourceBag.length];
+			for (int i = 0; i < catalogBag.length; i++)
+				occurrences[i] = ((long) catalogBag[i] << 32) | i;
+			for (int i = 0; i < sourceBag.length; i++)
+				occurrences[catalogBag.length + i] = ((long) sourceBag[i] << 32) | (catalogBag.length + i);
+			Arrays.sort(occurrences);
 
-		return intersection.size() / (double) union.size();
+			int n = 0;
+			this.tokens = new int[occurrences.length];
+			this.firstPositions = new int[occurrences.length];
+			this.catalog = new int[occurrences.length];
+			this.source = new int[occurrences.length];
+			for (int i = 0; i < occurrences.length; i++) {
+				int token = (int) (occurrences[i] >>> 32);
+				int position = (int) occurrences[i];
+				if (i == 0 || token != this.tokens[n - 1]) {
+					this.tokens[n] = token;
+					this.firstPositions[n] = position;
+					n++;
+				}
+				if (position < catalogBag.length) {
+					if (this.catalog[n - 1]++ == 0)
+						this.distinctCatalog++;
+				} else if (this.source[n - 1]++ == 0)
+					this.distinctSource++;
+			}
+			this.tokens = Arrays.copyOf(this.tokens, n);
+		}
+
+		private int size() {
+			return this.tokens.length;
+		}
+
+		/**
+		 * Indexes of the words in the iteration order of the HashSet of the
+		 * original JSD (see {@link HashSetOrder})
+		 */
+		private int[] getHashSetOrder(TokenCache cache, int catalogBagSize) {
+			int n = size();
+			// (first position, word), sorted in order of insertion in the HashSet
+			long[] keys = new long[n];
+			for (int w = 0; w < n; w++)
+				keys[w] = ((long) this.firstPositions[w] << 32) | w;
+			Arrays.sort(keys);
+			int[] insertion = new int[n];
+			int[] words = new int[n];
+			for (int i = 0; i < n; i++) {
+				insertion[i] = (int) keys[i];
+				words[i] = this.tokens[insertion[i]];
+			}
+			int[] order = new int[n];
+			HashSetOrder.sort(words, n, catalogBagSize, cache, keys, order);
+			for (int i = 0; i < n; i++)
+				order[i] = insertion[order[i]];
+			return order;
+		}
 	}
 
 	// Mutual Information
 	public static double getMI(List<Entry<Specifications, SourceProductPage>> prods, String a1, String a2) {
+		return getMI(prods, a1, a2, new TokenCache());
+	}
+
+	/**
+	 * Mutual Information between the values of the 2 attributes (values merged
+	 * with ### in a1 are considered separately)
+	 * 
+	 * @param prods
+	 * @param a1
+	 * @param a2
+	 * @param tokenCache
+	 *            split of the values, shared by the pairs of attributes of the
+	 *            same run
+	 * @return
+	 */
+	public static double getMI(List<Entry<Specifications, SourceProductPage>> prods, String a1, String a2,
+			TokenCache tokenCache) {
 		if (prods.size() == 0) {
 			throw new IllegalArgumentException("Cannot compute MI on empty pair of documents"); 
 		}
 		
 		double mi = 0.0;
 
-		List<List<String>> valueSets = getDistinctValues(prods, a1, a2);
-		double[][] matrix = getJointProbDistr(prods, a1, a2, valueSets.get(0), valueSets.get(1));
+		// ids of the values of each pair
+		int[][] values1 = new int[prods.size()][];
+		int[] values2 = new int[prods.size()];
+		int i = 0;
+		for (Entry<Specifications, SourceProductPage> couple : prods) {
+			String value1 = couple.getKey().get(a1);
+			String value2 = couple.getValue().getSpecifications().get(a2);
+			if (value1 == null || value2 == null) { // shouldn't happen anyway
+				values1[i] = new int[0];
+				values2[i++] = -1;
+				continue;
+			}
+			values1[i] = tokenCache.getValues(value1);
+			values2[i++] = tokenCache.getId(value2);
+		}
+		int[] distinctValues1 = getDistinctValues(values1);
+		int[] distinctValues2 = getDistinctValues(new int[][] { values2 });
+		double[][] matrix = getJointProbDistr(values1, values2, distinctValues1, distinctValues2);
 
 		double[] margProb1, margProb2;
 		margProb1 = getMarginalProbabilityDistribution(matrix, true);
 		margProb2 = getMarginalProbabilityDistribution(matrix, false);
 
-		for (int i = 0; i < margProb1.length; i++)
+		for (i = 0; i < margProb1.length; i++)
 			for (int j = 0; j < margProb2.length; j++) {
 				if (matrix[i][j] == 0)
 					continue;
@@ -130,51 +235,47 @@ public class FeatureExtractor {
 		return margProb;
 	}
 
-	private static double[][] getJointProbDistr(List<Entry<Specifications, SourceProductPage>> prods, String a1, String a2,
-			List<String> distinctValues1, List<String> distinctValues2) {
+	private static double[][] getJointProbDistr(int[][] values1, int[] values2, int[] distinctValues1,
+			int[] distinctValues2) {
 
 		int n = 0;
-		double[][] matrix = new double[distinctValues1.size()][distinctValues2.size()];
-		for (Entry<Specifications, SourceProductPage> couple : prods) {
-			String value1 = couple.getKey().get(a1);
-			String value2 = couple.getValue().getSpecifications().get(a2);
-			if (value1 == null || value2 == null) // shouldn't happen anyway
+		double[][] matrix = new double[distinctValues1.length][distinctValues2.length];
+		for (int i = 0; i < values2.length; i++) {
+			if (values2[i] < 0)
 				continue;
-			String[] values = value1.split("###", -1);
-			for (String v : values) {
-				int index1 = distinctValues1.indexOf(v);
-				int index2 = distinctValues2.indexOf(value2);
+			int index2 = Arrays.binarySearch(distinctValues2, values2[i]);
+			for (int v : values1[i]) {
+				int index1 = Arrays.binarySearch(distinctValues1, v);
 				matrix[index1][index2]++;
 				n++;
 			}
 		}
 
-		for (int i = 0; i < distinctValues1.size(); i++)
-			for (int j = 0; j < distinctValues2.size(); j++)
+		for (int i = 0; i < distinctValues1.length; i++)
+			for (int j = 0; j < distinctValues2.length; j++)
 				matrix[i][j] /= n;
 
 		return matrix;
 	}
 
-	private static List<List<String>> getDistinctValues(List<Entry<Specifications, SourceProductPage>> prods, String a1,
-			String a2) {
-		List<List<String>> distValues = new ArrayList<>();
-		Set<String> values1 = new HashSet<>();
-		Set<String> values2 = new HashSet<>();
-
-		for (Entry<Specifications, SourceProductPage> couple : prods) {
-			// The parameter -1 avoids having empty arrays if content is '###' (it can happen)
-			String[] value1 = couple.getKey().get(a1).split("###", -1);
-			String[] value2 = couple.getValue().getSpecifications().get(a2).split("###", -1);
-			// if(a1.equals("Ethernet:") && a2.equals("Wi-Fi:"))
-			// System.out.println(value1+"\t"+value2);
-			values1.addAll(Arrays.asList(value1));
-			values2.addAll(Arrays.asList(value2));
-		}
-
-		distValues.add(new ArrayList<>(values1));
-		distValues.add(new ArrayList<>(values2));
-
-		return distValues;
+	/**
+	 * @return sorted distinct ids (negative ids are missing values)
+	 */
+	private static int[] getDistinctValues(int[][] values) {
+		int length = 0;
+		for (int[] v : values)
+			length += v.length;
+		int[] all = new int[length];
+		int n = 0;
+		for (int[] v : values)
+			for (int id : v)
+				if (id >= 0)
+					all[n++] = id;
+		Arrays.sort(all, 0, n);
+		int distinct = 0;
+		for (int i = 0; i < n; i++)
+			if (distinct == 0 || all[i] != all[distinct - 1])
+				all[distinct++] = all[i];
+		return Arrays.copyOf(all, distinct);
 	}
 }
@@ -0,0 +1,259 @@
+package matcher;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+
+import model.AbstractProductPage.Specifications;
+import model.SourceProductPage;
+import models.matcher.TokenCache;
+
+/**
+ * Computes JSD, JC and MI of a pair of attributes with a single pass on the
+ * pairs of pages, with the same results of {@link FeatureExtractor}.
+ * <p>
+ * Words and values are counted in arrays indexed by the ids of the
+ * {@link TokenCache}, and the joint distribution of MI is a sorted list of the
+ * non-empty cells. All buffers are reused from one call to the next, so an
+ * instance is NOT thread-safe: {@link FeaturesBuilder} keeps one per thread.
+ */
+public class FeatureKernel {
+
+	private static final int INITIAL_SIZE = 1024;
+
+	/** token id --> occurrences in the catalog / source bag */
+	private int[] catalogCounts = new int[INITIAL_SIZE];
+	private int[] sourceCounts = new int[INITIAL_SIZE];
+	/** distinct words found in the catalog bag, in order of first occurrence */
+	private int[] catalogWords = new int[INITIAL_SIZE];
+	private int nCatalogWords;
+	/** distinct words found in the source bag, in order of first occurrence */
+	private int[] sourceWords = new int[INITIAL_SIZE];
+	private int nSourceWords;
+	private int catalogBagSize;
+
+	/** distinct words in order of insertion in the HashSet of the reference JSD */
+	private int[] words = new int[INITIAL_SIZE];
+	/** indexes in words, in iteration order of the HashSet (see {@link HashSetOrder}) */
+	private int[] order = new int[INITIAL_SIZE];
+	private long[] keys = new long[INITIAL_SIZE];
+	private double[] pCatalog = new double[INITIAL_SIZE];
+	private double[] pSource = new double[INITIAL_SIZE];
+	private double[] pM = new double[INITIAL_SIZE];
+
+	/** (value id of a1, value id of a2) of each occurrence, for MI */
+	private long[] cells = new long[INITIAL_SIZE];
+	private int nCells;
+	/** value id --> marginal probability */
+	private double[] rowProbs = new double[INITIAL_SIZE];
+	private double[] columnProbs = new double[INITIAL_SIZE];
+
+	private double jsd;
+	private double jc;
+	private double mi;
+
+	/**
+	 * Compute the features of the pair of attributes, then available with
+	 * {@link #getJSD()}, {@link #getJC()} and {@link #getMI()}
+	 *
+	 * @param prods
+	 * @param a1
+	 *            the catalog attribute (values may be merged with ###)
+	 * @param a2
+	 *            the source attribute
+	 * @param tokenCache
+	 *            tokenization of the values of the current run
+	 * @param useMI
+	 *            if false MI is not computed (and is 0)
+	 */
+	public void compute(List<Entry<Specifications, SourceProductPage>> prods, String a1, String a2,
+			TokenCache tokenCache, boolean useMI) {
+		if (useMI && prods.isEmpty())
+			throw new IllegalArgumentException("Cannot compute MI on empty pair of documents");
+
+		this.nCatalogWords = 0;
+		this.nSourceWords = 0;
+		this.catalogBagSize = 0;
+		this.nCells = 0;
+		for (Entry<Specifications, SourceProductPage> couple : prods) {
+			String value1 = couple.getKey().get(a1);
+			String value2 = couple.getValue().getSpecifications().get(a2);
+			countWords(tokenCache.getTokens(value1), tokenCache.getTokens(value2));
+			if (useMI)
+				addCells(tokenCache.getValues(value1), tokenCache.getId(value2));
+		}
+
+		int n = sortWords(tokenCache);
+		this.jsd = computeJSD(n);
+		this.jc = computeJC(n);
+		this.mi = useMI ? computeMI() : 0.0;
+
+		// buffers are cleared only where they were used
+		for (int i = 0; i < this.nCatalogWords; i++)
+			this.catalogCounts[this.catalogWords[i]] = 0;
+		for (int i = 0; i < this.nSourceWords; i++)
+			this.sourceCounts[this.sourceWords[i]] = 0;
+		for (int i = 0; i < this.nCells; i++) {
+			this.rowProbs[(int) (this.cells[i] >>> 32)] = 0.0;
+			this.columnProbs[(int) this.cells[i]] = 0.0;
+		}
+	}
+
+	private void countWords(int[] catalogTokens, int[] sourceTokens) {
+		for (int token : catalogTokens) {
+			if (token >= this.catalogCounts.length)
+				growIds(token);
+			if (this.catalogCounts[token]++ == 0)
+				this.catalogWords = append(this.catalogWords, this.nCatalogWords++, token);
+		}
+		for (int token : sourceTokens) {
+			if (token >= this.sourceCounts.length)
+				growIds(token);
+			if (this.sourceCounts[token]++ == 0)
+				this.sourceWords = append(this.sourceWords, this.nSourceWords++, token);
+		}
+		this.catalogBagSize += catalogTokens.length;
+	}
+
+	private void addCells(int[] values1, int value2) {
+		if (value2 >= this.columnProbs.length)
+			growIds(value2);
+		for (int value1 : values1) {
+			if (value1 >= this.rowProbs.length)
+				growIds(value1);
+			if (this.nCells == this.cells.length)
+				this.cells = Arrays.copyOf(this.cells, this.nCells * 2);
+			this.cells[this.nCells++] = ((long) value1 << 32) | value2;
+		}
+	}
+
+	/**
+	 * Puts the distinct words in the iteration order of the HashSet of the
+	 * original JSD (see {@link HashSetOrder})
+	 *
+	 * @return number of distinct words
+	 */
+	private int sortWords(TokenCache tokenCache) {
+		// insertion order: catalog words, then words found only in the source bag
+		int n = 0;
+		ensureWords(this.nCatalogWords + this.nSourceWords);
+		for (int i = 0; i < this.nCatalogWords; i++)
+			this.words[n++] = this.catalogWords[i];
+		for (int i = 0; i < this.nSourceWords; i++)
+			if (this.catalogCounts[this.sourceWords[i]] == 0)
+				this.words[n++] = this.sourceWords[i];
+		HashSetOrder.sort(this.words, n, this.catalogBagSize, tokenCache, this.keys, this.order);
+		return n;
+	}
+
+	private double computeJSD(int n) {
+		// normalization on the number of words of each distribution, that grows
+		// with each word found only in the other distribution
+		int sizeCatalog = this.nCatalogWords;
+		int sizeSource = this.nSourceWords;
+		for (int i = 0; i < n; i++) {
+			int w = this.words[this.order[i]];
+			double pCat = this.catalogCounts[w] / (double) sizeCatalog;
+			double pSrc = this.sourceCounts[w] / (double) sizeSource;
+			if (this.catalogCounts[w] == 0)
+				sizeCatalog++;
+			if (this.sourceCounts[w] == 0)
+				sizeSource++;
+			this.pCatalog[i] = pCat;
+			this.pSource[i] = pSrc;
+			this.pM[i] = (pCat + pSrc) / 2;
+		}
+		return (getKL(this.pCatalog, this.pM, n) + getKL(this.pSource, this.pM, n)) / 2;
+	}
+
+	// Kullback-Leibler divergence
+	private static double getKL(double[] p1, double[] p2, int n) {
+		double kl = 0.0;
+		for (int i = 0; i < n; i++) {
+			if (p1[i] == 0.0 || p2[i] == 0.0)
+				continue;
+			kl += p1[i] * Math.log(p1[i] / p2[i]);
+		}
+		return kl;
+	}
+
+	// Jaccard coefficient
+	private double computeJC(int n) {
+		int intersection = 0;
+		for (int i = 0; i < this.nCatalogWords; i++)
+			if (this.sourceCounts[this.catalogWords[i]] > 0)
+				intersection++;
+		return intersection / (double) n;
+	}
+
+	/**
+	 * Mutual information on the non-empty cells of the joint distribution, in
+	 * the same order of the dense matrix of {@link FeatureExtractor#getMI}
+	 */
+	private double computeMI() {
+		Arrays.sort(this.cells, 0, this.nCells);
+		double total = this.nCells;
+		for (int start = 0, end; start < this.nCells; start = end) {
+			end = start + 1;
+			while (end < this.nCells && this.cells[end] == this.cells[start])
+				end++;
+			double p = (end - start) / total;
+			this.rowProbs[(int) (this.cells[start] >>> 32)] += p;
+			this.columnProbs[(int) this.cells[start]] += p;
+		}
+
+		double mutualInformation = 0.0;
+		for (int start = 0, end; start < this.nCells; start = end) {
+			end = start + 1;
+			while (end < this.nCells && this.cells[end] == this.cells[start])
+				end++;
+			double p = (end - start) / total;
+			double logArg = p / (this.rowProbs[(int) (this.cells[start] >>> 32)]
+					* this.columnProbs[(int) this.cells[start]]);
+			mutualInformation += p * (Math.log(logArg) / Math.log(2));
+		}
+		return mutualInformation;
+	}
+
+	public double getJSD() {
+		return jsd;
+	}
+
+	public double getJC() {
+		return jc;
+	}
+
+	public double getMI() {
+		return mi;
+	}
+
+	/**
+	 * Token ids of the cache keep growing during a run
+	 */
+	private void growIds(int id) {
+		int size = Math.max(id + 1, this.catalogCounts.length * 2);
+		this.catalogCounts = Arrays.copyOf(this.catalogCounts, size);
+		this.sourceCounts = Arrays.copyOf(this.sourceCounts, size);
+		this.rowProbs = Arrays.copyOf(this.rowProbs, size);
+		this.columnProbs = Arrays.copyOf(this.columnProbs, size);
+	}
+
+	private void ensureWords(int n) {
+		if (n <= this.words.length)
+			return;
+		int size = Math.max(n, this.words.length * 2);
+		this.words = new int[size];
+		this.order = new int[size];
+		this.keys = new long[size];
+		this.pCatalog = new double[size];
+		this.pSource = new double[size];
+		this.pM = new double[size];
+	}
+
+	private static int[] append(int[] array, int index, int value) {
+		if (index == array.length)
+			array = Arrays.copyOf(array, index * 2);
+		array[index] = value;
+		return array;
+	}
+}
@@ -5,8 +5,8 @@ import java.util.Map.Entry;
 
 import model.SourceProductPage;
 import model.AbstractProductPage.Specifications;
-import models.matcher.BagsOfWordsManager;
 import models.matcher.Features;
+import models.matcher.TokenCache;
 
 /**
  * Build an object {@link Features} provided attributes source comparison and category comparison 
@@ -14,7 +14,21 @@ import models.matcher.Features;
  *
  */
 public class FeaturesBuilder {
-	
+
+	/** Scratch buffers of the feature computation, one per thread */
+	private static final ThreadLocal<FeatureKernel> KERNELS = ThreadLocal.withInitial(FeatureKernel::new);
+
+	/** Tokenization of the values, shared by all the pairs of attributes of the current run */
+	private volatile TokenCache tokenCache = new TokenCache();
+
+	/**
+	 * Starts a new run (match of a source, generation of a training set): values
+	 * tokenized in previous runs are released
+	 */
+	public void resetTokenCache() {
+		this.tokenCache = new TokenCache();
+	}
+
 	/**
 	 * Compute features for classification
 	 * @param sList
@@ -28,17 +42,17 @@ public class FeaturesBuilder {
 			List<Entry<Specifications, SourceProductPage>> cList, String a1, String a2, boolean useMI) {
 
 		Features features = new Features();
-		BagsOfWordsManager sBags = new BagsOfWordsManager(a1, a2, sList);
-		BagsOfWordsManager cBags = new BagsOfWordsManager(a1, a2, cList);
+		TokenCache cache = this.tokenCache;
+		FeatureKernel kernel = KERNELS.get();
 
-		features.setSourceJSD(FeatureExtractor.getJSD(sBags));
-		features.setCategoryJSD(FeatureExtractor.getJSD(cBags));
-		features.setSourceJC(FeatureExtractor.getJC(sBags));
-		features.setCategoryJC(FeatureExtractor.getJC(cBags));
-		if (useMI) {
-			features.setSourceMI(FeatureExtractor.getMI(sList, a1, a2));
-			features.setCategoryMI(FeatureExtractor.getMI(cList, a1, a2));
-		}
+		kernel.compute(sList, a1, a2, cache, useMI);
+		features.setSourceJSD(kernel.getJSD());
+		features.setSourceJC(kernel.getJC());
+		features.setSourceMI(kernel.getMI());
+		kernel.compute(cList, a1, a2, cache, useMI);
+		features.setCategoryJSD(kernel.getJSD());
+		features.setCategoryJC(kernel.getJC());
+		features.setCategoryMI(kernel.getMI());
 		if (features.hasNan())
 			throw new ArithmeticException("feature value is NaN");
 
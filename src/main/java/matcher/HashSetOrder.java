@@ -0,0 +1,108 @@
+package matcher;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import models.matcher.TokenCache;
+
+/**
+ * Iteration order of the distinct words in the <code>HashSet&lt;String&gt;</code>
+ * of the original JSD, built from the catalog bag of words and then filled with
+ * the source bag. The JSD normalization grows while iterating this set, so its
+ * order changes the value of the feature and is kept for the features to be
+ * the same as those of the trained models.
+ * <p>
+ * The order depends on the internals of the JDK 8 <code>HashMap</code> (also
+ * unchanged up to JDK 17), which are emulated: buckets by spread hash in a
+ * table sized as in <code>HashSet(Collection)</code> and doubled at a 0.75
+ * load, insertion order within a bucket. Bins with many colliding words are
+ * turned into trees (or make the table grow early), which reorder them: when
+ * that can happen the order is read from an actual <code>HashSet</code>.
+ *
+ * @see FeatureKernel
+ */
+final class HashSetOrder {
+
+	/** Bins of a HashMap with more nodes may be turned into trees */
+	private static final int TREEIFY_THRESHOLD = 8;
+
+	private HashSetOrder() {
+	}
+
+	/**
+	 * @param words
+	 *            token ids of the distinct words, in order of insertion (first
+	 *            occurrence in the catalog bag, then in the source bag)
+	 * @param n
+	 *            number of words
+	 * @param catalogBagSize
+	 *            number of words of the catalog bag (with repetitions), from
+	 *            which the set is built
+	 * @param keys
+	 *            buffer of at least n elements
+	 * @param order
+	 *            receives the indexes in words in iteration order, at least n
+	 *            elements
+	 */
+	static void sort(int[] words, int n, int catalogBagSize, TokenCache cache, long[] keys, int[] order) {
+		int initialCapacity = tableSizeFor(Math.max((int) (catalogBagSize / .75f) + 1, 16));
+		int capacity = initialCapacity;
+		while (n > capacity * 3 / 4)
+			capacity *= 2;
+
+		// buckets only split when the table grows, so no bin ever gets more words
+		// than its bucket in the initial table
+		sortByBucket(words, n, initialCapacity, cache, keys);
+		for (int start = 0, end; start < n; start = end) {
+			end = start + 1;
+			while (end < n && keys[end] >>> 32 == keys[start] >>> 32)
+				end++;
+			if (end - start >= TREEIFY_THRESHOLD) {
+				sortWithHashSet(words, n, initialCapacity, cache, order);
+				return;
+			}
+		}
+		if (capacity != initialCapacity)
+			sortByBucket(words, n, capacity, cache, keys);
+		for (int i = 0; i < n; i++)
+			order[i] = (int) keys[i];
+	}
+
+	/**
+	 * Sorts (bucket, insertion index) of each word
+	 */
+	private static void sortByBucket(int[] words, int n, int capacity, TokenCache cache, long[] keys) {
+		for (int i = 0; i < n; i++) {
+			int h = cache.getHash(words[i]);
+			long bucket = (h ^ (h >>> 16)) & (capacity - 1);
+			keys[i] = (bucket << 32) | i;
+		}
+		Arrays.sort(keys, 0, n);
+	}
+
+	private static void sortWithHashSet(int[] words, int n, int initialCapacity, TokenCache cache, int[] order) {
+		Set<String> set = new HashSet<>(initialCapacity);
+		Map<String, Integer> indexes = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			String word = cache.getString(words[i]);
+			set.add(word);
+			indexes.put(word, i);
+		}
+		int i = 0;
+		for (String word : set)
+			order[i++] = indexes.get(word);
+	}
+
+	private static int tableSizeFor(int cap) {
+		int n = cap - 1;
+		n |= n >>> 1;
+		n |= n >>> 2;
+		n |= n >>> 4;
+		n |= n >>> 8;
+		n |= n >>> 16;
+		return (n < 0) ? 1 : (n >= 1 << 30) ? 1 << 30 : n + 1;
+	}
+}
@@ -0,0 +1,115 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import connectors.dao.AlignmentDao;
+import model.Source;
+import model.SourceProductPage;
+
+/**
+ * Linkage between the pages of the catalog of a category and the pages of the
+ * sources to be matched, kept in memory across the matches.
+ * <p>
+ * The pages of a website are fetched once, when it enters the catalog, and
+ * indexed by the urls in their linkage; the linkage inside the catalog is
+ * recomputed only when the catalog grows. At each match only the pages of the
+ * new source are fetched, and those linked to the catalog are returned in the
+ * same form as {@link AlignmentDao#getProdsInRL(List, String)}.
+ * <p>
+ * Pages of the catalog are shared between the matches, so the names of their
+ * attributes are updated only the first time (see
+ * {@link CategoryMatcher#getMatch}).
+ */
+public class IncrementalCatalog {
+
+	private AlignmentDao dao;
+	private String category;
+	/** websites whose pages are in the catalog */
+	private Set<String> websites = new LinkedHashSet<>();
+	/** pages of the catalog, in order of fetching */
+	private List<SourceProductPage> catalogPages = new ArrayList<>();
+	/** url of a linked page --> catalog page linking to it (the last one fetched) */
+	private Map<String, SourceProductPage> linkedUrls = new HashMap<>();
+	/** url of a catalog page --> the page and the catalog pages in linkage with it */
+	private Map<String, List<SourceProductPage>> catalogLinkage = new HashMap<>();
+
+	public IncrementalCatalog(AlignmentDao dao, String category) {
+		this.dao = dao;
+		this.category = category;
+	}
+
+	/**
+	 * @param catalogWebsites
+	 *            websites currently in the catalog, the pages of those not yet
+	 *            in memory are fetched
+	 * @param newSource
+	 *            website to be matched with the catalog
+	 * @return page of the new source --> catalog page linking to it and the
+	 *         catalog pages in linkage with that one, in order of the pages of
+	 *         the source
+	 */
+	public Map<SourceProductPage, List<SourceProductPage>> getProdsInRL(List<String> catalogWebsites,
+			String newSource) {
+		boolean catalogChanged = false;
+		for (String website : catalogWebsites)
+			if (this.websites.add(website)) {
+				addCatalogPages(this.dao.getPagesOfSource(new Source(this.category, website)));
+				catalogChanged = true;
+			}
+		if (catalogChanged)
+			updateCatalogLinkage();
+
+		Map<SourceProductPage, List<SourceProductPage>> rlMap = new LinkedHashMap<>();
+		if (this.websites.contains(newSource))
+			return rlMap;
+		for (SourceProductPage page : this.dao.getPagesOfSource(new Source(this.category, newSource))) {
+			SourceProductPage catalogPage = this.linkedUrls.get(page.getUrl());
+			if (catalogPage == null)
+				continue;
+			List<SourceProductPage> linkage = this.catalogLinkage.get(catalogPage.getUrl());
+			rlMap.put(page, linkage != null ? linkage : new ArrayList<>(Arrays.asList(catalogPage)));
+		}
+		return rlMap;
+	}
+
+	private void addCatalogPages(List<SourceProductPage> pages) {
+		for (SourceProductPage page : pages) {
+			this.catalogPages.add(page);
+			for (String linkedUrl : page.getLinkage())
+				this.linkedUrls.put(linkedUrl, page);
+		}
+	}
+
+	/**
+	 * A catalog page linked by another one is in linkage with it, in both
+	 * directions
+	 */
+	private void updateCatalogLinkage() {
+		this.catalogLinkage.clear();
+		for (SourceProductPage page : this.catalogPages) {
+			SourceProductPage linkingPage = this.linkedUrls.get(page.getUrl());
+			if (linkingPage == null || linkingPage == page)
+				continue;
+			addCatalogLinkage(page, linkingPage);
+			addCatalogLinkage(linkingPage, page);
+		}
+	}
+
+	private void addCatalogLinkage(SourceProductPage page, SourceProductPage linkedPage) {
+		this.catalogLinkage.computeIfAbsent(page.getUrl(), u -> new ArrayList<>(Arrays.asList(page))).add(linkedPage);
+	}
+
+	/**
+	 * @return number of pages of the catalog in memory
+	 */
+	public int getCatalogSize() {
+		return this.catalogPages.size();
+	}
+}
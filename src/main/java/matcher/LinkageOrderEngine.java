@@ -0,0 +1,166 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import models.matcher.BitmapPostingList;
+
+/**
+ * Order of the sources for the alignment: the first source is the catalog,
+ * then each source is the one with the most products in common with the union
+ * of the previous ones (the catalog at that step).
+ * <p>
+ * Products of each source are a {@link BitmapPostingList}. When a source is
+ * added to the catalog, only the products that are new in the catalog update
+ * the linkage of the sources containing them (the linkage of a source can only
+ * grow), and the next source is taken from a max-heap whose outdated entries
+ * are skipped when they are polled.
+ *
+ * @param <T>
+ *            the source
+ */
+public class LinkageOrderEngine<T> {
+
+	private List<T> sources = new ArrayList<>();
+	private List<BitmapPostingList> products = new ArrayList<>();
+
+	/**
+	 * Adds a source. The first source added is the catalog, and in case of
+	 * same linkage sources added before come first.
+	 *
+	 * @param source
+	 * @param productIds
+	 *            non-negative ids of the products of the source
+	 */
+	public void addSource(T source, int[] productIds) {
+		this.sources.add(source);
+		this.products.add(BitmapPostingList.of(productIds));
+	}
+
+	/**
+	 * Products of the sources are the groups of pages connected by linkage.
+	 * The catalog is the source with the most pages.
+	 *
+	 * @param sourcesLinkage
+	 *            website --> url of each page --> urls of its linked pages (urls
+	 *            of pages that are not in the map are ignored)
+	 */
+	public static LinkageOrderEngine<String> fromLinkage(Map<String, Map<String, List<String>>> sourcesLinkage) {
+		// union-find on the pages
+		Map<String, Integer> url2page = new HashMap<>();
+		sourcesLinkage.values()
+				.forEach(pages -> pages.keySet().forEach(url -> url2page.putIfAbsent(url, url2page.size())));
+		int[] parent = new int[url2page.size()];
+		for (int i = 0; i < parent.length; i++)
+			parent[i] = i;
+		sourcesLinkage.values().forEach(pages -> pages.forEach((url, linkage) -> {
+			int page = url2page.get(url);
+			for (String linkedUrl : linkage) {
+				Integer linkedPage = url2page.get(linkedUrl);
+				if (linkedPage != null)
+					parent[find(parent, page)] = find(parent, linkedPage);
+			}
+		}));
+
+		List<String> websites = new ArrayList<>(sourcesLinkage.keySet());
+		websites.sort((w1, w2) -> {
+			int cmp = Integer.compare(sourcesLinkage.get(w2).size(), sourcesLinkage.get(w1).size());
+			return cmp != 0 ? cmp : w1.compareTo(w2);
+		});
+		LinkageOrderEngine<String> engine = new LinkageOrderEngine<>();
+		for (String website : websites)
+			engine.addSource(website, sourcesLinkage.get(website).keySet().stream()
+					.mapToInt(url -> find(parent, url2page.get(url))).toArray());
+		return engine;
+	}
+
+	private static int find(int[] parent, int page) {
+		while (parent[page] != page) {
+			parent[page] = parent[parent[page]];
+			page = parent[page];
+		}
+		return page;
+	}
+
+	/**
+	 * @return all the sources, in linkage order
+	 */
+	public List<T> getLinkageOrder() {
+		int n = this.sources.size();
+		List<T> orderedSources = new ArrayList<>(n);
+		if (n == 0)
+			return orderedSources;
+
+		// product --> sources containing it
+		Map<Integer, int[]> product2sources = new HashMap<>();
+		for (int s = 0; s < n; s++) {
+			int source = s;
+			this.products.get(s).forEach(p -> {
+				int[] containing = product2sources.get(p);
+				if (containing == null) {
+					containing = new int[2];
+					product2sources.put(p, containing);
+				} else if (containing[0] + 1 == containing.length) {
+					containing = Arrays.copyOf(containing, containing.length * 2);
+					product2sources.put(p, containing);
+				}
+				// first cell is the number of sources
+				containing[++containing[0]] = source;
+			});
+		}
+
+		int[] linkage = new int[n];
+		boolean[] added = new boolean[n];
+		BitmapPostingList catalog = new BitmapPostingList();
+		// (linkage, source) entries, the current one of a source has its current linkage
+		PriorityQueue<long[]> heap = new PriorityQueue<>(n, (e1, e2) -> {
+			int cmp = Long.compare(e2[0], e1[0]);
+			return cmp != 0 ? cmp : Long.compare(e1[1], e2[1]);
+		});
+		for (int s = 1; s < n; s++)
+			heap.add(new long[] { 0, s });
+		// sources whose linkage changed while adding the current source
+		boolean[] changed = new boolean[n];
+		List<Integer> changedSources = new ArrayList<>();
+
+		int next = 0;
+		while (true) {
+			added[next] = true;
+			orderedSources.add(this.sources.get(next));
+			this.products.get(next).forEach(p -> {
+				if (catalog.contains(p))
+					return;
+				catalog.add(p);
+				int[] containing = product2sources.get(p);
+				for (int i = 1; i <= containing[0]; i++) {
+					int s = containing[i];
+					if (added[s])
+						continue;
+					linkage[s]++;
+					if (!changed[s]) {
+						changed[s] = true;
+						changedSources.add(s);
+					}
+				}
+			});
+			for (int s : changedSources) {
+				changed[s] = false;
+				heap.add(new long[] { linkage[s], s });
+			}
+			changedSources.clear();
+
+			// skip entries of added sources and outdated entries
+			long[] entry;
+			do {
+				entry = heap.poll();
+			} while (entry != null && (added[(int) entry[1]] || entry[0] != linkage[(int) entry[1]]));
+			if (entry == null)
+				return orderedSources;
+			next = (int) entry[1];
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package matcher;
+
+import java.util.Map;
+
+import models.matcher.DataFrame;
+import models.matcher.DataFrame.FeatureColumn;
+
+/**
+ * Scores the pairs of attributes with the coefficients of a logistic
+ * regression (the caret glm model trained in R), without R.
+ * <p>
+ * Coefficients are those of the log-odds of the match ("true" class), indexed
+ * by the names of the features (see {@link FeatureColumn}) plus
+ * {@link #INTERCEPT}.
+ */
+public class LogisticRegressionClassifier implements Classifier {
+
+	/** Name of the intercept in the coefficients (as in R) */
+	public static final String INTERCEPT = "(Intercept)";
+
+	private double intercept;
+	/** coefficient of each feature of {@link FeatureColumn#FEATURES} */
+	private double[] coefficients;
+
+	/**
+	 * @param coefficients
+	 *            feature name --> coefficient, must contain the intercept and all
+	 *            the features
+	 */
+	public LogisticRegressionClassifier(Map<String, Double> coefficients) {
+		this.coefficients = new double[FeatureColumn.FEATURES.length];
+		for (FeatureColumn feature : FeatureColumn.FEATURES)
+			this.coefficients[feature.ordinal()] = getCoefficient(coefficients, feature.name());
+		this.intercept = getCoefficient(coefficients, INTERCEPT);
+		if (coefficients.size() != this.coefficients.length + 1)
+			throw new IllegalArgumentException("Unknown coefficients in model: " + coefficients.keySet());
+	}
+
+	private static double getCoefficient(Map<String, Double> coefficients, String name) {
+		Double coefficient = coefficients.get(name);
+		if (coefficient == null)
+			throw new IllegalArgumentException("Missing coefficient in model: " + name);
+		return coefficient;
+	}
+
+	@Override
+	public double[] classify(DataFrame df) {
+		int size = df.size();
+		// linear predictor, one column at a time
+		double[] predictions = new double[size];
+		for (int i = 0; i < size; i++)
+			predictions[i] = this.intercept;
+		for (FeatureColumn feature : FeatureColumn.FEATURES) {
+			double coefficient = this.coefficients[feature.ordinal()];
+			double[] column = df.getColumn(feature);
+			for (int i = 0; i < size; i++)
+				predictions[i] += coefficient * column[i];
+		}
+		for (int i = 0; i < size; i++)
+			predictions[i] = sigmoid(predictions[i]);
+		return predictions;
+	}
+
+	/**
+	 * @return 1 / (1 + e^-z), computed without overflow
+	 */
+	public static double sigmoid(double z) {
+		if (z >= 0)
+			return 1 / (1 + Math.exp(-z));
+		double e = Math.exp(z);
+		return e / (1 + e);
+	}
+
+	public double getIntercept() {
+		return intercept;
+	}
+
+	/**
+	 * @return coefficient of each feature, in order of {@link FeatureColumn#FEATURES}
+	 */
+	public double[] getCoefficients() {
+		return coefficients.clone();
+	}
+}
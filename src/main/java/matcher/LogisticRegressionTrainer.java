@@ -0,0 +1,332 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import models.matcher.DataFrame.FeatureColumn;
+
+/**
+ * Trains the logistic regression of the matcher in the JVM, as the caret glm
+ * model of RConnector#train: final model fitted on the whole training set
+ * (IRLS, as R glm), performance estimated with repeated k-fold cross-validation
+ * (stratified on the class, as caret) and measured as ROC AUC (as
+ * twoClassSummary).
+ * <p>
+ * The fits of the cross-validation are computed in parallel.
+ *
+ * @see LogisticRegressionClassifier
+ */
+public class LogisticRegressionTrainer {
+
+	private static final int DEFAULT_FOLDS = 10;
+	private static final int DEFAULT_REPEATS = 50;
+	private static final long DEFAULT_SEED = 42;
+	/** Same convergence criteria of R glm.control() */
+	private static final int MAX_ITERATIONS = 25;
+	private static final double EPSILON = 1e-8;
+	/** Features with pivot below this (relative) tolerance are aliased, as R glm NA coefficients */
+	private static final double ALIASING_TOLERANCE = 1e-11;
+
+	private int folds;
+	private int repeats;
+	private int parallelism;
+	private long seed;
+
+	private double rocMean = Double.NaN;
+	private double rocSD = Double.NaN;
+
+	public LogisticRegressionTrainer() {
+		this(0);
+	}
+
+	/**
+	 * @param parallelism
+	 *            threads used for the cross-validation. 1 means sequential
+	 *            computation, 0 or less means one thread per available core
+	 */
+	public LogisticRegressionTrainer(int parallelism) {
+		this(DEFAULT_FOLDS, DEFAULT_REPEATS, parallelism, DEFAULT_SEED);
+	}
+
+	/**
+	 * @param folds
+	 * @param repeats
+	 *            repetitions of the k-fold cross-validation, 0 to skip it
+	 * @param parallelism
+	 *            see {@link #LogisticRegressionTrainer(int)}
+	 * @param seed
+	 *            seed of the split in folds
+	 */
+	public LogisticRegressionTrainer(int folds, int repeats, int parallelism, long seed) {
+		if (folds < 2)
+			throw new IllegalArgumentException("At least 2 folds are needed for cross-validation");
+		this.folds = folds;
+		this.repeats = repeats;
+		this.parallelism = parallelism <= 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+		this.seed = seed;
+	}
+
+	/**
+	 * @param trainingRows
+	 *            rows of the training set as built by
+	 *            {@link TrainingSetGenerator#getTrainingSetWithTuples}, with the
+	 *            features and the match (0 or 1) as last columns
+	 * @return the model fitted on all the rows
+	 */
+	public LogisticRegressionClassifier train(List<String> trainingRows) {
+		int nFeatures = FeatureColumn.FEATURES.length;
+		double[][] x = new double[trainingRows.size()][];
+		double[] y = new double[trainingRows.size()];
+		for (int i = 0; i < trainingRows.size(); i++) {
+			String[] values = trainingRows.get(i).split(",");
+			if (values.length < nFeatures + 1)
+				throw new IllegalArgumentException("Invalid row of training set: " + trainingRows.get(i));
+			x[i] = new double[nFeatures];
+			for (int f = 0; f < nFeatures; f++)
+				x[i][f] = Double.valueOf(values[values.length - nFeatures - 1 + f]);
+			y[i] = Double.valueOf(values[values.length - 1]);
+		}
+		return train(x, y);
+	}
+
+	/**
+	 * @param x
+	 *            features of each example, in order of {@link FeatureColumn#FEATURES}
+	 * @param y
+	 *            1 for matches, 0 otherwise
+	 * @return the model fitted on all the examples
+	 */
+	public LogisticRegressionClassifier train(double[][] x, double[] y) {
+		if (x.length == 0)
+			throw new IllegalArgumentException("Cannot train on an empty training set");
+		if (this.repeats > 0)
+			crossValidate(x, y);
+
+		double[] beta = fit(x, y, IntStream.range(0, x.length).toArray());
+		Map<String, Double> coefficients = new HashMap<>();
+		coefficients.put(LogisticRegressionClassifier.INTERCEPT, beta[0]);
+		for (FeatureColumn feature : FeatureColumn.FEATURES)
+			coefficients.put(feature.name(), beta[feature.ordinal() + 1]);
+		return new LogisticRegressionClassifier(coefficients);
+	}
+
+	/**
+	 * Repeated stratified k-fold cross-validation, one fit per fold and repeat
+	 */
+	private void crossValidate(double[][] x, double[] y) {
+		List<Integer> positives = new ArrayList<>();
+		List<Integer> negatives = new ArrayList<>();
+		for (int i = 0; i < y.length; i++)
+			(y[i] == 1 ? positives : negatives).add(i);
+
+		// repeat --> fold of each example
+		int[][] foldOf = new int[this.repeats][y.length];
+		Random random = new Random(this.seed);
+		for (int r = 0; r < this.repeats; r++) {
+			for (List<Integer> examples : Arrays.asList(positives, negatives)) {
+				Collections.shuffle(examples, random);
+				for (int i = 0; i < examples.size(); i++)
+					foldOf[r][examples.get(i)] = i % this.folds;
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+		double[] rocs;
+		try {
+			rocs = pool.submit(() -> IntStream.range(0, this.repeats * this.folds).parallel()
+					.mapToDouble(task -> validateFold(x, y, foldOf[task / this.folds], task % this.folds))
+					.toArray()).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while cross-validating", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		// folds with a single class have no ROC
+		double[] validRocs = Arrays.stream(rocs).filter(roc -> !Double.isNaN(roc)).toArray();
+		if (validRocs.length < rocs.length)
+			System.err.println("ROC non calcolata su " + (rocs.length - validRocs.length) + " fold di " + rocs.length
+					+ ": contengono esempi di una sola classe");
+		if (validRocs.length == 0) {
+			this.rocMean = Double.NaN;
+			this.rocSD = Double.NaN;
+			System.err.println("ROC non disponibile: nessun fold contiene esempi di entrambe le classi");
+			return;
+		}
+		this.rocMean = Arrays.stream(validRocs).average().getAsDouble();
+		// the sample standard deviation needs at least 2 values
+		this.rocSD = validRocs.length < 2 ? Double.NaN
+				: Math.sqrt(Arrays.stream(validRocs).map(roc -> (roc - this.rocMean) * (roc - this.rocMean)).sum()
+						/ (validRocs.length - 1));
+		System.out.println("ROC (" + this.folds + " fold x " + this.repeats + ") = " + this.rocMean
+				+ (validRocs.length < 2 ? " (SD non disponibile, un solo fold valido)" : " (SD " + this.rocSD + ")"));
+	}
+
+	/**
+	 * @return ROC AUC on the fold, of the model fitted on the other folds
+	 */
+	private double validateFold(double[][] x, double[] y, int[] foldOf, int fold) {
+		int[] training = IntStream.range(0, y.length).filter(i -> foldOf[i] != fold).toArray();
+		int[] test = IntStream.range(0, y.length).filter(i -> foldOf[i] == fold).toArray();
+		double[] beta = fit(x, y, training);
+		double[] scores = new double[test.length];
+		double[] labels = new double[test.length];
+		for (int i = 0; i < test.length; i++) {
+			scores[i] = linearPredictor(beta, x[test[i]]);
+			labels[i] = y[test[i]];
+		}
+		return getAUC(scores, labels);
+	}
+
+	/**
+	 * Maximum likelihood fit with Newton-Raphson (IRLS), with the convergence
+	 * criteria of R glm
+	 *
+	 * @return intercept, then coefficient of each feature
+	 */
+	static double[] fit(double[][] x, double[] y, int[] rows) {
+		int p = x[0].length + 1;
+		double[] beta = new double[p];
+		double[] row = new double[p];
+		double deviance = Double.POSITIVE_INFINITY;
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			// X'WX and X'(y - mu)
+			double[][] hessian = new double[p][p];
+			double[] gradient = new double[p];
+			double newDeviance = 0;
+			for (int i : rows) {
+				row[0] = 1;
+				System.arraycopy(x[i], 0, row, 1, p - 1);
+				double mu = LogisticRegressionClassifier.sigmoid(linearPredictor(beta, x[i]));
+				double w = mu * (1 - mu);
+				for (int j = 0; j < p; j++) {
+					gradient[j] += row[j] * (y[i] - mu);
+					for (int k = 0; k <= j; k++)
+						hessian[j][k] += w * row[j] * row[k];
+				}
+				newDeviance -= 2 * (y[i] == 1 ? Math.log(Math.max(mu, Double.MIN_VALUE))
+						: Math.log(Math.max(1 - mu, Double.MIN_VALUE)));
+			}
+			if (Math.abs(newDeviance - deviance) / (Math.abs(newDeviance) + 0.1) < EPSILON)
+				break;
+			deviance = newDeviance;
+			double[] step = solve(hessian, gradient);
+			for (int j = 0; j < p; j++)
+				beta[j] += step[j];
+		}
+		return beta;
+	}
+
+	static double linearPredictor(double[] beta, double[] features) {
+		double eta = beta[0];
+		for (int f = 0; f < features.length; f++)
+			eta += beta[f + 1] * features[f];
+		return eta;
+	}
+
+	/**
+	 * Solves A s = b with the Cholesky decomposition of the symmetric matrix A
+	 * (lower triangle). Aliased variables (not independent from the previous
+	 * ones) get a 0 step, so that their coefficient stays 0.
+	 */
+	private static double[] solve(double[][] a, double[] b) {
+		int n = b.length;
+		double[][] l = new double[n][n];
+		boolean[] aliased = new boolean[n];
+		for (int j = 0; j < n; j++) {
+			double d = a[j][j];
+			for (int k = 0; k < j; k++)
+				d -= l[j][k] * l[j][k];
+			if (d <= ALIASING_TOLERANCE * Math.max(a[j][j], 1)) {
+				aliased[j] = true;
+				continue;
+			}
+			l[j][j] = Math.sqrt(d);
+			for (int i = j + 1; i < n; i++) {
+				double s = a[i][j];
+				for (int k = 0; k < j; k++)
+					s -= l[i][k] * l[j][k];
+				l[i][j] = s / l[j][j];
+			}
+		}
+		// L z = b, then L' s = z
+		double[] z = new double[n];
+		for (int i = 0; i < n; i++) {
+			if (aliased[i])
+				continue;
+			double s = b[i];
+			for (int k = 0; k < i; k++)
+				s -= l[i][k] * z[k];
+			z[i] = s / l[i][i];
+		}
+		double[] step = new double[n];
+		for (int i = n - 1; i >= 0; i--) {
+			if (aliased[i])
+				continue;
+			double s = z[i];
+			for (int k = i + 1; k < n; k++)
+				s -= l[k][i] * step[k];
+			step[i] = s / l[i][i];
+		}
+		return step;
+	}
+
+	/**
+	 * Area under the ROC curve (Mann-Whitney statistic, ties count 1/2)
+	 *
+	 * @return the AUC, NaN if there are not both classes
+	 */
+	static double getAUC(double[] scores, double[] labels) {
+		Integer[] order = new Integer[scores.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, (i1, i2) -> Double.compare(scores[i1], scores[i2]));
+		double positiveRanks = 0;
+		long positives = 0;
+		for (int start = 0, end; start < order.length; start = end) {
+			end = start + 1;
+			while (end < order.length && scores[order[end]] == scores[order[start]])
+				end++;
+			// average rank of the tied scores (1-based)
+			double rank = (start + 1 + end) / 2.0;
+			for (int i = start; i < end; i++)
+				if (labels[order[i]] == 1) {
+					positiveRanks += rank;
+					positives++;
+				}
+		}
+		long negatives = scores.length - positives;
+		if (positives == 0 || negatives == 0)
+			return Double.NaN;
+		return (positiveRanks - positives * (positives + 1) / 2.0) / (positives * (double) negatives);
+	}
+
+	/**
+	 * @return mean ROC AUC of the last cross-validation, on the folds with both
+	 *         classes (NaN if there are none)
+	 */
+	public double getRocMean() {
+		return rocMean;
+	}
+
+	/**
+	 * @return standard deviation of the ROC AUC of the last cross-validation, on
+	 *         the folds with both classes (NaN if there are less than 2)
+	 */
+	public double getRocSD() {
+		return rocSD;
+	}
+}
@@ -0,0 +1,301 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import models.matcher.DataFrame;
+import models.matcher.Match;
+
+/**
+ * Selects the one-to-one matches between source and catalog attributes, given
+ * the match probabilities of the rows of a {@link DataFrame}.
+ * <ul>
+ * <li>Rows with match probability < 0.5 are discarded
+ * <li>Each source attribute and each catalog attribute is used in at most one
+ * match
+ * </ul>
+ *
+ * @see CategoryMatcher
+ */
+public class MatchSelector {
+
+	private static final double MATCH_THRESHOLD = 0.5;
+	/** Above this number of cells of the assignment matrix, OPTIMAL falls back to GREEDY */
+	private static final long DEFAULT_MAX_OPTIMAL_SIZE = 250000;
+
+	/**
+	 * <ul>
+	 * <li>GREEDY -> pairs are accepted by descending match probability, if both
+	 * attributes are still free. A source attribute with several best matches
+	 * with the same probability is not matched until all but one of them are
+	 * taken by other source attributes.
+	 * <li>OPTIMAL -> assignment maximizing the sum of the match probabilities
+	 * (Hungarian algorithm), only for small frames
+	 * </ul>
+	 */
+	public enum SelectionType {
+		GREEDY, OPTIMAL
+	}
+
+	private SelectionType type;
+	private long maxOptimalSize;
+
+	public MatchSelector() {
+		this(SelectionType.GREEDY);
+	}
+
+	public MatchSelector(SelectionType type) {
+		this(type, DEFAULT_MAX_OPTIMAL_SIZE);
+	}
+
+	/**
+	 * @param type
+	 * @param maxOptimalSize
+	 *            max number of [source attribute x catalog attribute] cells for
+	 *            OPTIMAL selection, bigger frames use GREEDY selection
+	 */
+	public MatchSelector(SelectionType type, long maxOptimalSize) {
+		this.type = type;
+		this.maxOptimalSize = maxOptimalSize;
+	}
+
+	/**
+	 * @param df
+	 *            frame of the classified pairs, not modified
+	 * @param predictions
+	 *            match probability of each row of df
+	 * @return the selected matches
+	 */
+	public Match selectMatches(DataFrame df, double[] predictions) {
+		Rows rows = new Rows(df, predictions);
+		List<Integer> selected;
+		if (this.type == SelectionType.OPTIMAL
+				&& (long) rows.nSources * rows.nCatalogs <= this.maxOptimalSize)
+			selected = selectOptimal(rows);
+		else
+			selected = selectGreedy(rows);
+
+		Match match = new Match(df.getDictionary());
+		for (int row : selected)
+			match.addRow(df.getCatalogAttributeId(row), df.getSourceAttributeId(row), predictions[row]);
+		return match;
+	}
+
+	/**
+	 * Single pass on the rows in descending probability (for equal probability,
+	 * later rows first, so that they win ties on the same catalog attribute).
+	 */
+	private List<Integer> selectGreedy(Rows rows) {
+		double[] p = rows.predictions;
+		PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, rows.valid.length), (r1, r2) -> {
+			int cmp = Double.compare(p[r2], p[r1]);
+			return cmp != 0 ? cmp : Integer.compare(r2, r1);
+		});
+		for (int row : rows.valid)
+			queue.add(row);
+
+		BitSet usedSources = new BitSet(rows.nSources);
+		BitSet usedCatalogs = new BitSet(rows.nCatalogs);
+		// source attribute with tied best matches -> rows of the tie still available
+		Map<Integer, List<Integer>> tiedRows = new HashMap<>();
+		// source attribute with tied best matches -> rows popped while waiting
+		Map<Integer, List<Integer>> deferredRows = new HashMap<>();
+		// catalog attribute -> source attributes with a tie on it
+		Map<Integer, List<Integer>> catalog2tiedSources = new HashMap<>();
+		List<Integer> selected = new ArrayList<>();
+
+		List<Integer> batch = new ArrayList<>();
+		Map<Integer, List<Integer>> source2batchRows = new HashMap<>();
+		while (!queue.isEmpty()) {
+			// all rows with the same probability are evaluated together
+			double prob = p[queue.peek()];
+			batch.clear();
+			while (!queue.isEmpty() && p[queue.peek()] == prob)
+				batch.add(queue.poll());
+
+			source2batchRows.clear();
+			for (int row : batch) {
+				int s = rows.sources[row], c = rows.catalogs[row];
+				if (usedSources.get(s) || usedCatalogs.get(c))
+					continue;
+				if (tiedRows.containsKey(s))
+					deferredRows.computeIfAbsent(s, k -> new ArrayList<>()).add(row);
+				else
+					source2batchRows.computeIfAbsent(s, k -> new ArrayList<>()).add(row);
+			}
+
+			// later rows come first in the batch, so the first row found for a catalog attribute wins
+			for (int row : batch) {
+				int s = rows.sources[row], c = rows.catalogs[row];
+				List<Integer> candidates = source2batchRows.get(s);
+				if (candidates == null || usedSources.get(s) || usedCatalogs.get(c))
+					continue;
+				if (candidates.size() > 1) {
+					source2batchRows.remove(s);
+					List<Integer> tie = new ArrayList<>(candidates);
+					tie.removeIf(tiedRow -> usedCatalogs.get(rows.catalogs[tiedRow]));
+					if (tie.size() > 1) {
+						// more than one best match: wait until the tie is solved
+						tiedRows.put(s, tie);
+						for (int tiedRow : tie)
+							catalog2tiedSources.computeIfAbsent(rows.catalogs[tiedRow], k -> new ArrayList<>()).add(s);
+					} else
+						// tie already solved in this batch
+						queue.addAll(tie);
+					continue;
+				}
+				usedSources.set(s);
+				usedCatalogs.set(c);
+				selected.add(row);
+				releaseTies(c, rows, queue, usedSources, tiedRows, deferredRows, catalog2tiedSources);
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Catalog attribute c has been matched: source attributes whose tie included
+	 * c and that now have a single best match go back in the queue, together with
+	 * the rows deferred while waiting
+	 */
+	private void releaseTies(int c, Rows rows, PriorityQueue<Integer> queue, BitSet usedSources,
+			Map<Integer, List<Integer>> tiedRows, Map<Integer, List<Integer>> deferredRows,
+			Map<Integer, List<Integer>> catalog2tiedSources) {
+		List<Integer> sources = catalog2tiedSources.remove(c);
+		if (sources == null)
+			return;
+		for (int s : sources) {
+			List<Integer> tie = tiedRows.get(s);
+			if (tie == null || usedSources.get(s))
+				continue;
+			tie.removeIf(row -> rows.catalogs[row] == c);
+			if (tie.size() <= 1) {
+				tiedRows.remove(s);
+				queue.addAll(tie);
+				queue.addAll(deferredRows.getOrDefault(s, new ArrayList<>()));
+				deferredRows.remove(s);
+			}
+		}
+	}
+
+	/**
+	 * Maximum weight assignment on the rows above threshold (Hungarian algorithm
+	 * with potentials, O(n^2 m))
+	 */
+	private List<Integer> selectOptimal(Rows rows) {
+		// the algorithm needs n <= m
+		boolean transposed = rows.nSources > rows.nCatalogs;
+		int n = transposed ? rows.nCatalogs : rows.nSources;
+		int m = transposed ? rows.nSources : rows.nCatalogs;
+		// matrix cell -> row of the frame (-1 if no valid row)
+		int[][] cellRow = new int[n][m];
+		for (int[] line : cellRow)
+			Arrays.fill(line, -1);
+		for (int row : rows.valid) {
+			int i = transposed ? rows.catalogs[row] : rows.sources[row];
+			int j = transposed ? rows.sources[row] : rows.catalogs[row];
+			// in case of duplicate pairs keep the most probable
+			if (cellRow[i][j] < 0 || rows.predictions[row] >= rows.predictions[cellRow[i][j]])
+				cellRow[i][j] = row;
+		}
+
+		// 1-based arrays, cost = -probability
+		double[] u = new double[n + 1];
+		double[] v = new double[m + 1];
+		int[] assignment = new int[m + 1];
+		int[] way = new int[m + 1];
+		for (int i = 1; i <= n; i++) {
+			assignment[0] = i;
+			int j0 = 0;
+			double[] minv = new double[m + 1];
+			Arrays.fill(minv, Double.POSITIVE_INFINITY);
+			boolean[] used = new boolean[m + 1];
+			do {
+				used[j0] = true;
+				int i0 = assignment[j0], j1 = 0;
+				double delta = Double.POSITIVE_INFINITY;
+				for (int j = 1; j <= m; j++) {
+					if (used[j])
+						continue;
+					int row = cellRow[i0 - 1][j - 1];
+					double cost = row < 0 ? 0 : -rows.predictions[row];
+					double cur = cost - u[i0] - v[j];
+					if (cur < minv[j]) {
+						minv[j] = cur;
+						way[j] = j0;
+					}
+					if (minv[j] < delta) {
+						delta = minv[j];
+						j1 = j;
+					}
+				}
+				for (int j = 0; j <= m; j++) {
+					if (used[j]) {
+						u[assignment[j]] += delta;
+						v[j] -= delta;
+					} else
+						minv[j] -= delta;
+				}
+				j0 = j1;
+			} while (assignment[j0] != 0);
+			do {
+				int j1 = way[j0];
+				assignment[j0] = assignment[j1];
+				j0 = j1;
+			} while (j0 != 0);
+		}
+
+		List<Integer> selected = new ArrayList<>();
+		for (int j = 1; j <= m; j++)
+			if (assignment[j] != 0 && cellRow[assignment[j] - 1][j - 1] >= 0)
+				selected.add(cellRow[assignment[j] - 1][j - 1]);
+		selected.sort((r1, r2) -> Double.compare(rows.predictions[r2], rows.predictions[r1]));
+		return selected;
+	}
+
+	/**
+	 * Rows of the frame with local integer ids for the attributes
+	 */
+	private static class Rows {
+		private double[] predictions;
+		private int[] sources;
+		private int[] catalogs;
+		/** rows with probability above threshold */
+		private int[] valid;
+		private int nSources;
+		private int nCatalogs;
+
+		private Rows(DataFrame df, double[] predictions) {
+			int size = df.size();
+			this.predictions = predictions;
+			this.sources = new int[size];
+			this.catalogs = new int[size];
+			// dictionary ids -> ids of the attributes with rows above threshold
+			int[] sourceIds = new int[df.getDictionary().size()];
+			int[] catalogIds = new int[df.getDictionary().size()];
+			Arrays.fill(sourceIds, -1);
+			Arrays.fill(catalogIds, -1);
+			int nValid = 0;
+			int[] valid = new int[size];
+			for (int i = 0; i < size; i++) {
+				if (predictions[i] < MATCH_THRESHOLD)
+					continue;
+				int sourceId = df.getSourceAttributeId(i);
+				if (sourceIds[sourceId] < 0)
+					sourceIds[sourceId] = this.nSources++;
+				int catalogId = df.getCatalogAttributeId(i);
+				if (catalogIds[catalogId] < 0)
+					catalogIds[catalogId] = this.nCatalogs++;
+				this.sources[i] = sourceIds[sourceId];
+				this.catalogs[i] = catalogIds[catalogId];
+				valid[nValid++] = i;
+			}
+			this.valid = Arrays.copyOf(valid, nValid);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import model.AbstractProductPage.Specifications;
+import model.SourceProductPage;
+import models.matcher.InvertedIndexesManager;
+
+/**
+ * Blocking with MinHash signatures of the sets of value tokens of each
+ * attribute, and LSH banding: a pair is kept if the 2 signatures are equal in
+ * all rows of at least one band.
+ * <p>
+ * With b bands of r rows, pairs with Jaccard similarity s are kept with
+ * probability 1-(1-s^r)^b, the threshold being about (1/b)^(1/r).
+ *
+ */
+public class MinHashCandidatePairsGenerator extends AbstractCandidatePairsGenerator {
+
+	private int bands;
+	private int rows;
+	private long[] seeds;
+
+	public MinHashCandidatePairsGenerator(int bands, int rows, long seed) {
+		this.bands = bands;
+		this.rows = rows;
+		Random random = new Random(seed);
+		this.seeds = new long[bands * rows];
+		for (int i = 0; i < this.seeds.length; i++)
+			this.seeds[i] = random.nextLong();
+	}
+
+	@Override
+	protected Map<Integer, List<Integer>> selectCandidates(List<Entry<Specifications, SourceProductPage>> linkedProds,
+			InvertedIndexesManager invIndexes) {
+		List<Integer> catalogAttributes = new ArrayList<>();
+		// for each band: band hash --> catalog attributes
+		List<Map<Long, List<Integer>>> buckets = new ArrayList<>();
+		for (int b = 0; b < this.bands; b++)
+			buckets.add(new HashMap<>());
+		for (Entry<Integer, Set<String>> catalogTokens : getCatalogTokens(linkedProds, invIndexes).entrySet()) {
+			int attributeIndex = catalogAttributes.size();
+			catalogAttributes.add(catalogTokens.getKey());
+			long[] signature = signature(catalogTokens.getValue());
+			for (int b = 0; b < this.bands; b++)
+				buckets.get(b).computeIfAbsent(bandHash(signature, b), h -> new ArrayList<>()).add(attributeIndex);
+		}
+
+		Map<Integer, List<Integer>> candidates = new LinkedHashMap<>();
+		boolean[] isCandidate = new boolean[catalogAttributes.size()];
+		for (Entry<Integer, Set<String>> sourceTokens : getSourceTokens(linkedProds, invIndexes).entrySet()) {
+			long[] signature = signature(sourceTokens.getValue());
+			for (int b = 0; b < this.bands; b++)
+				for (int attributeIndex : buckets.get(b).getOrDefault(bandHash(signature, b), new ArrayList<>()))
+					isCandidate[attributeIndex] = true;
+			// keep catalog index order
+			List<Integer> sourceCandidates = new ArrayList<>();
+			for (int i = 0; i < isCandidate.length; i++) {
+				if (isCandidate[i])
+					sourceCandidates.add(catalogAttributes.get(i));
+				isCandidate[i] = false;
+			}
+			candidates.put(sourceTokens.getKey(), sourceCandidates);
+		}
+		return candidates;
+	}
+
+	private long[] signature(Set<String> tokens) {
+		long[] signature = new long[this.seeds.length];
+		Arrays.fill(signature, Long.MAX_VALUE);
+		for (String token : tokens) {
+			long tokenHash = token.hashCode();
+			for (int i = 0; i < this.seeds.length; i++) {
+				long h = mix(tokenHash ^ this.seeds[i]);
+				if (h < signature[i])
+					signature[i] = h;
+			}
+		}
+		return signature;
+	}
+
+	private long bandHash(long[] signature, int band) {
+		long hash = band;
+		for (int r = band * this.rows; r < (band + 1) * this.rows; r++)
+			hash = 31 * hash + signature[r];
+		return mix(hash);
+	}
+
+	/** Finalizer of SplitMix64, spreads the bits of the hash */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
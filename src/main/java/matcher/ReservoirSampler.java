@@ -0,0 +1,86 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Uniform sample of fixed size of the elements of a stream, whose length is not
+ * known in advance (reservoir sampling, algorithm R).
+ * <p>
+ * The first elements fill the reservoir; then the n-th element replaces a
+ * random element of the reservoir with probability size/n. Elements already in
+ * the reservoir are skipped, so that the sample has distinct elements, but
+ * only the reservoir is kept in memory: an element offered again after being
+ * discarded (or replaced) counts as a new one.
+ *
+ * @param <T>
+ *            elements, with equals and hashCode
+ * @see TrainingSetGenerator
+ */
+public class ReservoirSampler<T> {
+
+	private int size;
+	private Random random;
+	private List<T> reservoir;
+	/** elements of the reservoir, to skip the duplicates */
+	private Set<T> sampled;
+	/** elements offered until now, duplicates of sampled elements excluded */
+	private int offered;
+
+	/**
+	 * @param size
+	 *            size of the sample
+	 */
+	public ReservoirSampler(int size, Random random) {
+		this.size = size;
+		this.random = random;
+		this.reservoir = new ArrayList<>(size);
+		this.sampled = new HashSet<>();
+	}
+
+	/**
+	 * @return false if the element is already in the sample
+	 */
+	public boolean add(T element) {
+		if (this.sampled.contains(element))
+			return false;
+		this.offered++;
+		if (this.reservoir.size() < this.size) {
+			this.reservoir.add(element);
+			this.sampled.add(element);
+		} else {
+			int i = this.random.nextInt(this.offered);
+			if (i < this.size) {
+				this.sampled.remove(this.reservoir.set(i, element));
+				this.sampled.add(element);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the sample has reached its size
+	 */
+	public boolean isFull() {
+		return this.reservoir.size() >= this.size;
+	}
+
+	/**
+	 * @return number of elements offered, duplicates of sampled elements
+	 *         excluded
+	 */
+	public int getOffered() {
+		return this.offered;
+	}
+
+	/**
+	 * @return copy of the sample, of the given size or smaller if fewer elements
+	 *         were offered
+	 */
+	public List<T> getSample() {
+		return new ArrayList<>(this.reservoir);
+	}
+}
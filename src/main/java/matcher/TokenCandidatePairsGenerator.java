@@ -0,0 +1,66 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import model.AbstractProductPage.Specifications;
+import model.SourceProductPage;
+import models.matcher.InvertedIndexesManager;
+
+/**
+ * Blocking on value tokens: a pair is kept only if the values of the 2
+ * attributes share at least a minimum number of distinct tokens.
+ * <p>
+ * Uses a posting list token --> catalog attributes, so that each source
+ * attribute only visits the catalog attributes it shares tokens with.
+ *
+ */
+public class TokenCandidatePairsGenerator extends AbstractCandidatePairsGenerator {
+
+	private int minSharedTokens;
+
+	/**
+	 * @param minSharedTokens
+	 *            minimum number of distinct tokens shared by the values of the
+	 *            2 attributes
+	 */
+	public TokenCandidatePairsGenerator(int minSharedTokens) {
+		this.minSharedTokens = minSharedTokens;
+	}
+
+	@Override
+	protected Map<Integer, List<Integer>> selectCandidates(List<Entry<Specifications, SourceProductPage>> linkedProds,
+			InvertedIndexesManager invIndexes) {
+		List<Integer> catalogAttributes = new ArrayList<>();
+		Map<String, List<Integer>> token2catalogAttributes = new HashMap<>();
+		for (Entry<Integer, Set<String>> catalogTokens : getCatalogTokens(linkedProds, invIndexes).entrySet()) {
+			int attributeIndex = catalogAttributes.size();
+			catalogAttributes.add(catalogTokens.getKey());
+			for (String token : catalogTokens.getValue())
+				token2catalogAttributes.computeIfAbsent(token, t -> new ArrayList<>()).add(attributeIndex);
+		}
+
+		Map<Integer, List<Integer>> candidates = new LinkedHashMap<>();
+		int[] sharedTokens = new int[catalogAttributes.size()];
+		for (Entry<Integer, Set<String>> sourceTokens : getSourceTokens(linkedProds, invIndexes).entrySet()) {
+			for (String token : sourceTokens.getValue())
+				for (int attributeIndex : token2catalogAttributes.getOrDefault(token, new ArrayList<>()))
+					sharedTokens[attributeIndex]++;
+			// keep catalog index order
+			List<Integer> sourceCandidates = new ArrayList<>();
+			for (int i = 0; i < sharedTokens.length; i++) {
+				if (sharedTokens[i] >= this.minSharedTokens)
+					sourceCandidates.add(catalogAttributes.get(i));
+				sharedTokens[i] = 0;
+			}
+			candidates.put(sourceTokens.getKey(), sourceCandidates);
+		}
+		return candidates;
+	}
+
+}
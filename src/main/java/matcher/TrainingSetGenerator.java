@@ -7,7 +7,16 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
@@ -31,11 +40,17 @@ public class TrainingSetGenerator {
 	private AlignmentDao dao;
 	private Map<String, List<String>> clonedSources;
 	private FeaturesBuilder fb;
+	/** threads computing the features of the groups of tuples */
+	private int parallelism;
+	/** limits the DAO calls running at the same time, null if not limited */
+	private Semaphore daoCalls;
+	private Random random = new Random();
+
+	/** max number of samples of pages drawn to find the examples of a training set */
+	private static final int MAX_SAMPLES = 10;
 	
 	public TrainingSetGenerator(FeaturesBuilder fb, AlignmentDao dao, Map<String, List<String>> clSources) {
-		this.dao = dao;
-		this.clonedSources = clSources;
-		this.fb = fb;
+		this(fb, dao, clSources, 1, 0);
 	}	
 	
 	public TrainingSetGenerator(AlignmentDao dao, Map<String, List<String>> clSources) {
@@ -43,7 +58,26 @@ public class TrainingSetGenerator {
 	}
 
 	/**
-	 * @param sampleSize number of original pages, from which we will look for linked pages and compare them 
+	 * @param parallelism
+	 *            threads computing the features of the training set, 1 means
+	 *            sequential computation, 0 or less means one thread per
+	 *            available core
+	 * @param maxConcurrentDaoCalls
+	 *            max number of DAO calls running at the same time, 0 or less
+	 *            means no limit
+	 */
+	public TrainingSetGenerator(FeaturesBuilder fb, AlignmentDao dao, Map<String, List<String>> clSources,
+			int parallelism, int maxConcurrentDaoCalls) {
+		this.dao = dao;
+		this.clonedSources = clSources;
+		this.fb = fb;
+		this.parallelism = parallelism <= 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+		if (maxConcurrentDaoCalls > 0)
+			this.daoCalls = new Semaphore(maxConcurrentDaoCalls);
+	}
+
+	/**
+	 * @param sampleSize number of original pages drawn at a time, from which we will look for linked pages and compare them 
 	 * @param setSize expected number of examples ({@link Tuple}), i.e. pairs of neg and pos atts
 	 * @param useWebsite
 	 * @param addTuples add the information on the tuple to the row containing the features
@@ -54,35 +88,11 @@ public class TrainingSetGenerator {
 	public List<String> getTrainingSetWithTuples(int sampleSize, int setSize, boolean addTuples,
 			double ratio, String category) {
 
-		Map<String, List<Tuple>> examples = new HashMap<>();
-		boolean hasEnoughExamples = false;
-		int newSizeP, newSizeN, sizeP = 0, sizeN = 0, tentatives = 0;
-
-		/*
-		 *  We loop until we have a reasonable number of examples, this number can variate depending on the number of attributes and linked pages
-		 *  of the randomly picked pages. 
-		 *  Note that we keep anyway the biggest set of examples found until now, so that if we make too many tentatives, we eventually use this biggest
-		 *  set as the good one even if it is not big enough 
-		 */
-		do {
-			List<SourceProductPage> sample = this.dao.getSamplePagesFromCategory(sampleSize, category);
-			Map<String, List<Tuple>> newExamples = getExamples(sample, ratio);
-			newSizeP = newExamples.get("positives").size();
-			newSizeN = newExamples.get("negatives").size();
-			System.out.println(newSizeP + " + " + newSizeN + " = " + (newSizeP + newSizeN));
-			hasEnoughExamples = ((setSize * 0.95) <= (newSizeP + newSizeN))
-					&& ((newSizeP + newSizeN) <= (setSize * 1.05));
-			tentatives++;
-			if ((sizeP + sizeN) < (newSizeP + newSizeN)) {
-				examples = newExamples;
-				sizeP = newSizeP;
-				sizeN = newSizeN;
-			}
-		} while (!hasEnoughExamples && tentatives < 10); // there must be enough examples, however don't loop too many
-															// times
+		Map<String, List<Tuple>> examples = getExamples(sampleSize, setSize, ratio, category);
+		int sizeP = examples.get("positives").size();
 
 		// if not enough examples were found, return an empty list
-		if (examples.size() == 0) {
+		if (sizeP == 0) {
 			System.err.println("NON ABBASTANZA ESEMPI");
 			return new ArrayList<String>();
 		}
@@ -113,22 +123,88 @@ public class TrainingSetGenerator {
 	}
 
 	/**
-	 * From example pages, find all pages in linkage, then generate pairs of
-	 * attributes for training set. Tries to respect pos-neg proportion (ratio) : if
-	 * it is not respected, try again (max 10 tentatives)
+	 * Draws samples of pages of the category until there are enough examples
+	 * (or at most {@link #MAX_SAMPLES} samples), then keeps the pos-neg
+	 * proportion (ratio).
+	 * <p>
+	 * Positive and negative candidates are streamed into reservoirs of the
+	 * expected sizes ({@link ReservoirSampler}), so that examples are uniformly
+	 * chosen among the candidates found and the candidates exceeding the sizes
+	 * are not kept. Samples are no longer read (nor their pairs of pages
+	 * examined) once both reservoirs are full.
 	 * 
-	 * @param sample
+	 * @param sampleSize
+	 *            pages of each sample
+	 * @param setSize
+	 *            expected number of examples
 	 * @param ratio
 	 *            pos-neg proportion
 	 * @return
 	 */
-	private Map<String, List<Tuple>> getExamples(List<SourceProductPage> sample, double ratio) {
-		List<Tuple> posExamples = new ArrayList<>();
-		List<Tuple> negExamples = new ArrayList<>();
+	private Map<String, List<Tuple>> getExamples(int sampleSize, int setSize, double ratio, String category) {
+		//'ratio' is the ratio of positive examples on total examples (p + n = Total; p = ratio * Total)
+		int posTarget = (int) Math.round(setSize * ratio);
+		ReservoirSampler<Tuple> positives = new ReservoirSampler<>(posTarget, this.random);
+		ReservoirSampler<Tuple> negatives = new ReservoirSampler<>(setSize - posTarget, this.random);
+
+		// pages already sampled, as samples may overlap
+		Set<String> sampledUrls = new HashSet<>();
+		for (int samples = 0; samples < MAX_SAMPLES && !(positives.isFull() && negatives.isFull()); samples++) {
+			List<SourceProductPage> sample = this.dao.getSamplePagesFromCategory(sampleSize, category).stream()
+					.filter(page -> sampledUrls.add(page.getUrl())).collect(Collectors.toList());
+			if (sample.isEmpty())
+				break;
+			addExamples(sample, positives, negatives);
+			System.out.println(positives.getOffered() + " + " + negatives.getOffered() + " = "
+					+ (positives.getOffered() + negatives.getOffered()));
+		}
+
+		List<Tuple> posExamples = positives.getSample();
+		List<Tuple> negExamples = negatives.getSample();
+		Collections.shuffle(posExamples, this.random);
+		Collections.shuffle(negExamples, this.random);
+		//We want now the ratio between pos and neg --> p = r / (1-r) n
+		double ratioPosNeg = ratio / (1-ratio);
+		
+		int posSize = Math.min(posExamples.size(), (int) Math.round(negExamples.size() * ratioPosNeg));
+		int negSize = Math.min(negExamples.size(), (int) Math.round(posSize / ratioPosNeg));
+		System.out.println(
+				"posExamples size = " + posExamples.size() + " --- posSize = " + posSize + " --- negSize = " + negSize);
+		if (posExamples.size() > posSize)
+			posExamples = posExamples.subList(0, posSize);
+		if (negExamples.size() > negSize)
+			negExamples = negExamples.subList(0, negSize);
+
+		Map<String, List<Tuple>> allExamples = new HashMap<>();
+		allExamples.put("positives", posExamples);
+		allExamples.put("negatives", negExamples);
+
+		return allExamples;
+	}
+
+	/**
+	 * From example pages, find all pages in linkage (with a single call to the
+	 * DAO), then generate pairs of attributes for training set, until both
+	 * reservoirs are full
+	 * 
+	 * @param sample
+	 * @param positives
+	 *            receives the positive candidates
+	 * @param negatives
+	 *            receives the negative candidates
+	 */
+	private void addExamples(List<SourceProductPage> sample, ReservoirSampler<Tuple> positives,
+			ReservoirSampler<Tuple> negatives) {
+		// pages in linkage with the sample, fetched all at once
+		Set<String> linkedUrls = new HashSet<>();
+		sample.forEach(doc -> linkedUrls.addAll(doc.getLinkage()));
+		Map<String, SourceProductPage> linkedPages = this.dao.getPagesFromUrls(linkedUrls);
 
 		for (SourceProductPage doc1 : sample) {
 			for (String url : doc1.getLinkage()) {
-				SourceProductPage doc2 = this.dao.getPageFromUrlIfExistsInDataset(url);
+				if (positives.isFull() && negatives.isFull())
+					return;
+				SourceProductPage doc2 = linkedPages.get(url);
 
 				if (doc2 != null) {
 
@@ -148,50 +224,29 @@ public class TrainingSetGenerator {
 									source1.getCategory());
 							allTmpPosEx.add(t);
 						});
-						Collections.shuffle(allTmpPosEx);
+						Collections.shuffle(allTmpPosEx, this.random);
 						// get max 10 examples from the same couple (to avoid biases from very similar pages with a lot of attributes)
 						List<Tuple> tmpPosEx = allTmpPosEx.subList(0, Math.min(10, allTmpPosEx.size()));
-						posExamples.addAll(tmpPosEx);
+						tmpPosEx.forEach(positives::add);
 
 						// generates negative examples
 						for (int i = 0; i < tmpPosEx.size() - 1; i++) {
 							for (int j = i + 1; j < tmpPosEx.size(); j++) {
 								Tuple t1 = tmpPosEx.get(i);
 								Tuple t2 = tmpPosEx.get(j);
-								negExamples.add(t1.getMixedTuple(t2));
+								negatives.add(t1.getMixedTuple(t2));
 							}
 						}
 					}
 				}
 			}
 		}
-
-		posExamples = posExamples.stream().distinct().collect(Collectors.toList());
-		negExamples = negExamples.stream().distinct().collect(Collectors.toList());
-		Collections.shuffle(posExamples);
-		Collections.shuffle(negExamples);
-		//'ratio' is the ratio of positive examples on total examples (p + n = Total; p = ratio * Total)
-		//We want now the ratio between pos and neg --> p = r / (1-r) n
-		double ratioPosNeg = ratio / (1-ratio);
-		
-		int posSize = Math.min(posExamples.size(), (int) (negExamples.size() * ratioPosNeg));
-		int negSize = (int) (posSize / ratioPosNeg);
-		System.out.println(
-				"posExamples size = " + posExamples.size() + " --- posSize = " + posSize + " --- negSize = " + negSize);
-		if (posExamples.size() > posSize)
-			posExamples = posExamples.subList(0, posSize);
-		if (negExamples.size() > negSize)
-			negExamples = negExamples.subList(0, negSize);
-
-		Map<String, List<Tuple>> allExamples = new HashMap<>();
-		allExamples.put("positives", posExamples);
-		allExamples.put("negatives", negExamples);
-
-		return allExamples;
 	}
 
 	public List<Features> computeFeaturesOnTrainingSet(List<Tuple> pExamples, List<Tuple> nExamples, String category) {
 		List<Features> examples = new ArrayList<>();
+		// values are tokenized once per training set
+		this.fb.resetTokenCache();
 		System.out.println("Positive examples");
 		examples.addAll(getAllFeatures(pExamples, category, 1));
 		System.out.println("Negative examples");
@@ -210,38 +265,119 @@ public class TrainingSetGenerator {
 	 * <li>[not(w1), contains(a1)] --[linked with]--> [w2, contains(a2)]
 	 * </ul>
 	 * Here we try to do it efficiently, limiting the number of call to mongo
+	 * <p>
+	 * Tuples are grouped by (a1, w2), groups can be computed in parallel but
+	 * features are always returned in the order of a sequential computation.
 	 * 
 	 * @param tuples
 	 * @param candidateType
 	 * @return
 	 */
 	private List<Features> getAllFeatures(List<Tuple> tuples, String category, double candidateType) {
-		List<Features> features = new ArrayList<>();
 		Map<String, Map<String, Map<String, List<Tuple>>>> a1_s2_a2_tuple = tuples.stream()
 				.collect(Collectors.groupingBy(Tuple::getAttribute1,
 						Collectors.groupingBy(Tuple::getWebsite2, Collectors.groupingBy(Tuple::getAttribute2))));
 
 		// TODO ProgressBar does not work currently (says cannot create system terminal), TODO investigate and fix 
-		int counter = 0;
+		List<Callable<List<Features>>> groups = new ArrayList<>();
+		AtomicInteger done = new AtomicInteger();
+		int nGroups = a1_s2_a2_tuple.values().stream().mapToInt(Map::size).sum();
 		for (Entry<String, Map<String, Map<String, List<Tuple>>>> a1_s2_a2_tuple_entry : a1_s2_a2_tuple.entrySet()) {
 			String attribute1 = a1_s2_a2_tuple_entry.getKey();
-			Map<String, Map<String, List<Tuple>>> s2_a2_tuple = a1_s2_a2_tuple_entry.getValue();
-			for (Entry<String, Map<String, List<Tuple>>> s2_a2_tuple_entry : s2_a2_tuple.entrySet()) {
-				String source2 = s2_a2_tuple_entry.getKey();
-				List<SourceProductPage> pagesFromAllSourcesInLinkageS2 = this.dao.getPagesLinkedWithSource2filtered(category, source2,
-						attribute1);
-				Map<String, List<SourceProductPage>> w1_pagesLinkageS2 = pagesFromAllSourcesInLinkageS2.stream()
-						.collect(Collectors.groupingBy(prodPage -> prodPage.getSource().getWebsite(), limitingList(2000)));
-				pagesFromAllSourcesInLinkageS2 = pagesFromAllSourcesInLinkageS2.stream().limit(2000).collect(Collectors.toList());
-				for (Entry<String, List<Tuple>> a2_tuple : s2_a2_tuple_entry.getValue().entrySet()) {
-					getFeatures(candidateType, features, attribute1,
-							source2, pagesFromAllSourcesInLinkageS2, w1_pagesLinkageS2, a2_tuple.getKey(), a2_tuple.getValue());
-				}
+			for (Entry<String, Map<String, List<Tuple>>> s2_a2_tuple_entry : a1_s2_a2_tuple_entry.getValue().entrySet()) {
+				groups.add(() -> {
+					List<Features> features = getGroupFeatures(category, candidateType, attribute1,
+							s2_a2_tuple_entry.getKey(), s2_a2_tuple_entry.getValue());
+					// printed once per percentage point, in order
+					synchronized (done) {
+						int completed = done.incrementAndGet();
+						if (completed * 100 / nGroups != (completed - 1) * 100 / nGroups)
+							System.out.println("Done " + completed * 100 / nGroups + "%");
+					}
+					return features;
+				});
 			}
-			System.out.println("Done " + ++counter / (double) a1_s2_a2_tuple.size() * 100 +"%");
+		}
+		List<Features> features = new ArrayList<>();
+		for (List<Features> groupFeatures : computeInOrder(groups))
+			features.addAll(groupFeatures);
+		return features;
+	}
+
+	/**
+	 * Features of the tuples with the same attribute1 and website2
+	 * 
+	 * @param a2_tuple
+	 *            attribute2 --> tuples
+	 */
+	private List<Features> getGroupFeatures(String category, double candidateType, String attribute1,
+			String source2, Map<String, List<Tuple>> a2_tuple) {
+		List<Features> features = new ArrayList<>();
+		List<SourceProductPage> pagesFromAllSourcesInLinkageS2 = callDao(
+				() -> this.dao.getPagesLinkedWithSource2filtered(category, source2, attribute1));
+		Map<String, List<SourceProductPage>> w1_pagesLinkageS2 = pagesFromAllSourcesInLinkageS2.stream()
+				.collect(Collectors.groupingBy(prodPage -> prodPage.getSource().getWebsite(), limitingList(2000)));
+		pagesFromAllSourcesInLinkageS2 = pagesFromAllSourcesInLinkageS2.stream().limit(2000).collect(Collectors.toList());
+		for (Entry<String, List<Tuple>> a2_tuple_entry : a2_tuple.entrySet()) {
+			getFeatures(candidateType, features, attribute1,
+					source2, pagesFromAllSourcesInLinkageS2, w1_pagesLinkageS2, a2_tuple_entry.getKey(), a2_tuple_entry.getValue());
 		}
 		return features;
 	}
+
+	/**
+	 * Calls the tasks, in parallel if configured, and returns their results in
+	 * order of the tasks
+	 */
+	private <T> List<T> computeInOrder(List<Callable<T>> tasks) {
+		List<T> results = new ArrayList<>();
+		if (this.parallelism == 1 || tasks.size() <= 1) {
+			try {
+				for (Callable<T> task : tasks)
+					results.add(task.call());
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			return results;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.parallelism, tasks.size()));
+		try {
+			for (Future<T> future : executor.invokeAll(tasks))
+				results.add(future.get());
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while computing features of training set", e);
+		} catch (ExecutionException e) {
+			// same exception as in the sequential computation
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Calls the DAO, waiting if the max number of concurrent calls is reached
+	 */
+	private <T> T callDao(Supplier<T> call) {
+		if (this.daoCalls == null)
+			return call.get();
+		try {
+			this.daoCalls.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the DAO", e);
+		}
+		try {
+			return call.get();
+		} finally {
+			this.daoCalls.release();
+		}
+	}
 	
 	/**
 	 * Limit group by 
@@ -262,16 +398,16 @@ public class TrainingSetGenerator {
 			String attribute1, String website2, List<SourceProductPage> pagesInLinkageS2,
 			Map<String, List<SourceProductPage>> w1_pagesLinkageS2, String attribute2, List<Tuple> tuplesFromS2withA1A2) {
 		// Here we deal with tuple for a specific a1, a2 and w2, and all possible W1s.
-		List<Entry<Specifications, SourceProductPage>> cList2 = this.dao.getPairsOfPagesInLinkage(pagesInLinkageS2, website2,
-				attribute2);
+		List<Entry<Specifications, SourceProductPage>> cList2 = callDao(
+				() -> this.dao.getPairsOfPagesInLinkage(pagesInLinkageS2, website2, attribute2));
 		List<String> websites1 = tuplesFromS2withA1A2.stream().map(t -> t.getWebsite1()).distinct()
 				.collect(Collectors.toList());
 		for (String website1 : websites1) {
 			// pb.step();
 			Features feature = new Features();
 			List<SourceProductPage> subProds_of_w1 = w1_pagesLinkageS2.getOrDefault(website1, new ArrayList<>());
-			List<Entry<Specifications, SourceProductPage>> sList2 = this.dao.getPairsOfPagesInLinkage(subProds_of_w1, website2,
-					attribute2);
+			List<Entry<Specifications, SourceProductPage>> sList2 = callDao(
+					() -> this.dao.getPairsOfPagesInLinkage(subProds_of_w1, website2, attribute2));
 			
 			try {
 				feature = this.fb.computeFeatures(sList2, cList2,
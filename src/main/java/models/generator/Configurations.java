@@ -4,8 +4,12 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
+import connectors.dao.AlignmentDaoFactory.AlignmentDaoType;
 import generator.CatalogueConfiguration;
 import generator.SourceGeneratorConfiguration;
+import matcher.CandidatePairsGeneratorFactory.CandidatePairsGeneratorType;
+import matcher.Classifier.ClassifierEngine;
+import matcher.MatchSelector.SelectionType;
 import models.generator.CurveFunctionFactory.CurveFunctionType;
 
 public class Configurations implements CatalogueConfiguration, SourceGeneratorConfiguration {
@@ -16,9 +20,32 @@ public class Configurations implements CatalogueConfiguration, SourceGeneratorCo
 	private String trainingSetPath;
 	private String mongoURI;
 	private String databaseName;
+	private AlignmentDaoType daoType;
+	private String storePath;
 	private String modelPath;
+	private String coefficientsPath;
+	private ClassifierEngine classifierEngine;
+	private int crossValidationThreads;
 	private List<String> categories;
+	private boolean alignAllCategories;
+	private int categoryThreads;
+	private int checkpointInterval;
+	private String checkpointPath;
+	private boolean resume;
 	private boolean alreadyTrained;
+	private boolean printClonedSources;
+	private int trainingCacheSize;
+	private int trainingPageCacheSize;
+	private int trainingThreads;
+	private int maxConcurrentDaoCalls;
+	private int matcherThreads;
+	private boolean incrementalCatalog;
+	private CandidatePairsGeneratorType candidatePairsType;
+	private int minSharedTokens;
+	private int minHashBands;
+	private int minHashRows;
+	private long minHashSeed;
+	private SelectionType matchSelectionType;
 
 	// Parameters for generation of Synthetic Dataset
 	private int maxPages;
@@ -53,9 +80,32 @@ public class Configurations implements CatalogueConfiguration, SourceGeneratorCo
 		this.trainingSetPath = prop.getProperty("trainingSetPath");
 		this.mongoURI = prop.getProperty("mongoURI");
 		this.databaseName = prop.getProperty("databaseName");
+		this.daoType = AlignmentDaoType.valueOf(prop.getProperty("daoType", "MONGO"));
+		this.storePath = prop.getProperty("storePath", "src/main/resources/store");
 		this.modelPath = prop.getProperty("modelPath");
+		this.coefficientsPath = prop.getProperty("coefficientsPath");
+		this.classifierEngine = ClassifierEngine.valueOf(prop.getProperty("classifierEngine", "R"));
+		this.crossValidationThreads = Integer.valueOf(prop.getProperty("crossValidationThreads", "0"));
 		this.categories = Arrays.asList(prop.getProperty("categories").split("/"));
+		this.alignAllCategories = Boolean.valueOf(prop.getProperty("alignAllCategories", "false"));
+		this.categoryThreads = Integer.valueOf(prop.getProperty("categoryThreads", "1"));
+		this.checkpointInterval = Integer.valueOf(prop.getProperty("checkpointInterval", "0"));
+		this.checkpointPath = prop.getProperty("checkpointPath", this.trainingSetPath);
+		this.resume = Boolean.valueOf(prop.getProperty("resume", "false"));
 		this.alreadyTrained = Boolean.valueOf(prop.getProperty("alreadyTrained"));
+		this.printClonedSources = Boolean.valueOf(prop.getProperty("printClonedSources", "true"));
+		this.trainingCacheSize = Integer.valueOf(prop.getProperty("trainingCacheSize", "0"));
+		this.trainingPageCacheSize = Integer.valueOf(prop.getProperty("trainingPageCacheSize", "0"));
+		this.trainingThreads = Integer.valueOf(prop.getProperty("trainingThreads", "1"));
+		this.maxConcurrentDaoCalls = Integer.valueOf(prop.getProperty("maxConcurrentDaoCalls", "0"));
+		this.matcherThreads = Integer.valueOf(prop.getProperty("matcherThreads", "1"));
+		this.incrementalCatalog = Boolean.valueOf(prop.getProperty("incrementalCatalog", "true"));
+		this.candidatePairsType = CandidatePairsGeneratorType.valueOf(prop.getProperty("candidatePairs", "ALL"));
+		this.minSharedTokens = Integer.valueOf(prop.getProperty("minSharedTokens", "1"));
+		this.minHashBands = Integer.valueOf(prop.getProperty("minHashBands", "32"));
+		this.minHashRows = Integer.valueOf(prop.getProperty("minHashRows", "2"));
+		this.minHashSeed = Long.valueOf(prop.getProperty("minHashSeed", "42"));
+		this.matchSelectionType = SelectionType.valueOf(prop.getProperty("matchSelection", "GREEDY"));
 
 		this.maxPages = Integer.valueOf(prop.getProperty("maxPages"));
 		this.minPages = Integer.valueOf(prop.getProperty("minPages"));
@@ -100,6 +150,171 @@ public class Configurations implements CatalogueConfiguration, SourceGeneratorCo
 		return alreadyTrained;
 	}
 
+	/**
+	 * If true, cloned sources found on real dataset are printed in clones.csv
+	 * 
+	 * @return
+	 */
+	public boolean isPrintClonedSources() {
+		return printClonedSources;
+	}
+
+	public void setPrintClonedSources(boolean printClonedSources) {
+		this.printClonedSources = printClonedSources;
+	}
+
+	/**
+	 * Results of each type of query cached during the generation of the
+	 * training set of a category (see {@link connectors.dao.CachingAlignmentDao}),
+	 * 0 means no cache
+	 * 
+	 * @return
+	 */
+	public int getTrainingCacheSize() {
+		return trainingCacheSize;
+	}
+
+	public void setTrainingCacheSize(int trainingCacheSize) {
+		this.trainingCacheSize = trainingCacheSize;
+	}
+
+	public int getTrainingPageCacheSize() {
+		return trainingPageCacheSize;
+	}
+
+	public void setTrainingPageCacheSize(int trainingPageCacheSize) {
+		this.trainingPageCacheSize = trainingPageCacheSize;
+	}
+
+	/**
+	 * Threads computing the features of the training set of a category, 1 means
+	 * sequential computation, 0 or less one thread per available core
+	 * 
+	 * @return
+	 */
+	public int getTrainingThreads() {
+		return trainingThreads;
+	}
+
+	public void setTrainingThreads(int trainingThreads) {
+		this.trainingThreads = trainingThreads;
+	}
+
+	/**
+	 * Max number of DAO calls running at the same time while computing the
+	 * features of a training set, 0 or less means no limit
+	 * 
+	 * @return
+	 */
+	public int getMaxConcurrentDaoCalls() {
+		return maxConcurrentDaoCalls;
+	}
+
+	public void setMaxConcurrentDaoCalls(int maxConcurrentDaoCalls) {
+		this.maxConcurrentDaoCalls = maxConcurrentDaoCalls;
+	}
+
+	/**
+	 * Number of threads used to compute the features of the pairs of attributes
+	 * during classification: 1 for a sequential computation, 0 for one thread per
+	 * available core
+	 * 
+	 * @return
+	 */
+	public int getMatcherThreads() {
+		return matcherThreads;
+	}
+
+	public void setMatcherThreads(int matcherThreads) {
+		this.matcherThreads = matcherThreads;
+	}
+
+	/**
+	 * If true, the pages of the catalog are kept in memory during the alignment
+	 * of a category, and at each match only the pages of the new source are
+	 * fetched
+	 * 
+	 * @return
+	 */
+	public boolean isIncrementalCatalog() {
+		return incrementalCatalog;
+	}
+
+	public void setIncrementalCatalog(boolean incrementalCatalog) {
+		this.incrementalCatalog = incrementalCatalog;
+	}
+
+	public CandidatePairsGeneratorType getCandidatePairsType() {
+		return candidatePairsType;
+	}
+
+	public void setCandidatePairsType(CandidatePairsGeneratorType candidatePairsType) {
+		this.candidatePairsType = candidatePairsType;
+	}
+
+	/**
+	 * Minimum number of distinct value tokens shared by 2 attributes to be
+	 * classified, with TOKENS blocking
+	 * 
+	 * @return
+	 */
+	public int getMinSharedTokens() {
+		return minSharedTokens;
+	}
+
+	public void setMinSharedTokens(int minSharedTokens) {
+		this.minSharedTokens = minSharedTokens;
+	}
+
+	/**
+	 * Bands of the LSH with MINHASH blocking: with b bands of r rows, pairs with
+	 * Jaccard similarity above about (1/b)^(1/r) are likely kept
+	 * 
+	 * @return
+	 */
+	public int getMinHashBands() {
+		return minHashBands;
+	}
+
+	public void setMinHashBands(int minHashBands) {
+		this.minHashBands = minHashBands;
+	}
+
+	/**
+	 * Rows of each band of the LSH with MINHASH blocking, see
+	 * {@link #getMinHashBands()}
+	 * 
+	 * @return
+	 */
+	public int getMinHashRows() {
+		return minHashRows;
+	}
+
+	public void setMinHashRows(int minHashRows) {
+		this.minHashRows = minHashRows;
+	}
+
+	/**
+	 * Seed of the hash functions of the MinHash signatures
+	 * 
+	 * @return
+	 */
+	public long getMinHashSeed() {
+		return minHashSeed;
+	}
+
+	public void setMinHashSeed(long minHashSeed) {
+		this.minHashSeed = minHashSeed;
+	}
+
+	public SelectionType getMatchSelectionType() {
+		return matchSelectionType;
+	}
+
+	public void setMatchSelectionType(SelectionType matchSelectionType) {
+		this.matchSelectionType = matchSelectionType;
+	}
+
 	public int getMaxPages() {
 		return maxPages;
 	}
@@ -208,6 +423,28 @@ public class Configurations implements CatalogueConfiguration, SourceGeneratorCo
 		this.databaseName = databaseName;
 	}
 
+	public AlignmentDaoType getDaoType() {
+		return daoType;
+	}
+
+	public void setDaoType(AlignmentDaoType daoType) {
+		this.daoType = daoType;
+	}
+
+	/**
+	 * Directory of the files of the dataset, used if the DAO type is FILE (see
+	 * {@link connectors.dao.FileAlignmentDao})
+	 * 
+	 * @return
+	 */
+	public String getStorePath() {
+		return storePath;
+	}
+
+	public void setStorePath(String storePath) {
+		this.storePath = storePath;
+	}
+
 	public String getModelPath() {
 		return modelPath;
 	}
@@ -216,6 +453,30 @@ public class Configurations implements CatalogueConfiguration, SourceGeneratorCo
 		this.modelPath = modelPath;
 	}
 
+	public String getCoefficientsPath() {
+		return coefficientsPath;
+	}
+
+	public void setCoefficientsPath(String coefficientsPath) {
+		this.coefficientsPath = coefficientsPath;
+	}
+
+	public ClassifierEngine getClassifierEngine() {
+		return classifierEngine;
+	}
+
+	public void setClassifierEngine(ClassifierEngine classifierEngine) {
+		this.classifierEngine = classifierEngine;
+	}
+
+	public int getCrossValidationThreads() {
+		return crossValidationThreads;
+	}
+
+	public void setCrossValidationThreads(int crossValidationThreads) {
+		this.crossValidationThreads = crossValidationThreads;
+	}
+
 	public List<String> getCategories() {
 		return categories;
 	}
@@ -224,6 +485,65 @@ public class Configurations implements CatalogueConfiguration, SourceGeneratorCo
 		this.categories = categories;
 	}
 
+	/**
+	 * @return true if all categories are aligned, false if only the first one
+	 */
+	public boolean isAlignAllCategories() {
+		return alignAllCategories;
+	}
+
+	public void setAlignAllCategories(boolean alignAllCategories) {
+		this.alignAllCategories = alignAllCategories;
+	}
+
+	/**
+	 * @return number of categories aligned at the same time (0 or less means one
+	 *         per available core)
+	 */
+	public int getCategoryThreads() {
+		return categoryThreads;
+	}
+
+	public void setCategoryThreads(int categoryThreads) {
+		this.categoryThreads = categoryThreads;
+	}
+
+	/**
+	 * @return number of sources aligned between two checkpoints of the schema of
+	 *         a category (0 or less means no checkpoints)
+	 */
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	public void setCheckpointInterval(int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * @return folder of the checkpoints (checkpoint_[category].bin), by default
+	 *         the training set folder
+	 */
+	public String getCheckpointPath() {
+		return checkpointPath;
+	}
+
+	public void setCheckpointPath(String checkpointPath) {
+		this.checkpointPath = checkpointPath;
+	}
+
+	/**
+	 * @return true if the alignment of each category restarts from its last
+	 *         checkpoint, if present
+	 */
+	public boolean isResume() {
+		return resume;
+	}
+
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
 	public int getMaxLinkage() {
 		return maxLinkage;
 	}
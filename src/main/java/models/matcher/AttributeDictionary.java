@@ -0,0 +1,95 @@
+package models.matcher;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dense integer ids for the attributes of the sources, i.e. the pairs
+ * [attribute name, website] that are rendered as "attribute###website".
+ * <p>
+ * Ids are assigned once, the first time an attribute is found, and names are
+ * rendered only once per attribute, so that lookups by attribute and website
+ * do not build new strings.
+ *
+ * @see Schema
+ */
+public class AttributeDictionary {
+
+	public static final String SEPARATOR = "###";
+
+	/** website --> attribute name --> id */
+	private Map<String, Map<String, Integer>> website2attributes = new HashMap<>();
+	/** rendered name --> id */
+	private Map<String, Integer> name2id = new HashMap<>();
+	/** id --> rendered name */
+	private volatile String[] names = new String[16];
+	private int size = 0;
+
+	public AttributeDictionary() {
+	}
+
+	/**
+	 * @return id of the attribute of the website, assigned if not already present
+	 */
+	public synchronized int getId(String attribute, String website) {
+		Map<String, Integer> attributes = this.website2attributes.computeIfAbsent(website, w -> new HashMap<>());
+		Integer id = attributes.get(attribute);
+		if (id == null) {
+			id = addName(website.isEmpty() ? attribute : attribute + SEPARATOR + website);
+			attributes.put(attribute, id);
+		}
+		return id;
+	}
+
+	/**
+	 * @param name
+	 *            attribute rendered as "attribute###website"
+	 * @return id of the attribute, assigned if not already present
+	 */
+	public synchronized int getId(String name) {
+		Integer id = this.name2id.get(name);
+		if (id != null)
+			return id;
+		int separator = name.lastIndexOf(SEPARATOR);
+		if (separator < 0)
+			return getId(name, "");
+		return getId(name.substring(0, separator), name.substring(separator + SEPARATOR.length()));
+	}
+
+	/**
+	 * @return id of the attribute, or -1 if it is not present
+	 */
+	public synchronized int findId(String name) {
+		return this.name2id.getOrDefault(name, -1);
+	}
+
+	private int addName(String name) {
+		int id = this.size;
+		String[] currentNames = this.names;
+		if (id == currentNames.length)
+			currentNames = Arrays.copyOf(currentNames, id * 2);
+		currentNames[id] = name;
+		this.names = currentNames;
+		this.name2id.put(name, id);
+		this.size++;
+		return id;
+	}
+
+	/**
+	 * @return the attribute rendered as "attribute###website"
+	 */
+	public String getName(int id) {
+		String[] currentNames = this.names;
+		if (id < 0 || id >= currentNames.length || currentNames[id] == null)
+			throw new IllegalArgumentException("Unknown attribute id: " + id);
+		return currentNames[id];
+	}
+
+	/**
+	 * @return number of ids assigned (ids are in [0, size) )
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+}
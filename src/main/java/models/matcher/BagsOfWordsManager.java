@@ -1,6 +1,5 @@
 package models.matcher;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
@@ -8,11 +7,20 @@ import java.util.Map.Entry;
 import model.AbstractProductPage.Specifications;
 import model.SourceProductPage;
 
+/**
+ * Bags of words of the values of a pair of attributes, as token ids of a
+ * {@link TokenCache}
+ *
+ * @deprecated used only by the deprecated matcher.FeatureExtractor, the
+ *             features are computed by matcher.FeatureKernel
+ */
+@Deprecated
 public class BagsOfWordsManager {
 	private String attributeCatalog;
 	private String attributeSource;
-	private List<String> catalogBagOfWords;
-	private List<String> sourceBagOfWords;
+	private TokenCache tokenCache;
+	private int[] catalogBagOfWords;
+	private int[] sourceBagOfWords;
 
 	/**
 	 * 
@@ -22,17 +30,46 @@ public class BagsOfWordsManager {
 	 */
 	public BagsOfWordsManager(String attributeCatalog, String attributeSource,
 			List<Entry<Specifications, SourceProductPage>> pairsOfPage) {
-		this.catalogBagOfWords = new ArrayList<>();
-		this.sourceBagOfWords = new ArrayList<>();
+		this(attributeCatalog, attributeSource, pairsOfPage, new TokenCache());
+	}
 
+	/**
+	 * 
+	 * @param attributeCatalog the first attribute of the pair, usually considered the catalog attribute
+	 * @param attributeSource the first attribute of the pair, usually considered the new source attribute
+	 * @param pairsOfPage
+	 * @param tokenCache tokenization of the values, shared by the pairs of attributes of the same run
+	 */
+	public BagsOfWordsManager(String attributeCatalog, String attributeSource,
+			List<Entry<Specifications, SourceProductPage>> pairsOfPage, TokenCache tokenCache) {
+		this.attributeCatalog = attributeCatalog;
+		this.attributeSource = attributeSource;
+		this.tokenCache = tokenCache;
+		int[][] wordsCatalog = new int[pairsOfPage.size()][];
+		int[][] wordsSource = new int[pairsOfPage.size()][];
+		int i = 0;
 		for (Entry<Specifications, SourceProductPage> couple : pairsOfPage) {
 			// The value attribute in the classification step, in wordsCatalog may have different values merged using ### as separator.
 			// It should not happen in wordsSource, (TODO verify)
-			String[] wordsCatalog = couple.getKey().get(attributeCatalog).split("( |(###))+", -1);
-			String[] wordsSource = couple.getValue().getSpecifications().get(attributeSource).split("( |(###))+", -1);
-			catalogBagOfWords.addAll(Arrays.asList(wordsCatalog));
-			sourceBagOfWords.addAll(Arrays.asList(wordsSource));
+			wordsCatalog[i] = tokenCache.getTokens(couple.getKey().get(attributeCatalog));
+			wordsSource[i] = tokenCache.getTokens(couple.getValue().getSpecifications().get(attributeSource));
+			i++;
 		}
+		this.catalogBagOfWords = concat(wordsCatalog);
+		this.sourceBagOfWords = concat(wordsSource);
+	}
+
+	private static int[] concat(int[][] arrays) {
+		int length = 0;
+		for (int[] array : arrays)
+			length += array.length;
+		int[] result = new int[length];
+		int position = 0;
+		for (int[] array : arrays) {
+			System.arraycopy(array, 0, result, position, array.length);
+			position += array.length;
+		}
+		return result;
 	}
 
 	public String getAttributeCatalog() {
@@ -51,20 +88,31 @@ public class BagsOfWordsManager {
 		this.attributeSource = attributeSource;
 	}
 
-	public List<String> getCatalogBagOfWords() {
-		return catalogBagOfWords;
+	/**
+	 * Cache with the dictionary of the token ids
+	 */
+	public TokenCache getTokenCache() {
+		return tokenCache;
 	}
 
-	public void setCatalogBagOfWords(List<String> bagOfWordsCatalog) {
-		this.catalogBagOfWords = bagOfWordsCatalog;
+	/**
+	 * Token ids of the catalog values, in order of pages (not to be modified)
+	 */
+	public int[] getCatalogBagOfWords() {
+		return catalogBagOfWords;
 	}
 
-	public List<String> getSourceBagOfWords() {
+	/**
+	 * Token ids of the source values, in order of pages (not to be modified)
+	 */
+	public int[] getSourceBagOfWords() {
 		return sourceBagOfWords;
 	}
 
-	public void setSourceBagOfWords(List<String> bagOfWordsSource) {
-		this.sourceBagOfWords = bagOfWordsSource;
+	@Override
+	public String toString() {
+		return "BagsOfWordsManager [" + attributeCatalog + ": " + Arrays.toString(catalogBagOfWords) + ", "
+				+ attributeSource + ": " + Arrays.toString(sourceBagOfWords) + "]";
 	}
 
 }
@@ -0,0 +1,414 @@
+package models.matcher;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative integers (typically indexes of pages), used as
+ * posting list in the inverted indexes.
+ * <p>
+ * Values are partitioned by their 16 most significant bits, each partition is
+ * stored in a container that is either a sorted array (sparse partitions) or a
+ * bitset of 2^16 bits (dense partitions), in the same way as roaring bitmaps.
+ * Intersection tests and intersection cardinalities do not allocate any object.
+ *
+ * @see InvertedIndexesManager
+ */
+public class BitmapPostingList {
+
+	/** Above this cardinality an array container is converted to a bitmap */
+	private static final int MAX_ARRAY_CARDINALITY = 4096;
+	private static final int BITMAP_WORDS = 1 << 10;
+
+	/** 16 most significant bits of the values in each container, sorted */
+	private char[] keys;
+	private Container[] containers;
+	private int nContainers;
+
+	public BitmapPostingList() {
+		this.keys = new char[4];
+		this.containers = new Container[4];
+		this.nContainers = 0;
+	}
+
+	public static BitmapPostingList of(int... values) {
+		BitmapPostingList list = new BitmapPostingList();
+		for (int value : values)
+			list.add(value);
+		return list;
+	}
+
+	/**
+	 * Adds a value. Appending values in ascending order is the fastest way to
+	 * build the list.
+	 *
+	 * @param value
+	 *            must be non-negative
+	 */
+	public void add(int value) {
+		if (value < 0)
+			throw new IllegalArgumentException("Posting lists only contain non-negative values: " + value);
+		char key = highBits(value);
+		int index;
+		// fast path for ascending insertions
+		if (this.nContainers > 0 && this.keys[this.nContainers - 1] == key)
+			index = this.nContainers - 1;
+		else
+			index = Arrays.binarySearch(this.keys, 0, this.nContainers, key);
+		if (index < 0) {
+			index = -index - 1;
+			insertContainer(index, key, new ArrayContainer());
+		}
+		this.containers[index] = this.containers[index].add(lowBits(value));
+	}
+
+	public boolean contains(int value) {
+		if (value < 0)
+			return false;
+		int index = Arrays.binarySearch(this.keys, 0, this.nContainers, highBits(value));
+		return index >= 0 && this.containers[index].contains(lowBits(value));
+	}
+
+	public int getCardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < this.nContainers; i++)
+			cardinality += this.containers[i].cardinality;
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return this.nContainers == 0;
+	}
+
+	/**
+	 * @return true if this list and the other share at least one value
+	 */
+	public boolean intersects(BitmapPostingList other) {
+		int i = 0, j = 0;
+		while (i < this.nContainers && j < other.nContainers) {
+			char k1 = this.keys[i], k2 = other.keys[j];
+			if (k1 < k2)
+				i++;
+			else if (k1 > k2)
+				j++;
+			else {
+				if (this.containers[i].intersects(other.containers[j]))
+					return true;
+				i++;
+				j++;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return number of values shared by this list and the other
+	 */
+	public int andCardinality(BitmapPostingList other) {
+		int cardinality = 0;
+		int i = 0, j = 0;
+		while (i < this.nContainers && j < other.nContainers) {
+			char k1 = this.keys[i], k2 = other.keys[j];
+			if (k1 < k2)
+				i++;
+			else if (k1 > k2)
+				j++;
+			else {
+				cardinality += this.containers[i].andCardinality(other.containers[j]);
+				i++;
+				j++;
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * @return a new list with the values shared by this list and the other
+	 */
+	public BitmapPostingList and(BitmapPostingList other) {
+		BitmapPostingList result = new BitmapPostingList();
+		int i = 0, j = 0;
+		while (i < this.nContainers && j < other.nContainers) {
+			char k1 = this.keys[i], k2 = other.keys[j];
+			if (k1 < k2)
+				i++;
+			else if (k1 > k2)
+				j++;
+			else {
+				Container c = this.containers[i].and(other.containers[j]);
+				if (c.cardinality > 0)
+					result.insertContainer(result.nContainers, k1, c);
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Applies the consumer to each value, in ascending order
+	 */
+	public void forEach(IntConsumer consumer) {
+		for (int i = 0; i < this.nContainers; i++)
+			this.containers[i].forEach(this.keys[i] << 16, consumer);
+	}
+
+	public int[] toArray() {
+		int[] values = new int[getCardinality()];
+		int[] position = new int[1];
+		forEach(v -> values[position[0]++] = v);
+		return values;
+	}
+
+	private void insertContainer(int index, char key, Container container) {
+		if (this.nContainers == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, this.nContainers * 2);
+			this.containers = Arrays.copyOf(this.containers, this.nContainers * 2);
+		}
+		System.arraycopy(this.keys, index, this.keys, index + 1, this.nContainers - index);
+		System.arraycopy(this.containers, index, this.containers, index + 1, this.nContainers - index);
+		this.keys[index] = key;
+		this.containers[index] = container;
+		this.nContainers++;
+	}
+
+	private static char highBits(int value) {
+		return (char) (value >>> 16);
+	}
+
+	private static char lowBits(int value) {
+		return (char) value;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		return Arrays.equals(toArray(), ((BitmapPostingList) obj).toArray());
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+	/**
+	 * Set of the 16 least significant bits of the values sharing the same key
+	 */
+	private static abstract class Container {
+		protected int cardinality;
+
+		/** @return the container holding the value (this or a converted one) */
+		abstract Container add(char value);
+
+		abstract boolean contains(char value);
+
+		abstract boolean intersects(Container other);
+
+		abstract int andCardinality(Container other);
+
+		abstract Container and(Container other);
+
+		abstract void forEach(int high, IntConsumer consumer);
+	}
+
+	private static class ArrayContainer extends Container {
+		private char[] values = new char[4];
+
+		@Override
+		Container add(char value) {
+			int index;
+			if (this.cardinality == 0 || this.values[this.cardinality - 1] < value)
+				index = -this.cardinality - 1;
+			else
+				index = Arrays.binarySearch(this.values, 0, this.cardinality, value);
+			if (index >= 0)
+				return this;
+			if (this.cardinality == MAX_ARRAY_CARDINALITY)
+				return toBitmap().add(value);
+			index = -index - 1;
+			if (this.cardinality == this.values.length)
+				this.values = Arrays.copyOf(this.values, Math.min(this.cardinality * 2, MAX_ARRAY_CARDINALITY));
+			System.arraycopy(this.values, index, this.values, index + 1, this.cardinality - index);
+			this.values[index] = value;
+			this.cardinality++;
+			return this;
+		}
+
+		private BitmapContainer toBitmap() {
+			BitmapContainer bitmap = new BitmapContainer();
+			for (int i = 0; i < this.cardinality; i++)
+				bitmap.add(this.values[i]);
+			return bitmap;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(this.values, 0, this.cardinality, value) >= 0;
+		}
+
+		@Override
+		boolean intersects(Container other) {
+			if (other instanceof BitmapContainer)
+				return other.intersects(this);
+			ArrayContainer o = (ArrayContainer) other;
+			int i = 0, j = 0;
+			while (i < this.cardinality && j < o.cardinality) {
+				if (this.values[i] < o.values[j])
+					i++;
+				else if (this.values[i] > o.values[j])
+					j++;
+				else
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		int andCardinality(Container other) {
+			if (other instanceof BitmapContainer)
+				return other.andCardinality(this);
+			ArrayContainer o = (ArrayContainer) other;
+			int count = 0, i = 0, j = 0;
+			while (i < this.cardinality && j < o.cardinality) {
+				if (this.values[i] < o.values[j])
+					i++;
+				else if (this.values[i] > o.values[j])
+					j++;
+				else {
+					count++;
+					i++;
+					j++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		Container and(Container other) {
+			ArrayContainer result = new ArrayContainer();
+			result.values = new char[Math.max(1, Math.min(this.cardinality, other.cardinality))];
+			if (other instanceof BitmapContainer) {
+				for (int i = 0; i < this.cardinality; i++)
+					if (other.contains(this.values[i]))
+						result.values[result.cardinality++] = this.values[i];
+				return result;
+			}
+			ArrayContainer o = (ArrayContainer) other;
+			int i = 0, j = 0;
+			while (i < this.cardinality && j < o.cardinality) {
+				if (this.values[i] < o.values[j])
+					i++;
+				else if (this.values[i] > o.values[j])
+					j++;
+				else {
+					result.values[result.cardinality++] = this.values[i];
+					i++;
+					j++;
+				}
+			}
+			return result;
+		}
+
+		@Override
+		void forEach(int high, IntConsumer consumer) {
+			for (int i = 0; i < this.cardinality; i++)
+				consumer.accept(high | this.values[i]);
+		}
+	}
+
+	private static class BitmapContainer extends Container {
+		private final long[] words = new long[BITMAP_WORDS];
+
+		@Override
+		Container add(char value) {
+			long before = this.words[value >>> 6];
+			long after = before | (1L << value);
+			if (before != after) {
+				this.words[value >>> 6] = after;
+				this.cardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (this.words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		boolean intersects(Container other) {
+			if (other instanceof BitmapContainer) {
+				long[] o = ((BitmapContainer) other).words;
+				for (int i = 0; i < BITMAP_WORDS; i++)
+					if ((this.words[i] & o[i]) != 0)
+						return true;
+				return false;
+			}
+			ArrayContainer o = (ArrayContainer) other;
+			for (int i = 0; i < o.cardinality; i++)
+				if (contains(o.values[i]))
+					return true;
+			return false;
+		}
+
+		@Override
+		int andCardinality(Container other) {
+			int count = 0;
+			if (other instanceof BitmapContainer) {
+				long[] o = ((BitmapContainer) other).words;
+				for (int i = 0; i < BITMAP_WORDS; i++)
+					count += Long.bitCount(this.words[i] & o[i]);
+				return count;
+			}
+			ArrayContainer o = (ArrayContainer) other;
+			for (int i = 0; i < o.cardinality; i++)
+				if (contains(o.values[i]))
+					count++;
+			return count;
+		}
+
+		@Override
+		Container and(Container other) {
+			if (other instanceof ArrayContainer)
+				return other.and(this);
+			long[] o = ((BitmapContainer) other).words;
+			int cardinality = andCardinality(other);
+			if (cardinality > MAX_ARRAY_CARDINALITY) {
+				BitmapContainer result = new BitmapContainer();
+				for (int i = 0; i < BITMAP_WORDS; i++)
+					result.words[i] = this.words[i] & o[i];
+				result.cardinality = cardinality;
+				return result;
+			}
+			ArrayContainer result = new ArrayContainer();
+			result.values = new char[Math.max(1, cardinality)];
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = this.words[i] & o[i];
+				while (word != 0) {
+					result.values[result.cardinality++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return result;
+		}
+
+		@Override
+		void forEach(int high, IntConsumer consumer) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = this.words[i];
+				while (word != 0) {
+					consumer.accept(high | ((i << 6) + Long.numberOfTrailingZeros(word)));
+					word &= word - 1;
+				}
+			}
+		}
+	}
+}
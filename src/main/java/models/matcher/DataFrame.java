@@ -1,65 +1,117 @@
 package models.matcher;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Stream;
-import java.util.TreeSet;
 
+/**
+ * Columnar frame of the features of pairs [catalog attribute, source
+ * attribute], provided to the classifier.
+ * <p>
+ * Feature columns are stored in growable primitive arrays, attributes are
+ * stored as ids of the {@link AttributeDictionary}. Rows are removed logically
+ * with a deletion bitmask and the columns are compacted on demand, before any
+ * access by row index.
+ */
 public class DataFrame {
 
-	private List<String> attrCatalog = new ArrayList<>();
-	private List<String> attrSource = new ArrayList<>();
-	private List<Double> JSDs = new ArrayList<>();
-	private List<Double> JSDc = new ArrayList<>();
-	private List<Double> JCs = new ArrayList<>();
-	private List<Double> JCc = new ArrayList<>();
-	private List<Double> MIs = new ArrayList<>();
-	private List<Double> MIc = new ArrayList<>();
-	private List<Double> Match = new ArrayList<>();
+	/**
+	 * Feature columns, names are the same used by the classifier
+	 */
+	public enum FeatureColumn {
+		JSDs, JSDc, JCs, JCc, MIs, MIc, Match;
+
+		/** Columns provided to the classifier */
+		public static final FeatureColumn[] FEATURES = { JSDs, JSDc, JCs, JCc, MIs, MIc };
+	}
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private double[][] columns;
+	private int[] attrCatalog;
+	private int[] attrSource;
+	/** Number of rows, deleted rows included */
 	private int nRows = 0;
+	/** Rows removed and not yet compacted */
+	private BitSet deleted = new BitSet();
+
+	private AttributeDictionary dictionary;
 
 	public DataFrame() {
+		this(new AttributeDictionary());
+	}
+
+	public DataFrame(AttributeDictionary dictionary) {
+		this.dictionary = dictionary;
+		this.columns = new double[FeatureColumn.values().length][INITIAL_CAPACITY];
+		this.attrCatalog = new int[INITIAL_CAPACITY];
+		this.attrSource = new int[INITIAL_CAPACITY];
 	}
 
 	public DataFrame(DataFrame df) {
-		Collections.copy(this.attrCatalog, df.getAttrCatalog());
-		Collections.copy(this.attrSource, df.getAttrSource());
-		Collections.copy(this.JSDs, df.getJSDs());
-		Collections.copy(this.JSDc, df.getJSDc());
-		Collections.copy(this.JCs, df.getJCs());
-		Collections.copy(this.JCc, df.getJCc());
-		Collections.copy(this.MIs, df.getMIs());
-		Collections.copy(this.MIc, df.getMIc());
-		Collections.copy(this.Match, df.getMatch());
+		df.compact();
+		this.columns = new double[df.columns.length][];
+		for (int i = 0; i < df.columns.length; i++)
+			this.columns[i] = Arrays.copyOf(df.columns[i], Math.max(df.nRows, 1));
+		this.attrCatalog = Arrays.copyOf(df.attrCatalog, Math.max(df.nRows, 1));
+		this.attrSource = Arrays.copyOf(df.attrSource, Math.max(df.nRows, 1));
+		this.nRows = df.nRows;
+		this.dictionary = df.dictionary;
 	}
 
 	public void addRow(Features features, String aCatalog, String aSource) {
-		this.attrCatalog.add(aCatalog);
-		this.attrSource.add(aSource);
+		addRow(features, this.dictionary.getId(aCatalog), this.dictionary.getId(aSource));
+	}
+
+	public void addRow(Features features, int aCatalog, int aSource) {
+		compact();
+		ensureCapacity();
+		int row = this.nRows;
+		this.attrCatalog[row] = aCatalog;
+		this.attrSource[row] = aSource;
 
-		this.JSDs.add(features.getSourceJSD());
-		this.JSDc.add(features.getCategoryJSD());
+		this.columns[FeatureColumn.JSDs.ordinal()][row] = features.getSourceJSD();
+		this.columns[FeatureColumn.JSDc.ordinal()][row] = features.getCategoryJSD();
 
-		this.JCs.add(features.getSourceJC());
-		this.JCc.add(features.getCategoryJC());
+		this.columns[FeatureColumn.JCs.ordinal()][row] = features.getSourceJC();
+		this.columns[FeatureColumn.JCc.ordinal()][row] = features.getCategoryJC();
 
-		this.MIs.add(features.getSourceMI());
-		this.MIc.add(features.getCategoryMI());
+		this.columns[FeatureColumn.MIs.ordinal()][row] = features.getSourceMI();
+		this.columns[FeatureColumn.MIc.ordinal()][row] = features.getCategoryMI();
 
-		this.Match.add(features.getMatch());
+		this.columns[FeatureColumn.Match.ordinal()][row] = features.getMatch();
 
 		this.nRows += 1;
 	}
 
-	public String getStringAtIndex(String field, int index) {
-		String value = null;
-		if (field.equals("attrCatalog"))
-			value = this.attrCatalog.get(index);
-		if (field.equals("attrSource"))
-			value = this.attrSource.get(index);
-		return value;
+	private void ensureCapacity() {
+		if (this.nRows == this.attrCatalog.length) {
+			int capacity = Math.max(INITIAL_CAPACITY, this.attrCatalog.length * 2);
+			this.attrCatalog = Arrays.copyOf(this.attrCatalog, capacity);
+			this.attrSource = Arrays.copyOf(this.attrSource, capacity);
+		}
+		// columns may have been trimmed by getColumn
+		for (int i = 0; i < this.columns.length; i++)
+			if (this.columns[i].length < this.attrCatalog.length)
+				this.columns[i] = Arrays.copyOf(this.columns[i], this.attrCatalog.length);
+	}
+
+	/**
+	 * @return number of rows (not removed)
+	 */
+	public int size() {
+		return this.nRows - this.deleted.cardinality();
+	}
+
+	/**
+	 * Marks the row as removed. Indexes of the other rows do not change until
+	 * the next compaction, so that several rows can be removed in any order.
+	 */
+	public void removeByIndex(int index) {
+		if (index < 0 || index >= this.nRows)
+			throw new IndexOutOfBoundsException("Row " + index + " of " + this.nRows);
+		this.deleted.set(index);
 	}
 
 	public void removeByIndexes(List<Integer> indexes) {
@@ -67,123 +119,140 @@ public class DataFrame {
 			removeByIndex(index);
 	}
 
-	// each "range" is the range of indexes of rows that refer to matches for
-	// the same source attribute
-	public List<Integer> getSourceRanges() {
-		List<Integer> ranges = new ArrayList<>();
-		String attr = "";
-
-		for (int i = 0; i < this.attrSource.size(); i++) {
-			if (!this.attrSource.get(i).equals(attr)) {
-				ranges.add(i);
-				attr = this.attrSource.get(i);
+	/**
+	 * Physically removes the rows marked as removed, keeping the order of the
+	 * others
+	 */
+	public void compact() {
+		if (this.deleted.isEmpty())
+			return;
+		int newRow = 0;
+		for (int row = 0; row < this.nRows; row++) {
+			if (this.deleted.get(row))
+				continue;
+			if (newRow != row) {
+				for (double[] column : this.columns)
+					column[newRow] = column[row];
+				this.attrCatalog[newRow] = this.attrCatalog[row];
+				this.attrSource[newRow] = this.attrSource[row];
 			}
+			newRow++;
 		}
-		ranges.add(this.attrSource.size());
-
-		return ranges;
+		this.nRows = newRow;
+		this.deleted.clear();
 	}
 
-	public Set<Integer> getIndexesByValue(String field, String value) {
-		Set<Integer> indexes = new TreeSet<>();
-
-		if (field.equals("attrCatalog")) {
-			for (int i = 0; i < this.attrCatalog.size(); i++)
-				if (this.attrCatalog.get(i).equals(value))
-					indexes.add(i);
-		}
-		if (field.equals("attrSource")) {
-			for (int i = 0; i < this.attrSource.size(); i++)
-				if (this.attrSource.get(i).equals(value))
-					indexes.add(i);
+	/**
+	 * Returns the column of the rows, without copy when the column is already
+	 * sized to the number of rows (otherwise the column is trimmed once, so
+	 * following calls are free).
+	 * <p>
+	 * The array is backed by the frame: it must not be modified, and it is no
+	 * longer valid after rows are added or removed.
+	 */
+	public double[] getColumn(FeatureColumn feature) {
+		compact();
+		double[] column = this.columns[feature.ordinal()];
+		if (column.length != this.nRows) {
+			column = Arrays.copyOf(column, this.nRows);
+			this.columns[feature.ordinal()] = column;
 		}
-
-		return indexes;
+		return column;
 	}
 
-	public void removeByIndex(int index) {
-		this.attrCatalog.remove(index);
-		this.attrSource.remove(index);
-		this.JSDs.remove(index);
-		this.JSDc.remove(index);
-		this.JCs.remove(index);
-		this.JCc.remove(index);
-		this.MIs.remove(index);
-		this.MIc.remove(index);
-		this.Match.remove(index);
-		this.nRows -= 1;
+	public double getValue(FeatureColumn feature, int index) {
+		compact();
+		return this.columns[feature.ordinal()][checkIndex(index)];
 	}
 
-	public void updateMatchProbabilities(double[] probs) {
-		List<Double> newProbs = new ArrayList<>();
-		for (double p : probs)
-			newProbs.add(p);
-		this.Match = newProbs;
+	/**
+	 * @return id of the catalog attribute of the row
+	 */
+	public int getCatalogAttributeId(int index) {
+		compact();
+		return this.attrCatalog[checkIndex(index)];
 	}
 
-	// remove rows where there are null values
-	public void removeNull() {
-		List<Integer> indexes = new ArrayList<>();
-		for (int i = 0; i < this.nRows; i++)
-			if (Stream.of(this.JSDs, this.JSDc, this.JCs, this.JCc, this.MIs, this.MIc)
-					.allMatch(x -> x == null))
-				indexes.add(i);
-
-		removeByIndexes(indexes);
+	/**
+	 * @return id of the source attribute of the row
+	 */
+	public int getSourceAttributeId(int index) {
+		compact();
+		return this.attrSource[checkIndex(index)];
 	}
 
-	public List<String> getAttrCatalog() {
-		return attrCatalog;
+	public String getCatalogAttribute(int index) {
+		return this.dictionary.getName(getCatalogAttributeId(index));
 	}
 
-	public List<String> getAttrSource() {
-		return attrSource;
+	public String getSourceAttribute(int index) {
+		return this.dictionary.getName(getSourceAttributeId(index));
 	}
 
-	public List<Double> getJSDs() {
-		return JSDs;
+	public AttributeDictionary getDictionary() {
+		return dictionary;
 	}
 
-	public List<Double> getJSDc() {
-		return JSDc;
+	private int checkIndex(int index) {
+		if (index < 0 || index >= this.nRows)
+			throw new IndexOutOfBoundsException("Row " + index + " of " + this.nRows);
+		return index;
 	}
 
-	public List<Double> getJCs() {
-		return JCs;
-	}
-	
-	public List<Double> getJCc() {
-		return JCc;
-	}
+	// each "range" is the range of indexes of rows that refer to matches for
+	// the same source attribute
+	public List<Integer> getSourceRanges() {
+		compact();
+		List<Integer> ranges = new ArrayList<>();
+
+		for (int i = 0; i < this.nRows; i++) {
+			if (i == 0 || this.attrSource[i] != this.attrSource[i - 1])
+				ranges.add(i);
+		}
+		ranges.add(this.nRows);
 
-	public List<Double> getMIs() {
-		return MIs;
+		return ranges;
 	}
 
-	public List<Double> getMIc() {
-		return MIc;
+	public void updateMatchProbabilities(double[] probs) {
+		compact();
+		if (probs.length != this.nRows)
+			throw new IllegalArgumentException(probs.length + " probabilities for " + this.nRows + " rows");
+		this.columns[FeatureColumn.Match.ordinal()] = Arrays.copyOf(probs, probs.length);
 	}
 
-	public List<Double> getMatch() {
-		return Match;
+	// remove rows where all the features are missing
+	public void removeNull() {
+		for (int i = 0; i < this.nRows; i++) {
+			boolean allMissing = true;
+			for (FeatureColumn feature : FeatureColumn.FEATURES)
+				allMissing &= Double.isNaN(this.columns[feature.ordinal()][i]);
+			if (allMissing)
+				this.deleted.set(i);
+		}
+		compact();
 	}
 
 	public List<String> toCSVFormat() {
+		compact();
 		List<String> rows = new ArrayList<>();
 		for (int i = 0; i < this.nRows; i++) {
-			rows.add(this.attrSource.get(i).replace(",", "#;#") + "," + this.attrCatalog.get(i).replace(",", "#;#")
-					+ "," + this.JSDs.get(i) + "," + this.JSDc.get(i) + "," + this.JCs.get(i)
-					+ "," + this.JCc.get(i) + "," + this.MIs.get(i) 
-					+ "," + this.MIc.get(i) + "," + this.Match.get(i));
+			StringBuilder row = new StringBuilder();
+			row.append(getSourceAttribute(i).replace(",", "#;#")).append(",")
+					.append(getCatalogAttribute(i).replace(",", "#;#"));
+			for (double[] column : this.columns)
+				row.append(",").append(column[i]);
+			rows.add(row.toString());
 		}
 		return rows;
 	}
 
 	public List<String> toCSVFormatSlim() {
+		compact();
 		List<String> rows = new ArrayList<>();
 		for (int i = 0; i < this.nRows; i++) {
-			rows.add(this.attrSource.get(i).replace(",", "#;#") + "," + this.attrCatalog.get(i).replace(",", "#;#")
-					+ "," + this.Match.get(i));
+			rows.add(getSourceAttribute(i).replace(",", "#;#") + "," + getCatalogAttribute(i).replace(",", "#;#")
+					+ "," + this.columns[FeatureColumn.Match.ordinal()][i]);
 		}
 		return rows;
 	}
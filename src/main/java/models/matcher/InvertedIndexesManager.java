@@ -2,27 +2,41 @@ package models.matcher;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
+/**
+ * Inverted indexes used during the classification (attribute --> indexes of the
+ * linked pages in which it is present), with postings stored as
+ * {@link BitmapPostingList}. Attributes are identified by their ids in the
+ * {@link AttributeDictionary}.
+ */
 public class InvertedIndexesManager {
 
-	private Map<String, Set<Integer>> catalogIndex = new HashMap<>();
-	private Map<String, Set<Integer>> linkedIndex = new HashMap<>();
-	private Map<String, Set<Integer>> sourceIndex = new HashMap<>();
+	private AttributeDictionary dictionary;
+	private Map<Integer, BitmapPostingList> catalogIndex = new HashMap<>();
+	private Map<Integer, BitmapPostingList> linkedIndex = new HashMap<>();
+	private Map<Integer, BitmapPostingList> sourceIndex = new HashMap<>();
 
-	public InvertedIndexesManager() {
+	public InvertedIndexesManager(AttributeDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
 
+	/**
+	 * Dictionary of the attribute ids used as keys of the indexes
+	 * @return
+	 */
+	public AttributeDictionary getDictionary() {
+		return dictionary;
 	}
 
 	/**
 	 * Attribute in catalog --> index of pages of catalog in which this attribute is present
 	 * @return
 	 */
-	public Map<String, Set<Integer>> getCatalogIndex() {
+	public Map<Integer, BitmapPostingList> getCatalogIndex() {
 		return catalogIndex;
 	}
 
-	public void setCatalogIndex(Map<String, Set<Integer>> catalogIndex) {
+	public void setCatalogIndex(Map<Integer, BitmapPostingList> catalogIndex) {
 		this.catalogIndex = catalogIndex;
 	}
 
@@ -31,11 +45,11 @@ public class InvertedIndexesManager {
 	 * 
 	 * @return
 	 */
-	public Map<String, Set<Integer>> getLinkedIndex() {
+	public Map<Integer, BitmapPostingList> getLinkedIndex() {
 		return linkedIndex;
 	}
 
-	public void setLinkedIndex(Map<String, Set<Integer>> linkedIndex) {
+	public void setLinkedIndex(Map<Integer, BitmapPostingList> linkedIndex) {
 		this.linkedIndex = linkedIndex;
 	}
 
@@ -44,11 +58,11 @@ public class InvertedIndexesManager {
 	 * 
 	 * @return
 	 */
-	public Map<String, Set<Integer>> getSourceIndex() {
+	public Map<Integer, BitmapPostingList> getSourceIndex() {
 		return sourceIndex;
 	}
 
-	public void setSourceIndex(Map<String, Set<Integer>> sourceIndex) {
+	public void setSourceIndex(Map<Integer, BitmapPostingList> sourceIndex) {
 		this.sourceIndex = sourceIndex;
 	}
 
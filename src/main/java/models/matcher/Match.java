@@ -1,63 +1,69 @@
 package models.matcher;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Matches selected among the classified pairs of attributes. Attributes are
+ * stored as ids of the {@link AttributeDictionary}, names are rendered only in
+ * the output methods.
+ */
 public class Match {
 
-	private List<String> sourceAttributes = new ArrayList<>();
-	private List<String> catalogAttributes = new ArrayList<>();
-	private List<Double> matchProbabilities = new ArrayList<>();
+	private AttributeDictionary dictionary;
+	private int[] sourceAttributes = new int[8];
+	private int[] catalogAttributes = new int[8];
+	private double[] matchProbabilities = new double[8];
 	private int nRows = 0;
 
-	public Match() {
-
+	public Match(AttributeDictionary dictionary) {
+		this.dictionary = dictionary;
 	}
 
-	public void addRow(String aCatalog, String aSource, double prob) {
-		this.catalogAttributes.add(aCatalog);
-		this.sourceAttributes.add(aSource);
-		this.matchProbabilities.add(prob);
+	public void addRow(int aCatalog, int aSource, double prob) {
+		if (this.nRows == this.sourceAttributes.length) {
+			this.sourceAttributes = Arrays.copyOf(this.sourceAttributes, this.nRows * 2);
+			this.catalogAttributes = Arrays.copyOf(this.catalogAttributes, this.nRows * 2);
+			this.matchProbabilities = Arrays.copyOf(this.matchProbabilities, this.nRows * 2);
+		}
+		this.catalogAttributes[this.nRows] = aCatalog;
+		this.sourceAttributes[this.nRows] = aSource;
+		this.matchProbabilities[this.nRows] = prob;
 		this.nRows += 1;
 	}
 
-	public List<String> getSourceAttributes() {
-		return sourceAttributes;
-	}
-
-	public void setSourceAttributes(List<String> sourceAttributes) {
-		this.sourceAttributes = sourceAttributes;
+	public int getSourceAttribute(int index) {
+		return this.sourceAttributes[checkIndex(index)];
 	}
 
-	public List<String> getCatalogAttributes() {
-		return catalogAttributes;
+	public int getCatalogAttribute(int index) {
+		return this.catalogAttributes[checkIndex(index)];
 	}
 
-	public void setCatalogAttributes(List<String> catalogAttributes) {
-		this.catalogAttributes = catalogAttributes;
+	public double getMatchProbability(int index) {
+		return this.matchProbabilities[checkIndex(index)];
 	}
 
-	public List<Double> getMatchProbabilities() {
-		return matchProbabilities;
-	}
-
-	public void setMatchProbabilities(List<Double> matchProbabilities) {
-		this.matchProbabilities = matchProbabilities;
+	private int checkIndex(int index) {
+		if (index < 0 || index >= this.nRows)
+			throw new IndexOutOfBoundsException("Match " + index + " of " + this.nRows);
+		return index;
 	}
 
 	public int getnRows() {
 		return nRows;
 	}
 
-	public void setnRows(int nRows) {
-		this.nRows = nRows;
-	}
-
+	/**
+	 * @return pairs [source attribute, catalog attribute], rendered as names
+	 */
 	public List<String[]> getMatchedAttributes() {
 		List<String[]> attrs = new ArrayList<>();
 
 		for (int i = 0; i < this.nRows; i++) {
-			String[] attributesCouple = new String[] { this.sourceAttributes.get(i), this.catalogAttributes.get(i) };
+			String[] attributesCouple = new String[] { this.dictionary.getName(this.sourceAttributes[i]),
+					this.dictionary.getName(this.catalogAttributes[i]) };
 			attrs.add(attributesCouple);
 		}
 
@@ -67,8 +73,9 @@ public class Match {
 	public List<String> toCSVFormat() {
 		List<String> rows = new ArrayList<>();
 		for (int i = 0; i < this.nRows; i++) {
-			rows.add(this.sourceAttributes.get(i).replace(",", "#;#") + ","
-					+ this.catalogAttributes.get(i).replace(",", "#;#") + "," + this.matchProbabilities.get(i));
+			rows.add(this.dictionary.getName(this.sourceAttributes[i]).replace(",", "#;#") + ","
+					+ this.dictionary.getName(this.catalogAttributes[i]).replace(",", "#;#") + ","
+					+ this.matchProbabilities[i]);
 		}
 		return rows;
 	}
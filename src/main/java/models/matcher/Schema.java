@@ -1,6 +1,7 @@
 package models.matcher;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -9,33 +10,45 @@ import java.util.Map;
 
 /**
  * Contains all pair of attributes matched.
- * 
+ * <p>
+ * Attributes are stored with their ids in the {@link AttributeDictionary} of
+ * the schema, names are rendered only in the output methods.
+ *
  * @author marco
  *
  */
 // TODO remove totalLinkage and matchlinkage that are deprecated
 public class Schema {
-	private Map<String, String> attributesMap;
+	private static final int ABSENT = -1;
+
+	private AttributeDictionary dictionary;
+	/** attribute id --> id of the attribute it is matched to (ABSENT if not in schema) */
+	private int[] attributesMap;
 	private Map<String, Integer> totalLinkage;
-	private Map<String, Integer> matchLinkage;
+	/** attribute id --> linkage of its match (ABSENT if not matched) */
+	private int[] matchLinkage;
 	private String sourceCatalogueName;
 
 	public Schema(String sourceCatalogueName) {
-		this.attributesMap = new HashMap<>();
+		this(sourceCatalogueName, new AttributeDictionary());
+	}
+
+	public Schema(String sourceCatalogueName, AttributeDictionary dictionary) {
+		this.dictionary = dictionary;
+		this.attributesMap = new int[0];
 		this.totalLinkage = new HashMap<>();
-		this.matchLinkage = new HashMap<>();
+		this.matchLinkage = new int[0];
 		this.sourceCatalogueName = sourceCatalogueName;
 	}
 
 	public List<List<String>> schema2Clusters() {
-		Map<String, List<String>> schemaMap = new HashMap<>();
+		Map<Integer, List<String>> schemaMap = new HashMap<>();
 		List<List<String>> finalSchema = new ArrayList<>();
 
-		this.attributesMap.entrySet().forEach(entry -> {
-			List<String> attributes = schemaMap.getOrDefault(entry.getValue(), new ArrayList<String>());
-			attributes.add(entry.getKey());
-			schemaMap.put(entry.getValue(), attributes);
-		});
+		for (int id = 0; id < this.attributesMap.length; id++)
+			if (this.attributesMap[id] != ABSENT)
+				schemaMap.computeIfAbsent(this.attributesMap[id], k -> new ArrayList<String>())
+						.add(this.dictionary.getName(id));
 
 		finalSchema.addAll(schemaMap.values());
 		finalSchema.sort(Comparator.comparing(List::size));
@@ -44,12 +57,62 @@ public class Schema {
 		return finalSchema;
 	}
 
+	public AttributeDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public boolean containsAttribute(int attribute) {
+		return attribute < this.attributesMap.length && this.attributesMap[attribute] != ABSENT;
+	}
+
+	/**
+	 * @return id of the attribute matched to the provided one, or the provided one
+	 *         if it is not in the schema
+	 */
+	public int getMatchedAttribute(int attribute) {
+		return containsAttribute(attribute) ? this.attributesMap[attribute] : attribute;
+	}
+
+	public void putAttribute(int attribute, int matchedAttribute) {
+		this.attributesMap = ensureSize(this.attributesMap, attribute);
+		this.attributesMap[attribute] = matchedAttribute;
+	}
+
+	/**
+	 * @return linkage of the match of the attribute, or -1 if it is not matched
+	 */
+	int getLinkageOfMatch(int attribute) {
+		return attribute < this.matchLinkage.length ? this.matchLinkage[attribute] : ABSENT;
+	}
+
+	public void putMatchLinkage(int attribute, int linkage) {
+		this.matchLinkage = ensureSize(this.matchLinkage, attribute);
+		this.matchLinkage[attribute] = linkage;
+	}
+
+	private static int[] ensureSize(int[] array, int index) {
+		if (index < array.length)
+			return array;
+		int oldLength = array.length;
+		int[] newArray = Arrays.copyOf(array, Math.max(index + 1, oldLength * 2));
+		Arrays.fill(newArray, oldLength, newArray.length, ABSENT);
+		return newArray;
+	}
+
+	/**
+	 * @return attribute --> attribute it is matched to, rendered as names
+	 */
 	public Map<String, String> getAttributesMap() {
-		return attributesMap;
+		Map<String, String> names = new HashMap<>();
+		for (int id = 0; id < this.attributesMap.length; id++)
+			if (this.attributesMap[id] != ABSENT)
+				names.put(this.dictionary.getName(id), this.dictionary.getName(this.attributesMap[id]));
+		return names;
 	}
 
 	public void setAttributesMap(Map<String, String> attributesMap) {
-		this.attributesMap = attributesMap;
+		this.attributesMap = new int[0];
+		attributesMap.forEach((a, m) -> putAttribute(this.dictionary.getId(a), this.dictionary.getId(m)));
 	}
 
 	public Map<String, Integer> getTotalLinkage() {
@@ -60,17 +123,25 @@ public class Schema {
 		this.totalLinkage = totalLinkage;
 	}
 
+	/**
+	 * @return matched attribute --> linkage of the match, rendered as names
+	 */
 	public Map<String, Integer> getMatchLinkage() {
-		return matchLinkage;
+		Map<String, Integer> names = new HashMap<>();
+		for (int id = 0; id < this.matchLinkage.length; id++)
+			if (this.matchLinkage[id] != ABSENT)
+				names.put(this.dictionary.getName(id), this.matchLinkage[id]);
+		return names;
 	}
 
 	public void setMatchLinkage(Map<String, Integer> matchLinkage) {
-		this.matchLinkage = matchLinkage;
+		this.matchLinkage = new int[0];
+		matchLinkage.forEach((a, l) -> putMatchLinkage(this.dictionary.getId(a), l));
 	}
 
 	public String getSourceCatalogueName() {
 		return sourceCatalogueName;
 	}
-	
-	
+
+
 }
@@ -0,0 +1,143 @@
+package models.matcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State of the alignment of a category after a number of sources: the
+ * {@link Schema} and the position in the ordered websites.
+ * <p>
+ * It is stored in a compact binary file: the attributes are written once, in
+ * order of id, so that the ids of the {@link AttributeDictionary} are the same
+ * after reading, then the schema is written as pairs of ids. The file is first
+ * written next to the destination and then renamed, so a checkpoint is never
+ * left half written.
+ */
+public class SchemaCheckpoint {
+
+	private static final int MAGIC = 0x5343484b;
+	private static final int VERSION = 1;
+
+	private String category;
+	private List<String> orderedWebsites;
+	private int completedSources;
+	private Schema schema;
+
+	/**
+	 * @param orderedWebsites
+	 *            all the websites of the category, in order of alignment
+	 * @param completedSources
+	 *            number of websites already in the schema (the catalog included)
+	 */
+	public SchemaCheckpoint(String category, List<String> orderedWebsites, int completedSources, Schema schema) {
+		this.category = category;
+		this.orderedWebsites = orderedWebsites;
+		this.completedSources = completedSources;
+		this.schema = schema;
+	}
+
+	public void write(Path path) throws IOException {
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(this.category);
+			out.writeInt(this.orderedWebsites.size());
+			for (String website : this.orderedWebsites)
+				out.writeUTF(website);
+			out.writeInt(this.completedSources);
+
+			out.writeUTF(this.schema.getSourceCatalogueName());
+			AttributeDictionary dictionary = this.schema.getDictionary();
+			int size = dictionary.size();
+			out.writeInt(size);
+			for (int id = 0; id < size; id++)
+				out.writeUTF(dictionary.getName(id));
+			List<int[]> matches = new ArrayList<>();
+			List<int[]> linkages = new ArrayList<>();
+			for (int id = 0; id < size; id++) {
+				if (this.schema.containsAttribute(id))
+					matches.add(new int[] { id, this.schema.getMatchedAttribute(id) });
+				if (this.schema.getLinkageOfMatch(id) >= 0)
+					linkages.add(new int[] { id, this.schema.getLinkageOfMatch(id) });
+			}
+			writePairs(out, matches);
+			writePairs(out, linkages);
+			Map<String, Integer> totalLinkage = this.schema.getTotalLinkage();
+			out.writeInt(totalLinkage.size());
+			for (Map.Entry<String, Integer> entry : totalLinkage.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeInt(entry.getValue());
+			}
+		}
+		try {
+			Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void writePairs(DataOutputStream out, List<int[]> pairs) throws IOException {
+		out.writeInt(pairs.size());
+		for (int[] pair : pairs) {
+			out.writeInt(pair[0]);
+			out.writeInt(pair[1]);
+		}
+	}
+
+	public static SchemaCheckpoint read(Path path) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("Not a schema checkpoint: " + path);
+			String category = in.readUTF();
+			int nWebsites = in.readInt();
+			List<String> orderedWebsites = new ArrayList<>(nWebsites);
+			for (int i = 0; i < nWebsites; i++)
+				orderedWebsites.add(in.readUTF());
+			int completedSources = in.readInt();
+
+			Schema schema = new Schema(in.readUTF());
+			AttributeDictionary dictionary = schema.getDictionary();
+			int size = in.readInt();
+			for (int id = 0; id < size; id++)
+				if (dictionary.getId(in.readUTF()) != id)
+					throw new IOException("Duplicated attribute in schema checkpoint: " + path);
+			for (int i = in.readInt(); i > 0; i--)
+				schema.putAttribute(in.readInt(), in.readInt());
+			for (int i = in.readInt(); i > 0; i--)
+				schema.putMatchLinkage(in.readInt(), in.readInt());
+			Map<String, Integer> totalLinkage = new HashMap<>();
+			for (int i = in.readInt(); i > 0; i--)
+				totalLinkage.put(in.readUTF(), in.readInt());
+			schema.setTotalLinkage(totalLinkage);
+			return new SchemaCheckpoint(category, orderedWebsites, completedSources, schema);
+		}
+	}
+
+	public String getCategory() {
+		return category;
+	}
+
+	public List<String> getOrderedWebsites() {
+		return orderedWebsites;
+	}
+
+	public int getCompletedSources() {
+		return completedSources;
+	}
+
+	public Schema getSchema() {
+		return schema;
+	}
+}
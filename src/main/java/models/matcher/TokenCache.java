@@ -0,0 +1,120 @@
+package models.matcher;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Tokenization of the attribute values, cached for the duration of a run (a
+ * match of a source or the generation of a training set), so that each value is
+ * split only once and not once per pair of attributes in which it is compared.
+ * <p>
+ * Tokens are coded as int ids of a dictionary shared by all the values of the
+ * cache. The cache is thread-safe.
+ *
+ * @see matcher.FeatureKernel
+ */
+public class TokenCache {
+
+	/** Separator of the words in the values */
+	private static final Pattern TOKEN_SEPARATOR = Pattern.compile("( |(###))+");
+	/** Separator of the values merged in the same attribute */
+	private static final Pattern VALUE_SEPARATOR = Pattern.compile("###");
+
+	private Map<String, Integer> ids = new ConcurrentHashMap<>();
+	/** id --> hash code of the string */
+	private volatile int[] hashes = new int[64];
+	/** id --> string */
+	private volatile String[] strings = new String[64];
+	private int size = 0;
+
+	private Map<String, int[]> tokens = new ConcurrentHashMap<>();
+	private Map<String, int[]> values = new ConcurrentHashMap<>();
+
+	/**
+	 * @return ids of the words of the value, split on spaces and on "###"
+	 */
+	public int[] getTokens(String value) {
+		int[] valueTokens = this.tokens.get(value);
+		if (valueTokens == null) {
+			valueTokens = toIds(split(value));
+			this.tokens.put(value, valueTokens);
+		}
+		return valueTokens;
+	}
+
+	/**
+	 * @return words of the value, split on spaces and on "###" (empty words at
+	 *         the beginning and at the end of the value are kept)
+	 */
+	public static String[] split(String value) {
+		return TOKEN_SEPARATOR.split(value, -1);
+	}
+
+	/**
+	 * @return ids of the values merged (with "###") in the value
+	 */
+	public int[] getValues(String value) {
+		int[] mergedValues = this.values.get(value);
+		if (mergedValues == null) {
+			mergedValues = toIds(VALUE_SEPARATOR.split(value, -1));
+			this.values.put(value, mergedValues);
+		}
+		return mergedValues;
+	}
+
+	private int[] toIds(String[] strings) {
+		int[] stringIds = new int[strings.length];
+		for (int i = 0; i < strings.length; i++)
+			stringIds[i] = getId(strings[i]);
+		return stringIds;
+	}
+
+	/**
+	 * @return id of the string in the dictionary, assigned if not already present
+	 */
+	public int getId(String string) {
+		Integer id = this.ids.get(string);
+		if (id == null)
+			id = this.ids.computeIfAbsent(string, this::addString);
+		return id;
+	}
+
+	private synchronized int addString(String string) {
+		int id = this.size;
+		int[] currentHashes = this.hashes;
+		String[] currentStrings = this.strings;
+		if (id == currentHashes.length) {
+			currentHashes = Arrays.copyOf(currentHashes, id * 2);
+			currentStrings = Arrays.copyOf(currentStrings, id * 2);
+		}
+		currentHashes[id] = string.hashCode();
+		currentStrings[id] = string;
+		this.strings = currentStrings;
+		this.hashes = currentHashes;
+		this.size++;
+		return id;
+	}
+
+	/**
+	 * @return {@link String#hashCode()} of the string with the provided id
+	 */
+	public int getHash(int id) {
+		return this.hashes[id];
+	}
+
+	/**
+	 * @return string with the provided id
+	 */
+	public String getString(int id) {
+		return this.strings[id];
+	}
+
+	/**
+	 * @return number of distinct strings in the dictionary
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+}
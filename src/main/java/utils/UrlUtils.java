@@ -24,7 +24,8 @@ public class UrlUtils {
 
 		try {
 			URI u = new URI(url);
-			domain = u.getHost();
+			// not a valid host name (e.g. with underscores), the authority is kept as it is
+			domain = u.getHost() != null ? u.getHost() : u.getAuthority();
 		} catch (URISyntaxException e) {
 			System.err.println("Couldn't extract host from URL: " + url);
 			e.printStackTrace();
@@ -0,0 +1,51 @@
+package connectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import model.SourceProductPage;
+
+public class MongoDbUtilsTest {
+
+	@Test
+	public void testGetLinkedWebsites() {
+		assertEquals(Arrays.asList("www.b.com", "c.com"), MongoDbUtils
+				.getLinkedWebsites(Arrays.asList("www.b.com/1", "http://c.com/2/", "www.b.com/3")));
+	}
+
+	@Test
+	public void testProductPageToDocumentHasSpecKeys() {
+		SourceProductPage page = new SourceProductPage("camera", "a.com/1", "a.com");
+		page.addAttributeValue("brand", "b1");
+		page.addAttributeValue("color", "c1");
+		Document doc = MongoDbUtils.convertProductPageToDocument(page);
+		assertEquals(new HashSet<>(Arrays.asList("brand", "color")),
+				new HashSet<>((List<?>) doc.get(MongoDbUtils.SPEC_KEYS)));
+	}
+
+	@Test
+	public void testProductPageToDocumentHasLinkedWebsites() {
+		SourceProductPage page = new SourceProductPage("camera", "a.com/1", "a.com");
+		page.setLinkage(Arrays.asList("b.com/1", "c.com/1", "b.com/2"));
+		Document doc = MongoDbUtils.convertProductPageToDocument(page);
+		assertEquals(Arrays.asList("b.com", "c.com"), doc.get(MongoDbUtils.LINKED_WEBSITES));
+	}
+
+	@Test
+	public void testProductPageToDocumentHasSamplingFields() {
+		SourceProductPage page = new SourceProductPage("camera", "a.com/1", "a.com");
+		page.addAttributeValue("brand", "b1");
+		Document doc = MongoDbUtils.convertProductPageToDocument(page);
+		assertEquals(true, doc.get(MongoDbUtils.HAS_SPECS));
+		assertEquals(false, doc.get(MongoDbUtils.HAS_LINKAGE));
+		double random = (Double) doc.get(MongoDbUtils.RANDOM);
+		assertTrue(random >= 0 && random < 1);
+	}
+}
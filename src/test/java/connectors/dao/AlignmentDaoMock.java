@@ -2,6 +2,8 @@ package connectors.dao;
 
 import java.util.AbstractMap;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +15,7 @@ import org.apache.commons.lang3.StringUtils;
 import model.AbstractProductPage.Specifications;
 import model.Source;
 import model.SourceProductPage;
+import utils.UrlUtils;
 
 public class AlignmentDaoMock implements AlignmentDao {
 
@@ -65,6 +68,18 @@ public class AlignmentDaoMock implements AlignmentDao {
 		return null;
 	}
 
+	@Override
+	public List<SourceProductPage> getPagesOfSource(Source source) {
+		System.out.printf("Called getPagesOfSource with source %s\n", source);
+		return null;
+	}
+
+	@Override
+	public Map<String, Map<String, List<String>>> getSourcesLinkage(String category) {
+		System.out.printf("Called getSourcesLinkage with category %s\n", category);
+		return null;
+	}
+
 	@Override
 	public List<SourceProductPage> getPagesLinkedWithSource2filtered(String category, String website2, String attribute1) {
 		System.out.printf("Called getProds with category %s and website2 %s and attribute1 %s\n",
@@ -83,7 +98,7 @@ public class AlignmentDaoMock implements AlignmentDao {
 		List<Entry<Specifications, SourceProductPage>> results = new LinkedList<>();
 		for (SourceProductPage spp : cList1) {
 			for (String url : spp.getLinkage()) {
-				if (url.contains(website2)) {
+				if (website2.equals(UrlUtils.getDomain(url))) {
 					SourceProductPage spp_link = new SourceProductPage(spp.getSource().getCategory(), url, website2);
 					spp_link.addAttributeValue(attribute2, String.valueOf(val));
 					results.add(new AbstractMap.SimpleEntry<>(spp.getSpecifications(), spp_link));
@@ -100,4 +115,10 @@ public class AlignmentDaoMock implements AlignmentDao {
 		return null;
 	}
 
+	@Override
+	public Map<String, SourceProductPage> getPagesFromUrls(Collection<String> urls) {
+		System.out.printf("Called getPagesFromUrls with urls %s\n", urls);
+		return new HashMap<>();
+	}
+
 }
@@ -0,0 +1,117 @@
+package connectors.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+import model.AbstractProductPage.Specifications;
+import model.SourceProductPage;
+
+/**
+ * Test on the {@link CachingAlignmentDao} class
+ *
+ */
+public class CachingAlignmentDaoTest {
+
+	/**
+	 * Counts the calls to the cached methods
+	 */
+	private static class CountingDao extends AlignmentDaoMock {
+		private List<String> calls = new ArrayList<>();
+		private Map<String, SourceProductPage> pages = new HashMap<>();
+
+		@Override
+		public List<SourceProductPage> getPagesLinkedWithSource2filtered(String category, String website2,
+				String attribute1) {
+			this.calls.add("linked " + website2 + " " + attribute1);
+			return super.getPagesLinkedWithSource2filtered(category, website2, attribute1);
+		}
+
+		@Override
+		public List<Entry<Specifications, SourceProductPage>> getPairsOfPagesInLinkage(
+				List<SourceProductPage> cList1, String website2, String attribute2) {
+			this.calls.add("pairs " + cList1.size() + " " + website2 + " " + attribute2);
+			return super.getPairsOfPagesInLinkage(cList1, website2, attribute2);
+		}
+
+		@Override
+		public Map<String, SourceProductPage> getPagesFromUrls(Collection<String> urls) {
+			this.calls.add("urls " + urls);
+			Map<String, SourceProductPage> found = new HashMap<>();
+			for (String url : urls)
+				if (this.pages.containsKey(url))
+					found.put(url, this.pages.get(url));
+			return found;
+		}
+	}
+
+	@Test
+	public void testRepeatedQueriesAreCached() {
+		CountingDao dao = new CountingDao();
+		CachingAlignmentDao cache = new CachingAlignmentDao(dao, 10, 100);
+		List<SourceProductPage> pages = cache.getPagesLinkedWithSource2filtered("camera", "b.com", "brand");
+		assertEquals(pages, cache.getPagesLinkedWithSource2filtered("camera", "b.com", "brand"));
+		cache.getPagesLinkedWithSource2filtered("camera", "c.com", "brand");
+
+		List<Entry<Specifications, SourceProductPage>> pairs = cache.getPairsOfPagesInLinkage(pages, "b.com", "marca");
+		assertEquals(pairs, cache.getPairsOfPagesInLinkage(new ArrayList<>(pages), "b.com", "marca"));
+		cache.getPairsOfPagesInLinkage(pages.subList(0, 2), "b.com", "marca");
+
+		assertEquals(Arrays.asList("linked b.com brand", "linked c.com brand", "pairs 5 b.com marca",
+				"pairs 2 b.com marca"), dao.calls);
+		assertEquals(2, cache.getHits());
+		assertEquals(4, cache.getMisses());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedQueryIsEvicted() {
+		CountingDao dao = new CountingDao();
+		CachingAlignmentDao cache = new CachingAlignmentDao(dao, 2, 100);
+		cache.getPagesLinkedWithSource2filtered("camera", "a.com", "brand");
+		cache.getPagesLinkedWithSource2filtered("camera", "b.com", "brand");
+		cache.getPagesLinkedWithSource2filtered("camera", "a.com", "brand");
+		cache.getPagesLinkedWithSource2filtered("camera", "c.com", "brand");
+		cache.getPagesLinkedWithSource2filtered("camera", "a.com", "brand");
+		cache.getPagesLinkedWithSource2filtered("camera", "b.com", "brand");
+		assertEquals(Arrays.asList("linked a.com brand", "linked b.com brand", "linked c.com brand",
+				"linked b.com brand"), dao.calls);
+	}
+
+	@Test
+	public void testPagesAreCachedByUrl() {
+		CountingDao dao = new CountingDao();
+		SourceProductPage page = new SourceProductPage("camera", "a.com/1", "a.com");
+		dao.pages.put(page.getUrl(), page);
+		CachingAlignmentDao cache = new CachingAlignmentDao(dao, 10, 100);
+
+		Map<String, SourceProductPage> found = cache.getPagesFromUrls(Arrays.asList("a.com/1", "a.com/2"));
+		assertEquals(1, found.size());
+		assertSame(page, found.get("a.com/1"));
+		// both the existing and the missing url are remembered
+		assertSame(page, cache.getPageFromUrlIfExistsInDataset("a.com/1"));
+		assertNull(cache.getPageFromUrlIfExistsInDataset("a.com/2"));
+		found = cache.getPagesFromUrls(Arrays.asList("a.com/1", "a.com/2", "a.com/3"));
+		assertEquals(1, found.size());
+		assertEquals(Arrays.asList("urls [a.com/1, a.com/2]", "urls [a.com/3]"), dao.calls);
+	}
+
+	@Test
+	public void testLinkedPagesAreCachedByUrl() {
+		CountingDao dao = new CountingDao();
+		CachingAlignmentDao cache = new CachingAlignmentDao(dao, 10, 100);
+		List<SourceProductPage> pages = cache.getPagesLinkedWithSource2filtered("camera", "b.com", "brand");
+		SourceProductPage page = pages.get(0);
+		assertSame(page, cache.getPagesFromUrls(Arrays.asList(page.getUrl())).get(page.getUrl()));
+		assertEquals(Arrays.asList("linked b.com brand"), dao.calls);
+	}
+}
@@ -0,0 +1,177 @@
+package connectors.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.AbstractProductPage.Specifications;
+import model.CatalogueProductPage;
+import model.Source;
+import model.SourceProductPage;
+
+/**
+ * Test on the {@link FileAlignmentDao} class
+ *
+ */
+public class FileAlignmentDaoTest {
+
+	private Path directory;
+	private FileAlignmentDao dao;
+
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("filedao");
+		this.dao = new FileAlignmentDao(this.directory);
+		this.dao.uploadSource(Arrays.asList(page("camera", "a.com", 0, "brand", "b.com/0", "c.com/0"),
+				page("camera", "a.com", 1, "brand", "b.com/1", "a.com/0"),
+				page("camera", "a.com", 2, null, "b.com/2"), page("camera", "b.com", 0, "marca", "a.com/0"),
+				page("camera", "b.com", 1, null, "a.com/1"), page("camera", "c.com", 0, "maker"),
+				// wrong category
+				page("tv", "b.com", 5, "marca", "a.com/1")));
+		this.dao.finalizeSourceUpload();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(this.directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	/**
+	 * @param attribute
+	 *            null for a page without attributes
+	 */
+	private static SourceProductPage page(String category, String website, int number, String attribute,
+			String... linkage) {
+		SourceProductPage page = new SourceProductPage(category, website + "/" + number, website);
+		page.setIds(Arrays.asList(number));
+		page.setLinkage(Arrays.asList(linkage));
+		if (attribute != null)
+			page.addAttributeValue(attribute, attribute + number);
+		return page;
+	}
+
+	private static List<String> urls(List<SourceProductPage> pages) {
+		return pages.stream().map(SourceProductPage::getUrl).collect(Collectors.toList());
+	}
+
+	@Test
+	public void testProdsInRL() {
+		Map<String, List<String>> rendered = new TreeMap<>();
+		this.dao.getProdsInRL(Arrays.asList("a.com"), "camera")
+				.forEach((page, catalog) -> rendered.put(page.getUrl(), urls(catalog)));
+		Map<String, List<String>> expected = new TreeMap<>();
+		// a.com/0 and a.com/1 are in linkage
+		expected.put("b.com/0", Arrays.asList("a.com/0", "a.com/1"));
+		expected.put("c.com/0", Arrays.asList("a.com/0", "a.com/1"));
+		assertEquals(expected, rendered);
+	}
+
+	@Test
+	public void testLinkedPagesAndPairs() {
+		List<SourceProductPage> prods = this.dao.getPagesLinkedWithSource2filtered("camera", "b.com", "brand");
+		assertEquals(Arrays.asList("a.com/0", "a.com/1"), urls(prods));
+		assertEquals(Arrays.asList("a.com/1"),
+				urls(this.dao.getPagesLinkedWithSource2filtered("camera", "a.com", "brand")));
+
+		// b.com/1 has no attributes
+		List<Entry<Specifications, SourceProductPage>> pairs = this.dao.getPairsOfPagesInLinkage(prods, "b.com",
+				"marca");
+		assertEquals(1, pairs.size());
+		assertEquals(prods.get(0).getSpecifications(), pairs.get(0).getKey());
+		assertEquals("b.com/0", pairs.get(0).getValue().getUrl());
+		assertEquals("marca0", pairs.get(0).getValue().getSpecifications().get("marca"));
+	}
+
+	/**
+	 * Linked pages of a website are those whose url has the website as domain,
+	 * not just containing it
+	 */
+	@Test
+	public void testLinkedWebsiteIsTheDomain() {
+		FileAlignmentDao other = new FileAlignmentDao(this.directory.resolve("other"));
+		other.uploadSource(Arrays.asList(page("camera", "a.com", 0, "brand", "b.com/0", "ab.com/0"),
+				page("camera", "a.com", 1, "brand", "ab.com/1"), page("camera", "b.com", 0, "marca", "a.com/0"),
+				page("camera", "ab.com", 0, "marca", "a.com/0"), page("camera", "ab.com", 1, "marca", "a.com/1")));
+		other.finalizeSourceUpload();
+
+		List<SourceProductPage> prods = other.getPagesLinkedWithSource2filtered("camera", "b.com", "brand");
+		assertEquals(Arrays.asList("a.com/0"), urls(prods));
+		List<Entry<Specifications, SourceProductPage>> pairs = other.getPairsOfPagesInLinkage(prods, "b.com",
+				"marca");
+		assertEquals(1, pairs.size());
+		assertEquals("b.com/0", pairs.get(0).getValue().getUrl());
+	}
+
+	@Test
+	public void testPagesFromUrls() {
+		assertEquals("brand0", this.dao.getPageFromUrlIfExistsInDataset("a.com/0").getSpecifications().get("brand"));
+		// without attributes, without linkage, not in the dataset
+		assertNull(this.dao.getPageFromUrlIfExistsInDataset("a.com/2"));
+		assertNull(this.dao.getPageFromUrlIfExistsInDataset("c.com/0"));
+		assertNull(this.dao.getPageFromUrlIfExistsInDataset("d.com/0"));
+		assertEquals(new HashSet<>(Arrays.asList("a.com/0", "b.com/0")), this.dao
+				.getPagesFromUrls(Arrays.asList("a.com/0", "a.com/2", "b.com/0", "a.com/0")).keySet());
+	}
+
+	@Test
+	public void testSchemasAndSources() {
+		Map<Source, List<String>> schemas = this.dao.getSchemas(Arrays.asList("camera"));
+		assertEquals(3, schemas.size());
+		assertEquals(Arrays.asList("brand"), schemas.get(new Source("camera", "a.com")));
+		assertEquals(Arrays.asList("marca"), this.dao.getSingleSchema(new Source("camera", "b.com")));
+		// a.com/2 has no attributes
+		assertEquals(Arrays.asList("a.com/0", "a.com/1"),
+				urls(this.dao.getPagesOfSource(new Source("camera", "a.com"))));
+
+		Map<String, Map<String, List<String>>> linkage = this.dao.getSourcesLinkage("camera");
+		assertEquals(new HashSet<>(Arrays.asList("a.com", "b.com")), linkage.keySet());
+		assertEquals(Arrays.asList("a.com/0"), linkage.get("b.com").get("b.com/0"));
+	}
+
+	@Test
+	public void testSample() {
+		List<SourceProductPage> sample = this.dao.getSamplePagesFromCategory(2, "camera");
+		Set<String> sampleable = new HashSet<>(Arrays.asList("a.com/0", "a.com/1", "b.com/0"));
+		assertEquals(2, new HashSet<>(urls(sample)).size());
+		assertTrue(sampleable.containsAll(urls(sample)));
+		assertEquals(sampleable, new HashSet<>(urls(this.dao.getSamplePagesFromCategory(10, "camera"))));
+		assertEquals(4, this.dao.getSamplePagesFromCategory(10, "all").size());
+	}
+
+	@Test
+	public void testDatasetIsReopened() {
+		CatalogueProductPage product = new CatalogueProductPage(7, "camera");
+		product.addAttributeValue("brand", "canon");
+		this.dao.uploadCatalogue(Arrays.asList(product, new CatalogueProductPage(8, "camera")), true);
+
+		FileAlignmentDao reopened = new FileAlignmentDao(this.directory);
+		List<CatalogueProductPage> products = reopened.getCatalogueProductsWithIds(Arrays.asList(7, 9));
+		assertEquals(1, products.size());
+		assertEquals("canon", products.get(0).getSpecifications().get("brand"));
+		assertEquals(Arrays.asList("a.com/0", "a.com/1"),
+				urls(reopened.getPagesLinkedWithSource2filtered("camera", "b.com", "brand")));
+
+		reopened.deleteAllSourceProductPages();
+		assertTrue(reopened.getSchemas(Arrays.asList("camera")).isEmpty());
+	}
+}
@@ -0,0 +1,146 @@
+package connectors.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.SourceProductPage;
+
+/**
+ * Test on the {@link PageStore} class
+ *
+ */
+public class PageStoreTest {
+
+	/** smaller than a page, so that pages are split between mapped regions */
+	private static final int SEGMENT_SIZE = 64;
+
+	private Path directory;
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("pagestore");
+		this.file = this.directory.resolve("pages.dat");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(this.directory)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private static SourceProductPage page(String website, int number, String... linkage) {
+		SourceProductPage page = new SourceProductPage("camera", website + "/" + number, website);
+		page.setIds(Arrays.asList(number));
+		page.setLinkage(Arrays.asList(linkage));
+		if (number % 2 == 0)
+			page.addAttributeValue("brand", "bränd " + number);
+		return page;
+	}
+
+	private static void assertSamePage(SourceProductPage expected, SourceProductPage actual) {
+		assertEquals(expected.getUrl(), actual.getUrl());
+		assertEquals(expected.getSource().toString(), actual.getSource().toString());
+		assertEquals(expected.getIds(), actual.getIds());
+		assertEquals(expected.getLinkage(), actual.getLinkage());
+		assertEquals(expected.getSpecifications(), actual.getSpecifications());
+	}
+
+	@Test
+	public void testPagesAcrossSegments() throws IOException {
+		try (PageStore store = new PageStore(this.file, SEGMENT_SIZE)) {
+			for (int i = 0; i < 50; i++)
+				assertEquals(i, store.append(page("a.com", i, "b.com/" + i)));
+			// read before and after the flush
+			assertSamePage(page("a.com", 3, "b.com/3"), store.getPage(3));
+			store.flush();
+			for (int i = 0; i < 50; i++)
+				assertSamePage(page("a.com", i, "b.com/" + i), store.getPage(i));
+		}
+	}
+
+	@Test
+	public void testIndexes() throws IOException {
+		try (PageStore store = new PageStore(this.file, SEGMENT_SIZE)) {
+			store.append(page("a.com", 0, "b.com/0", "c.com/0"));
+			store.append(page("a.com", 1, "b.com/1"));
+			store.append(page("b.com", 0));
+			store.append(page("a.com", 0, "c.com/0"));
+
+			assertArrayEquals(new int[] { 0, 3 }, store.getPagesWithUrl("a.com/0"));
+			assertArrayEquals(new int[0], store.getPagesWithUrl("a.com/2"));
+			assertArrayEquals(new int[] { 0, 1, 3 }, store.getPagesOfSource("camera", "a.com"));
+			assertEquals(Arrays.asList("a.com", "b.com"), store.getWebsites("camera"));
+			assertArrayEquals(new int[] { 0, 3 }, store.getSampleablePages("camera"));
+			assertArrayEquals(new int[] { 0, 3 }, store.getSampleablePages(null));
+			assertArrayEquals(new int[] { 0, 2, 3 }, store.getPagesWithSpecKey("camera", "brand"));
+			assertArrayEquals(new int[] { 0, 1 }, store.getPagesLinkedWithWebsite("camera", "b.com"));
+			assertEquals(Collections.singleton("brand"), store.getSchemas().get("camera").get("b.com"));
+			assertTrue(store.hasSpecs(2));
+			assertFalse(store.hasLinkage(2));
+			assertFalse(store.hasSpecs(1));
+		}
+	}
+
+	@Test
+	public void testIndexesAreRebuiltWhenReopened() throws IOException {
+		try (PageStore store = new PageStore(this.file, SEGMENT_SIZE)) {
+			for (int i = 0; i < 3000; i++)
+				store.append(page("a.com", i, "b.com/" + i));
+			store.flush();
+		}
+		try (PageStore store = new PageStore(this.file, SEGMENT_SIZE)) {
+			assertEquals(3000, store.size());
+			assertArrayEquals(new int[] { 2999 }, store.getPagesWithUrl("a.com/2999"));
+			assertSamePage(page("a.com", 1234, "b.com/1234"), store.getPage(1234));
+			assertEquals(1500, store.getSampleablePages("camera").length);
+			assertEquals(3000, store.append(page("c.com", 1)));
+		}
+	}
+
+	@Test
+	public void testIncompletePageIsDiscarded() throws IOException {
+		try (PageStore store = new PageStore(this.file)) {
+			store.append(page("a.com", 0));
+			store.append(page("a.com", 1));
+			store.flush();
+		}
+		try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+		try (PageStore store = new PageStore(this.file)) {
+			assertEquals(1, store.size());
+			assertEquals(1, store.append(page("a.com", 1)));
+			assertSamePage(page("a.com", 1), store.getPage(1));
+		}
+	}
+
+	@Test
+	public void testClear() throws IOException {
+		try (PageStore store = new PageStore(this.file)) {
+			store.append(page("a.com", 0, "b.com/0"));
+			store.clear();
+			assertEquals(0, store.size());
+			assertArrayEquals(new int[0], store.getPagesWithUrl("a.com/0"));
+			assertEquals(0, store.append(page("a.com", 2)));
+			assertSamePage(page("a.com", 2), store.getPage(0));
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package matcher;
+
+import static org.junit.Assert.assertEquals;
+import static testutils.TestUtils.entry;
+import static testutils.TestUtils.spec;
+import static testutils.TestUtils.spp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.AbstractProductPage.Specifications;
+import model.SourceProductPage;
+import models.matcher.AttributeDictionary;
+import models.matcher.BitmapPostingList;
+import models.matcher.InvertedIndexesManager;
+
+/**
+ * Test on the {@link CandidatePairsGenerator}s
+ *
+ */
+public class CandidatePairsGeneratorTest {
+
+	private List<Entry<Specifications, SourceProductPage>> linkedProds;
+	private AttributeDictionary dictionary;
+	private InvertedIndexesManager invIndexes;
+
+	@Before
+	public void setUp() {
+		this.linkedProds = Arrays.asList(
+				entry(spec(entry("brand", "Canon"), entry("weight", "300 g")),
+						spp("s1", entry("marca", "Canon"), entry("colore", "nero"))),
+				entry(spec(entry("brand", "Nikon"), entry("weight", "450 g")),
+						spp("s1", entry("marca", "Nikon"), entry("colore", "rosso"))));
+		this.dictionary = new AttributeDictionary();
+		Map<Integer, BitmapPostingList> catalog = new HashMap<>();
+		catalog.put(id("brand"), BitmapPostingList.of(0, 1));
+		catalog.put(id("weight"), BitmapPostingList.of(0, 1));
+		Map<Integer, BitmapPostingList> source = new HashMap<>();
+		source.put(id("marca"), BitmapPostingList.of(0, 1));
+		source.put(id("colore"), BitmapPostingList.of(0, 1));
+		this.invIndexes = new InvertedIndexesManager(this.dictionary);
+		this.invIndexes.setCatalogIndex(catalog);
+		this.invIndexes.setLinkedIndex(source);
+		this.invIndexes.setSourceIndex(source);
+	}
+
+	@Test
+	public void testAllKeepsEveryPair() {
+		CandidatePairsGenerator generator = new AllCandidatePairsGenerator();
+		Map<Integer, List<Integer>> candidates = generator.getCandidates(this.linkedProds, this.invIndexes);
+		assertEquals(2, candidates.get(id("marca")).size());
+		assertEquals(2, candidates.get(id("colore")).size());
+		assertEquals(0, generator.getPrunedPairs());
+		assertEquals(4, generator.getTotalPairs());
+	}
+
+	@Test
+	public void testTokensPrunesPairsWithoutSharedTokens() {
+		CandidatePairsGenerator generator = new TokenCandidatePairsGenerator(1);
+		Map<Integer, List<Integer>> candidates = generator.getCandidates(this.linkedProds, this.invIndexes);
+		assertEquals(Arrays.asList(id("brand")), candidates.get(id("marca")));
+		assertEquals(Arrays.asList(), candidates.get(id("colore")));
+		assertEquals(3, generator.getPrunedPairs());
+		assertEquals(4, generator.getTotalPairs());
+	}
+
+	@Test
+	public void testTokensThreshold() {
+		CandidatePairsGenerator generator = new TokenCandidatePairsGenerator(3);
+		Map<Integer, List<Integer>> candidates = generator.getCandidates(this.linkedProds, this.invIndexes);
+		assertEquals(Arrays.asList(), candidates.get(id("marca")));
+	}
+
+	@Test
+	public void testEmptyTokensAreNotShared() {
+		// separators at the end of the values of both attributes
+		this.linkedProds = Arrays.asList(
+				entry(spec(entry("brand", "Canon "), entry("weight", "300 g###")),
+						spp("s1", entry("marca", "Canon"), entry("colore", " nero"))),
+				entry(spec(entry("brand", "Nikon"), entry("weight", "450 g")),
+						spp("s1", entry("marca", "Nikon"), entry("colore", "rosso###"))));
+		CandidatePairsGenerator generator = new TokenCandidatePairsGenerator(1);
+		Map<Integer, List<Integer>> candidates = generator.getCandidates(this.linkedProds, this.invIndexes);
+		assertEquals(Arrays.asList(id("brand")), candidates.get(id("marca")));
+		assertEquals(Arrays.asList(), candidates.get(id("colore")));
+	}
+
+	@Test
+	public void testMinHashKeepsIdenticalValueSets() {
+		CandidatePairsGenerator generator = new MinHashCandidatePairsGenerator(16, 2, 1);
+		Map<Integer, List<Integer>> candidates = generator.getCandidates(this.linkedProds, this.invIndexes);
+		assertEquals(Arrays.asList(id("brand")), candidates.get(id("marca")));
+		assertEquals(Arrays.asList(), candidates.get(id("colore")));
+		assertEquals(3, generator.getPrunedPairs());
+	}
+
+	private int id(String attribute) {
+		return this.dictionary.getId(attribute);
+	}
+}
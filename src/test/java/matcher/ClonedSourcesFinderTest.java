@@ -0,0 +1,155 @@
+package matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.Source;
+
+/**
+ * Test on the {@link ClonedSourcesFinder} class
+ *
+ */
+public class ClonedSourcesFinderTest {
+
+	@Test
+	public void testClonesInBothDirectionsAndSameCategory() {
+		Map<Source, List<String>> schemas = new LinkedHashMap<>();
+		Source a = new Source("camera", "a.com");
+		Source b = new Source("camera", "b.com");
+		Source c = new Source("camera", "c.com");
+		Source d = new Source("tv", "d.com");
+		schemas.put(a, Arrays.asList("brand", "weight", "color", "price"));
+		schemas.put(b, Arrays.asList("brand", "weight", "zoom"));
+		schemas.put(c, Arrays.asList("sensor", "iso", "lens", "brand"));
+		schemas.put(d, Arrays.asList("brand", "weight", "color", "price"));
+
+		Map<Source, List<Source>> clones = new ClonedSourcesFinder().findClonedSources(schemas);
+		Map<Source, List<Source>> expected = new LinkedHashMap<>();
+		expected.put(a, Arrays.asList(b));
+		expected.put(b, Arrays.asList(a));
+		assertEquals(expected, clones);
+	}
+
+	@Test
+	public void testSameClonesAsExhaustiveSearch() {
+		Random random = new Random(5);
+		Map<Source, List<String>> schemas = new LinkedHashMap<>();
+		for (int s = 0; s < 300; s++) {
+			List<String> attributes = new ArrayList<>();
+			for (int i = 5 + random.nextInt(10); i > 0; i--) {
+				String attribute = "a" + random.nextInt(40);
+				if (!attributes.contains(attribute))
+					attributes.add(attribute);
+			}
+			schemas.put(new Source("c" + random.nextInt(3), "s" + s + ".com"), attributes);
+		}
+
+		// with 1 row per band, pairs with a common attribute are almost always candidates
+		Map<Source, List<Source>> clones = new ClonedSourcesFinder(128, 1, 1, 4).findClonedSources(schemas);
+		assertEquals(exhaustiveSearch(schemas), clones);
+	}
+
+	/**
+	 * With 1 band of 8 rows all the pairs are too unbalanced for LSH, so all the
+	 * clones are found by prefix filtering
+	 */
+	@Test
+	public void testPrefixFilteringSameAsExhaustiveSearch() {
+		Random random = new Random(8);
+		Map<Source, List<String>> schemas = new LinkedHashMap<>();
+		for (int s = 0; s < 300; s++) {
+			List<String> attributes = new ArrayList<>();
+			for (int i = 1 + random.nextInt(30); i > 0; i--)
+				attributes.add("a" + random.nextInt(i % 2 == 0 ? 10 : 60));
+			schemas.put(new Source("c" + random.nextInt(3), "s" + s + ".com"), attributes);
+		}
+		schemas.put(new Source("c0", "empty.com"), Collections.emptyList());
+
+		Map<Source, List<Source>> expected = exhaustiveSearch(schemas);
+		for (long seed = 0; seed < 5; seed++)
+			assertEquals(expected, new ClonedSourcesFinder(1, 8, seed, 2).findClonedSources(schemas));
+	}
+
+	/**
+	 * Schemas of 10 attributes contained in schemas of 60 (Jaccard similarity
+	 * 1/6) are always found, whatever the seed of the hash functions
+	 */
+	@Test
+	public void testSubsetSchemasAreAlwaysFound() {
+		for (long seed = 0; seed < 50; seed++) {
+			Map<Source, List<String>> schemas = new LinkedHashMap<>();
+			Source small = new Source("camera", "small.com");
+			Source large = new Source("camera", "large.com");
+			List<String> attributes = new ArrayList<>();
+			for (int i = 0; i < 60; i++)
+				attributes.add("a" + seed + "_" + i);
+			schemas.put(small, attributes.subList(0, 10));
+			schemas.put(large, attributes);
+			assertEquals(Arrays.asList(large),
+					new ClonedSourcesFinder(16, 1, seed, 1).findClonedSources(schemas).get(small));
+		}
+	}
+
+	/**
+	 * Clones of very different sizes are all found, clones of similar sizes with
+	 * probability {@link ClonedSourcesFinder#MIN_RECALL}
+	 */
+	@Test
+	public void testRecallWithDifferentSizes() {
+		Random random = new Random(6);
+		List<String> vocabulary = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+			vocabulary.add("a" + i);
+		Map<Source, List<String>> schemas = new LinkedHashMap<>();
+		for (int s = 0; s < 300; s++) {
+			// subsets of a few "templates", of very different sizes
+			List<String> template = new ArrayList<>(
+					vocabulary.subList(10 * random.nextInt(4), 40 + 10 * random.nextInt(7)));
+			Collections.shuffle(template, random);
+			schemas.put(new Source("c" + random.nextInt(2), "s" + s + ".com"),
+					template.subList(0, 1 + random.nextInt(template.size())));
+		}
+
+		Map<Source, List<Source>> clones = new ClonedSourcesFinder().findClonedSources(schemas);
+		int expected = 0;
+		int found = 0;
+		for (Entry<Source, List<Source>> sourceClones : exhaustiveSearch(schemas).entrySet()) {
+			Source source = sourceClones.getKey();
+			for (Source clone : sourceClones.getValue()) {
+				expected++;
+				boolean isFound = clones.getOrDefault(source, Collections.emptyList()).contains(clone);
+				if (isFound)
+					found++;
+				int size1 = schemas.get(source).size();
+				int size2 = schemas.get(clone).size();
+				if (Math.min(size1, size2) * 3 <= Math.max(size1, size2))
+					assertTrue(source + " " + clone, isFound);
+			}
+		}
+		// no false clones
+		int total = clones.values().stream().mapToInt(List::size).sum();
+		assertEquals(found, total);
+		assertTrue(found + " of " + expected, found >= ClonedSourcesFinder.MIN_RECALL * expected);
+	}
+
+	private static Map<Source, List<Source>> exhaustiveSearch(Map<Source, List<String>> schemas) {
+		Map<Source, List<Source>> clones = new LinkedHashMap<>();
+		for (Source source1 : schemas.keySet())
+			for (Source source2 : schemas.keySet())
+				if (!source1.equals(source2) && source1.getCategory().equals(source2.getCategory())
+						&& ClonedSourcesFinder.areClones(schemas.get(source1), schemas.get(source2)))
+					clones.computeIfAbsent(source1, s -> new ArrayList<>()).add(source2);
+		return clones;
+	}
+}
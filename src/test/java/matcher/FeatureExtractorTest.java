@@ -8,12 +8,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Random;
 
 import org.junit.Test;
 
 import model.AbstractProductPage.Specifications;
 import model.SourceProductPage;
 import models.matcher.BagsOfWordsManager;
+import models.matcher.TokenCache;
 import testutils.TestUtils;
 
 /**
@@ -21,6 +23,7 @@ import testutils.TestUtils;
  * @author federico
  *
  */
+@SuppressWarnings("deprecation")
 public class FeatureExtractorTest {
 	
 	@Test
@@ -67,6 +70,29 @@ public class FeatureExtractorTest {
 		assertFeatures(docs, "a1", "a2", 0.0, 0.0, 0.0);
 	}
 
+	/**
+	 * Same features of the original String based implementation (the JSD
+	 * depends on the iteration order of its HashMaps), with a cache shared by
+	 * all the pairs as in a run
+	 */
+	@Test
+	public void testRandomPairsSameAsBaseline() {
+		Random random = new Random(11);
+		String[] words = TestUtils.randomWords(random, 500);
+		TokenCache cache = new TokenCache();
+		for (int t = 0; t < 300; t++) {
+			List<Entry<Specifications, SourceProductPage>> docs = TestUtils.randomLinkedPages(random, words);
+			List<List<String>> baselineBags = BaselineFeatureExtractor.getBagsOfWords("a1", "a2", docs);
+			BagsOfWordsManager bags = new BagsOfWordsManager("a1", "a2", docs, cache);
+			assertEquals(BaselineFeatureExtractor.getJSD(baselineBags.get(0), baselineBags.get(1)),
+					FeatureExtractor.getJSD(bags), 1e-12);
+			assertEquals(BaselineFeatureExtractor.getJC(baselineBags.get(0), baselineBags.get(1)),
+					FeatureExtractor.getJC(bags), 1e-12);
+			assertEquals(BaselineFeatureExtractor.getMI(docs, "a1", "a2"), FeatureExtractor.getMI(docs, "a1", "a2", cache),
+					1e-12);
+		}
+	}
+
 	/**
 	 * Compute all features and compare with expected
 	 * @param docs
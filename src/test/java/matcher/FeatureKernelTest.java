@@ -0,0 +1,129 @@
+package matcher;
+
+import static org.junit.Assert.assertEquals;
+import static testutils.TestUtils.entry;
+import static testutils.TestUtils.spec;
+import static testutils.TestUtils.spp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.AbstractProductPage.Specifications;
+import model.SourceProductPage;
+import models.matcher.BagsOfWordsManager;
+import models.matcher.TokenCache;
+import testutils.TestUtils;
+
+/**
+ * Test on the {@link FeatureKernel} class, against {@link FeatureExtractor} and
+ * the original implementation of the features
+ *
+ */
+@SuppressWarnings("deprecation")
+public class FeatureKernelTest {
+
+	private static final double DELTA = 1e-12;
+
+	@Test
+	public void testComplex() {
+		List<Entry<Specifications, SourceProductPage>> docs = Arrays.asList(
+				entry(spec(entry("a1", "A")), spp(entry("a2", "A"))),
+				entry(spec(entry("a1", "A")), spp(entry("a2", "B"))),
+				entry(spec(entry("a1", "C")), spp(entry("a2", "C"))),
+				entry(spec(entry("a1", "C")), spp(entry("a2", "D"))),
+				entry(spec(entry("a1", "E")), spp(entry("a2", "E"))),
+				entry(spec(entry("a1", "E###F")), spp(entry("a2", "F"))));
+		FeatureKernel kernel = new FeatureKernel();
+		kernel.compute(docs, "a1", "a2", new TokenCache(), true);
+		assertEquals(1.664, kernel.getMI(), 0.001);
+		assertEquals(0.667, kernel.getJC(), 0.001);
+		assertEquals(0.198, kernel.getJSD(), 0.001);
+		assertSameFeatures(kernel, docs, new TokenCache());
+	}
+
+	@Test
+	public void testWithoutMI() {
+		List<Entry<Specifications, SourceProductPage>> docs = Arrays.asList(
+				entry(spec(entry("a1", "16 GB")), spp(entry("a2", "16GB"))),
+				entry(spec(entry("a1", "32 GB")), spp(entry("a2", "32 GB"))));
+		FeatureKernel kernel = new FeatureKernel();
+		kernel.compute(docs, "a1", "a2", new TokenCache(), false);
+		assertEquals(0.0, kernel.getMI(), 0.0);
+		assertEquals(0.5, kernel.getJC(), DELTA);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyDocuments() {
+		new FeatureKernel().compute(new ArrayList<>(), "a1", "a2", new TokenCache(), true);
+	}
+
+	/**
+	 * Random pairs of pages, computed with the same kernel (buffers are reused)
+	 * and a shared cache, as in a run
+	 */
+	@Test
+	public void testRandomPairsSameAsBaseline() {
+		Random random = new Random(7);
+		String[] words = TestUtils.randomWords(random, 500);
+		FeatureKernel kernel = new FeatureKernel();
+		TokenCache cache = new TokenCache();
+		for (int t = 0; t < 300; t++)
+			assertSameFeatures(kernel, TestUtils.randomLinkedPages(random, words), cache);
+	}
+
+	/**
+	 * Words with the same hash code ("Aa" and "BB" collide) end up in a bin of the
+	 * HashSet of the original JSD that is turned into a tree, and reordered. Half
+	 * of them are only in the catalog and half only in the source, with different
+	 * counts, so that their order changes the normalization of the JSD.
+	 */
+	@Test
+	public void testCollidingWordsSameAsBaseline() {
+		List<String> colliding = new ArrayList<>(Arrays.asList(""));
+		for (int i = 0; i < 4; i++) {
+			List<String> longer = new ArrayList<>();
+			for (String word : colliding) {
+				longer.add(word + "Aa");
+				longer.add(word + "BB");
+			}
+			colliding = longer;
+		}
+		List<Entry<Specifications, SourceProductPage>> docs = new ArrayList<>();
+		for (int i = 0; i < colliding.size(); i += 2) {
+			String value1 = colliding.get(i) + " x" + i;
+			String value2 = colliding.get(i + 1) + " x" + i;
+			for (int j = 0; j < i % 3; j++) {
+				value1 += " " + colliding.get(i);
+				value2 += " " + colliding.get(i + 1) + " " + colliding.get(i + 1);
+			}
+			docs.add(entry(spec(entry("a1", value1)), spp(entry("a2", value2))));
+		}
+		assertSameFeatures(new FeatureKernel(), docs, new TokenCache());
+	}
+
+	/**
+	 * The kernel and {@link FeatureExtractor} compute the same features of the
+	 * original implementation ({@link BaselineFeatureExtractor})
+	 */
+	private void assertSameFeatures(FeatureKernel kernel, List<Entry<Specifications, SourceProductPage>> docs,
+			TokenCache cache) {
+		kernel.compute(docs, "a1", "a2", cache, true);
+		BagsOfWordsManager bags = new BagsOfWordsManager("a1", "a2", docs, cache);
+		List<List<String>> baselineBags = BaselineFeatureExtractor.getBagsOfWords("a1", "a2", docs);
+
+		double jsd = BaselineFeatureExtractor.getJSD(baselineBags.get(0), baselineBags.get(1));
+		assertEquals(jsd, kernel.getJSD(), DELTA);
+		assertEquals(jsd, FeatureExtractor.getJSD(bags), DELTA);
+		double jc = BaselineFeatureExtractor.getJC(baselineBags.get(0), baselineBags.get(1));
+		assertEquals(jc, kernel.getJC(), DELTA);
+		assertEquals(jc, FeatureExtractor.getJC(bags), DELTA);
+		double mi = BaselineFeatureExtractor.getMI(docs, "a1", "a2");
+		assertEquals(mi, kernel.getMI(), DELTA);
+		assertEquals(mi, FeatureExtractor.getMI(docs, "a1", "a2", cache), DELTA);
+	}
+}
@@ -0,0 +1,94 @@
+package matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import connectors.dao.AlignmentDaoMock;
+import model.Source;
+import model.SourceProductPage;
+
+/**
+ * Test on the {@link IncrementalCatalog} class
+ *
+ */
+public class IncrementalCatalogTest {
+
+	/**
+	 * Pages in memory, counting the fetches of each website
+	 */
+	private static class PagesDao extends AlignmentDaoMock {
+		private Map<String, List<SourceProductPage>> pages = new HashMap<>();
+		private List<String> fetched = new ArrayList<>();
+
+		private SourceProductPage addPage(String website, int number, String... linkage) {
+			SourceProductPage page = new SourceProductPage("camera", buildUrl(website, number), website);
+			page.addAttributeValue("brand", "canon");
+			page.setLinkage(new ArrayList<>(Arrays.asList(linkage)));
+			this.pages.computeIfAbsent(website, w -> new ArrayList<>()).add(page);
+			return page;
+		}
+
+		@Override
+		public List<SourceProductPage> getPagesOfSource(Source source) {
+			this.fetched.add(source.getWebsite());
+			return this.pages.getOrDefault(source.getWebsite(), new ArrayList<>());
+		}
+	}
+
+	@Test
+	public void testCatalogIsFetchedOnce() {
+		PagesDao dao = new PagesDao();
+		SourceProductPage catalog1 = dao.addPage("a.com", 1, "b.com/1", "c.com/1");
+		SourceProductPage catalog2 = dao.addPage("a.com", 2, "b.com/2");
+		SourceProductPage linked1 = dao.addPage("b.com", 1);
+		SourceProductPage linked2 = dao.addPage("b.com", 2, "a.com/2");
+		dao.addPage("b.com", 3, "a.com/1");
+		SourceProductPage linkedC = dao.addPage("c.com", 1);
+
+		IncrementalCatalog catalog = new IncrementalCatalog(dao, "camera");
+		Map<SourceProductPage, List<SourceProductPage>> linkage = catalog.getProdsInRL(Arrays.asList("a.com"), "b.com");
+		assertEquals(Arrays.asList(linked1, linked2), new ArrayList<>(linkage.keySet()));
+		assertEquals(Arrays.asList(catalog1), linkage.get(linked1));
+		assertEquals(Arrays.asList(catalog2), linkage.get(linked2));
+
+		linkage = catalog.getProdsInRL(Arrays.asList("a.com"), "c.com");
+		assertEquals(Arrays.asList(catalog1), linkage.get(linkedC));
+		assertEquals(Arrays.asList("a.com", "b.com", "c.com"), dao.fetched);
+		assertEquals(2, catalog.getCatalogSize());
+	}
+
+	@Test
+	public void testLinkageInsideCatalog() {
+		PagesDao dao = new PagesDao();
+		SourceProductPage catalog1 = dao.addPage("a.com", 1, "c.com/1", "b.com/1");
+		SourceProductPage catalog2 = dao.addPage("b.com", 1);
+		SourceProductPage linked = dao.addPage("c.com", 1);
+
+		Map<SourceProductPage, List<SourceProductPage>> linkage = new IncrementalCatalog(dao, "camera")
+				.getProdsInRL(Arrays.asList("a.com", "b.com"), "c.com");
+		assertEquals(Arrays.asList(catalog1, catalog2), linkage.get(linked));
+	}
+
+	@Test
+	public void testCatalogGrows() {
+		PagesDao dao = new PagesDao();
+		dao.addPage("a.com", 1, "b.com/1");
+		SourceProductPage catalogB = dao.addPage("b.com", 1, "c.com/1");
+		SourceProductPage linked = dao.addPage("c.com", 1);
+
+		IncrementalCatalog catalog = new IncrementalCatalog(dao, "camera");
+		assertTrue(catalog.getProdsInRL(Arrays.asList("a.com"), "c.com").isEmpty());
+		Map<SourceProductPage, List<SourceProductPage>> linkage = catalog.getProdsInRL(Arrays.asList("a.com", "b.com"),
+				"c.com");
+		assertEquals(Arrays.asList(catalogB, dao.pages.get("a.com").get(0)), linkage.get(linked));
+		assertEquals(Arrays.asList("a.com", "c.com", "b.com", "c.com"), dao.fetched);
+	}
+}
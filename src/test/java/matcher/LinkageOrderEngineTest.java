@@ -0,0 +1,113 @@
+package matcher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Test on the {@link LinkageOrderEngine} class
+ *
+ */
+public class LinkageOrderEngineTest {
+
+	@Test
+	public void testOrder() {
+		LinkageOrderEngine<String> engine = new LinkageOrderEngine<>();
+		engine.addSource("catalog", new int[] { 1, 2, 3, 4 });
+		engine.addSource("unlinked", new int[] { 10, 11, 12 });
+		engine.addSource("small", new int[] { 1, 20 });
+		engine.addSource("big", new int[] { 2, 3, 30 });
+		engine.addSource("later", new int[] { 30, 20, 10 });
+		// small and later have 1 product in common with catalog + big, small was added first
+		assertEquals(Arrays.asList("catalog", "big", "small", "later", "unlinked"), engine.getLinkageOrder());
+	}
+
+	@Test
+	public void testTiesKeepOrderOfSources() {
+		LinkageOrderEngine<String> engine = new LinkageOrderEngine<>();
+		engine.addSource("catalog", new int[] { 1, 2 });
+		engine.addSource("a", new int[] { 5 });
+		engine.addSource("b", new int[] { 2 });
+		engine.addSource("c", new int[] { 1 });
+		engine.addSource("d", new int[] { 6 });
+		assertEquals(Arrays.asList("catalog", "b", "c", "a", "d"), engine.getLinkageOrder());
+	}
+
+	@Test
+	public void testFromLinkage() {
+		Map<String, Map<String, List<String>>> linkage = new HashMap<>();
+		linkage.put("a.com", new HashMap<>());
+		linkage.get("a.com").put("a.com/1", Arrays.asList("b.com/1", "c.com/1"));
+		linkage.get("a.com").put("a.com/2", Arrays.asList("b.com/2"));
+		linkage.get("a.com").put("a.com/3", Arrays.asList("missing.com/3"));
+		linkage.put("b.com", new HashMap<>());
+		linkage.get("b.com").put("b.com/1", Arrays.asList("a.com/1"));
+		linkage.get("b.com").put("b.com/2", Arrays.asList("a.com/2"));
+		linkage.put("c.com", new HashMap<>());
+		// linked to a.com/1 only through b.com/1
+		linkage.get("c.com").put("c.com/1", Arrays.asList("b.com/1"));
+		linkage.get("c.com").put("c.com/9", Arrays.asList("d.com/9"));
+		linkage.put("d.com", new HashMap<>());
+		linkage.get("d.com").put("d.com/9", Arrays.asList("c.com/9"));
+
+		assertEquals(Arrays.asList("a.com", "b.com", "c.com", "d.com"),
+				LinkageOrderEngine.fromLinkage(linkage).getLinkageOrder());
+	}
+
+	@Test
+	public void testSameOrderAsExhaustiveSearch() {
+		Random random = new Random(11);
+		for (int t = 0; t < 20; t++) {
+			int nSources = 1 + random.nextInt(60);
+			int nProducts = 1 + random.nextInt(300);
+			List<List<Integer>> sources = new ArrayList<>();
+			LinkageOrderEngine<Integer> engine = new LinkageOrderEngine<>();
+			for (int s = 0; s < nSources; s++) {
+				Set<Integer> products = new HashSet<>();
+				for (int i = random.nextInt(40); i > 0; i--)
+					products.add(random.nextInt(nProducts));
+				sources.add(new ArrayList<>(products));
+				engine.addSource(s, products.stream().mapToInt(Integer::intValue).toArray());
+			}
+			assertEquals(exhaustiveOrder(sources), engine.getLinkageOrder());
+		}
+	}
+
+	/**
+	 * At each step, linkage of every remaining source with the union of the
+	 * previous ones
+	 */
+	private static List<Integer> exhaustiveOrder(List<List<Integer>> sources) {
+		List<Integer> ordered = new ArrayList<>();
+		List<Integer> toVisit = new ArrayList<>();
+		for (int s = 1; s < sources.size(); s++)
+			toVisit.add(s);
+		ordered.add(0);
+		while (!toVisit.isEmpty()) {
+			Set<Integer> catalog = new HashSet<>();
+			for (int s : ordered)
+				catalog.addAll(sources.get(s));
+			int best = -1, maxLinkage = -1;
+			for (int s : toVisit) {
+				Set<Integer> common = new HashSet<>(sources.get(s));
+				common.retainAll(catalog);
+				if (common.size() > maxLinkage) {
+					best = s;
+					maxLinkage = common.size();
+				}
+			}
+			ordered.add(best);
+			toVisit.remove(Integer.valueOf(best));
+		}
+		return ordered;
+	}
+}
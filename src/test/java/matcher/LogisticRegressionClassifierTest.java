@@ -0,0 +1,79 @@
+package matcher;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import models.matcher.DataFrame;
+import models.matcher.Features;
+
+/**
+ * Test on the {@link LogisticRegressionClassifier} class
+ *
+ */
+public class LogisticRegressionClassifierTest {
+
+	@Test
+	public void testClassify() {
+		Map<String, Double> coefficients = coefficients();
+		LogisticRegressionClassifier classifier = new LogisticRegressionClassifier(coefficients);
+
+		DataFrame df = new DataFrame();
+		df.addRow(features(0, 0, 0, 0, 0, 0), "c1", "s1");
+		df.addRow(features(0.1, 0.2, 0.5, 0.4, 1.2, 0.9), "c2", "s1");
+		df.addRow(features(2, 2, 0, 0, 0, 0), "c1", "s2");
+
+		double z1 = -1.5 + 0.1 * -2 + 0.2 * -3 + 0.5 * 4 + 0.4 * 5 + 1.2 * 0.5 + 0.9 * 0.25;
+		double z2 = -1.5 + 2 * -2 + 2 * -3;
+		assertArrayEquals(new double[] { 1 / (1 + Math.exp(1.5)), 1 / (1 + Math.exp(-z1)), 1 / (1 + Math.exp(-z2)) },
+				classifier.classify(df), 1e-15);
+	}
+
+	@Test
+	public void testSigmoidExtremes() {
+		assertEquals(1.0, LogisticRegressionClassifier.sigmoid(1000), 0);
+		assertEquals(0.0, LogisticRegressionClassifier.sigmoid(-1000), 0);
+		assertEquals(0.5, LogisticRegressionClassifier.sigmoid(0), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingCoefficient() {
+		Map<String, Double> coefficients = coefficients();
+		coefficients.remove("MIc");
+		new LogisticRegressionClassifier(coefficients);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownCoefficient() {
+		Map<String, Double> coefficients = coefficients();
+		coefficients.put("Website1", 1.0);
+		new LogisticRegressionClassifier(coefficients);
+	}
+
+	private static Map<String, Double> coefficients() {
+		Map<String, Double> coefficients = new HashMap<>();
+		coefficients.put(LogisticRegressionClassifier.INTERCEPT, -1.5);
+		coefficients.put("JSDs", -2.0);
+		coefficients.put("JSDc", -3.0);
+		coefficients.put("JCs", 4.0);
+		coefficients.put("JCc", 5.0);
+		coefficients.put("MIs", 0.5);
+		coefficients.put("MIc", 0.25);
+		return coefficients;
+	}
+
+	private static Features features(double jsds, double jsdc, double jcs, double jcc, double mis, double mic) {
+		Features features = new Features();
+		features.setSourceJSD(jsds);
+		features.setCategoryJSD(jsdc);
+		features.setSourceJC(jcs);
+		features.setCategoryJC(jcc);
+		features.setSourceMI(mis);
+		features.setCategoryMI(mic);
+		return features;
+	}
+}
@@ -0,0 +1,148 @@
+package matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test on the {@link LogisticRegressionTrainer} class
+ *
+ */
+public class LogisticRegressionTrainerTest {
+
+	private static final double[] TRUE_BETA = { -1.0, -2.0, -1.0, 3.0, 2.0, 0.5, 0.0 };
+
+	@Test
+	public void testFitRecoversCoefficients() {
+		Random random = new Random(1);
+		double[][] x = new double[20000][];
+		double[] y = new double[x.length];
+		sample(random, x, y);
+
+		LogisticRegressionClassifier model = new LogisticRegressionTrainer(2, 0, 1, 0).train(x, y);
+		assertEquals(TRUE_BETA[0], model.getIntercept(), 0.15);
+		double[] coefficients = model.getCoefficients();
+		for (int f = 0; f < coefficients.length; f++)
+			assertEquals(TRUE_BETA[f + 1], coefficients[f], 0.15);
+	}
+
+	@Test
+	public void testFitIsMaximumLikelihood() {
+		Random random = new Random(2);
+		double[][] x = new double[500][];
+		double[] y = new double[x.length];
+		sample(random, x, y);
+		int[] rows = new int[x.length];
+		for (int i = 0; i < rows.length; i++)
+			rows[i] = i;
+
+		double[] beta = LogisticRegressionTrainer.fit(x, y, rows);
+		// score equations: X'(y - mu) = 0
+		double[] gradient = new double[beta.length];
+		for (int i = 0; i < x.length; i++) {
+			double residual = y[i] - LogisticRegressionClassifier.sigmoid(LogisticRegressionTrainer.linearPredictor(beta, x[i]));
+			gradient[0] += residual;
+			for (int f = 0; f < x[i].length; f++)
+				gradient[f + 1] += residual * x[i][f];
+		}
+		for (double g : gradient)
+			assertEquals(0, g, 1e-6);
+	}
+
+	@Test
+	public void testAliasedFeatureHasZeroCoefficient() {
+		Random random = new Random(3);
+		double[][] x = new double[1000][];
+		double[] y = new double[x.length];
+		sample(random, x, y);
+		// MI never computed
+		for (double[] row : x)
+			row[4] = row[5] = 0;
+
+		LogisticRegressionClassifier model = new LogisticRegressionTrainer(2, 0, 1, 0).train(x, y);
+		assertEquals(0.0, model.getCoefficients()[4], 0);
+		assertEquals(0.0, model.getCoefficients()[5], 0);
+	}
+
+	@Test
+	public void testCrossValidationIsParallelAndDeterministic() {
+		Random random = new Random(4);
+		List<String> rows = new ArrayList<>();
+		double[][] x = new double[400][];
+		double[] y = new double[x.length];
+		sample(random, x, y);
+		for (int i = 0; i < x.length; i++) {
+			StringBuilder row = new StringBuilder("a,b,w1,w2,category");
+			for (double value : x[i])
+				row.append(',').append(value);
+			rows.add(row.append(',').append(y[i]).toString());
+		}
+
+		LogisticRegressionTrainer sequential = new LogisticRegressionTrainer(10, 5, 1, 7);
+		LogisticRegressionTrainer parallel = new LogisticRegressionTrainer(10, 5, 4, 7);
+		LogisticRegressionClassifier model1 = sequential.train(rows);
+		LogisticRegressionClassifier model2 = parallel.train(rows);
+		assertEquals(sequential.getRocMean(), parallel.getRocMean(), 0);
+		assertEquals(sequential.getRocSD(), parallel.getRocSD(), 0);
+		assertEquals(model1.getIntercept(), model2.getIntercept(), 0);
+		assertTrue(sequential.getRocMean() > 0.8 && sequential.getRocMean() <= 1);
+	}
+
+	@Test
+	public void testFoldsWithOneClassAreSkipped() {
+		Random random = new Random(5);
+		double[][] x = new double[40][];
+		double[] y = new double[x.length];
+		sample(random, x, y);
+		// a single positive: only its fold has both classes
+		for (int i = 0; i < y.length; i++)
+			y[i] = i == 0 ? 1 : 0;
+		LogisticRegressionTrainer trainer = new LogisticRegressionTrainer(4, 1, 1, 7);
+		trainer.train(x, y);
+		assertFalse(Double.isNaN(trainer.getRocMean()));
+		assertTrue(Double.isNaN(trainer.getRocSD()));
+
+		// no positives: no fold has both classes
+		for (int i = 0; i < y.length; i++)
+			y[i] = 0;
+		trainer.train(x, y);
+		assertTrue(Double.isNaN(trainer.getRocMean()));
+		assertTrue(Double.isNaN(trainer.getRocSD()));
+	}
+
+	@Test
+	public void testAUC() {
+		assertEquals(1.0, LogisticRegressionTrainer.getAUC(new double[] { 0.1, 0.2, 0.8, 0.9 },
+				new double[] { 0, 0, 1, 1 }), 0);
+		assertEquals(0.0, LogisticRegressionTrainer.getAUC(new double[] { 0.1, 0.2, 0.8, 0.9 },
+				new double[] { 1, 1, 0, 0 }), 0);
+		assertEquals(0.5, LogisticRegressionTrainer.getAUC(new double[] { 0.5, 0.5, 0.5, 0.5 },
+				new double[] { 0, 1, 0, 1 }), 0);
+		assertEquals(0.75, LogisticRegressionTrainer.getAUC(new double[] { 0.1, 0.4, 0.35, 0.8 },
+				new double[] { 0, 0, 1, 1 }), 0);
+		assertTrue(Double.isNaN(LogisticRegressionTrainer.getAUC(new double[] { 0.1, 0.2 }, new double[] { 1, 1 })));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyTrainingSet() {
+		new LogisticRegressionTrainer().train(new ArrayList<>());
+	}
+
+	private static void sample(Random random, double[][] x, double[] y) {
+		for (int i = 0; i < x.length; i++) {
+			x[i] = new double[TRUE_BETA.length - 1];
+			double eta = TRUE_BETA[0];
+			for (int f = 0; f < x[i].length; f++) {
+				x[i][f] = random.nextDouble() * (f < 4 ? 1 : 3);
+				eta += TRUE_BETA[f + 1] * x[i][f];
+			}
+			y[i] = random.nextDouble() < LogisticRegressionClassifier.sigmoid(eta) ? 1 : 0;
+		}
+	}
+}
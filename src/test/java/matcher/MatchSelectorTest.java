@@ -0,0 +1,80 @@
+package matcher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import matcher.MatchSelector.SelectionType;
+import models.matcher.DataFrame;
+import models.matcher.Features;
+import models.matcher.Match;
+
+/**
+ * Test on the {@link MatchSelector} class
+ *
+ */
+public class MatchSelectorTest {
+
+	@Test
+	public void testDiscardsLowProbabilities() {
+		DataFrame df = frame("s1", "c1", "s2", "c2");
+		Match match = new MatchSelector().selectMatches(df, new double[] { 0.9, 0.4 });
+		assertMatches(match, "s1->c1");
+	}
+
+	@Test
+	public void testOneToOne() {
+		DataFrame df = frame("s1", "c1", "s1", "c2", "s2", "c1", "s2", "c2");
+		Match match = new MatchSelector().selectMatches(df, new double[] { 0.9, 0.8, 0.7, 0.6 });
+		assertMatches(match, "s1->c1", "s2->c2");
+	}
+
+	@Test
+	public void testTieOnCatalogAttributeLaterRowWins() {
+		DataFrame df = frame("s1", "c1", "s2", "c1");
+		Match match = new MatchSelector().selectMatches(df, new double[] { 0.8, 0.8 });
+		assertMatches(match, "s2->c1");
+	}
+
+	@Test
+	public void testTieOnSourceAttributeIsNotMatched() {
+		DataFrame df = frame("s1", "c1", "s1", "c2");
+		Match match = new MatchSelector().selectMatches(df, new double[] { 0.8, 0.8 });
+		assertMatches(match);
+	}
+
+	@Test
+	public void testTieOnSourceAttributeSolvedByOtherMatch() {
+		DataFrame df = frame("s1", "c1", "s1", "c2", "s1", "c3", "s2", "c1");
+		Match match = new MatchSelector().selectMatches(df, new double[] { 0.8, 0.8, 0.6, 0.9 });
+		assertMatches(match, "s2->c1", "s1->c2");
+	}
+
+	@Test
+	public void testOptimal() {
+		DataFrame df = frame("s1", "c1", "s1", "c2", "s2", "c1");
+		double[] predictions = new double[] { 0.9, 0.8, 0.85 };
+		assertMatches(new MatchSelector(SelectionType.GREEDY).selectMatches(df, predictions), "s1->c1");
+		assertMatches(new MatchSelector(SelectionType.OPTIMAL).selectMatches(df, predictions), "s2->c1", "s1->c2");
+		// too big for optimal selection
+		assertMatches(new MatchSelector(SelectionType.OPTIMAL, 1).selectMatches(df, predictions), "s1->c1");
+	}
+
+	private static DataFrame frame(String... attributes) {
+		DataFrame df = new DataFrame();
+		for (int i = 0; i < attributes.length; i += 2)
+			df.addRow(new Features(), attributes[i + 1], attributes[i]);
+		return df;
+	}
+
+	private static void assertMatches(Match match, String... expected) {
+		List<String[]> matched = match.getMatchedAttributes();
+		String[] actual = new String[matched.size()];
+		for (int i = 0; i < actual.length; i++)
+			actual[i] = matched.get(i)[0] + "->" + matched.get(i)[1];
+		assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+	}
+}
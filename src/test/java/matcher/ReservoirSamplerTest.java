@@ -0,0 +1,74 @@
+package matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test on the {@link ReservoirSampler} class
+ *
+ */
+public class ReservoirSamplerTest {
+
+	@Test
+	public void testFewerElementsThanSize() {
+		ReservoirSampler<String> sampler = new ReservoirSampler<>(3, new Random(1));
+		assertTrue(sampler.add("a"));
+		assertTrue(sampler.add("b"));
+		assertFalse(sampler.add("a"));
+		assertFalse(sampler.isFull());
+		assertEquals(2, sampler.getOffered());
+		assertEquals(Arrays.asList("a", "b"), sampler.getSample());
+	}
+
+	@Test
+	public void testSampleHasSizeAndDistinctElements() {
+		ReservoirSampler<Integer> sampler = new ReservoirSampler<>(10, new Random(1));
+		int added = 0;
+		for (int i = 0; i < 1000; i++)
+			if (sampler.add(i % 500))
+				added++;
+		assertTrue(sampler.isFull());
+		// only the duplicates of the sampled elements are skipped
+		assertEquals(added, sampler.getOffered());
+		assertTrue(added > 990);
+		assertEquals(10, sampler.getSample().size());
+		assertEquals(10, sampler.getSample().stream().distinct().count());
+	}
+
+	@Test
+	public void testDiscardedElementsAreOfferedAgain() {
+		ReservoirSampler<String> sampler = new ReservoirSampler<>(1, new Random(1));
+		assertTrue(sampler.add("a"));
+		assertFalse(sampler.add("a"));
+		assertTrue(sampler.add("b"));
+		String discarded = sampler.getSample().get(0).equals("a") ? "b" : "a";
+		assertTrue(sampler.add(discarded));
+		assertEquals(3, sampler.getOffered());
+		assertEquals(1, sampler.getSample().size());
+	}
+
+	/**
+	 * Each of 100 elements is in a sample of 10 with probability 0.1
+	 */
+	@Test
+	public void testSampleIsUniform() {
+		Random random = new Random(7);
+		int[] counts = new int[100];
+		for (int run = 0; run < 2000; run++) {
+			ReservoirSampler<Integer> sampler = new ReservoirSampler<>(10, random);
+			for (int i = 0; i < 100; i++)
+				sampler.add(i);
+			for (int i : sampler.getSample())
+				counts[i]++;
+		}
+		// expected 200 per element, standard deviation ~13.4
+		for (int count : counts)
+			assertTrue("count " + count, count > 140 && count < 260);
+	}
+}
@@ -126,6 +126,21 @@ public class TrainingSetGeneratorTest {
 		System.out.println(res);
 	}
 	
+	/**
+	 * Features computed in parallel, with limited DAO calls, are the same and
+	 * in the same order as the sequential ones
+	 */
+	@Test
+	public void testParallelTrainingSet() {
+		List<Features> sequential = new TrainingSetGenerator(new FeaturesBuilder(), dao, new HashMap<>())
+				.computeFeaturesOnTrainingSet(pExamples, nExamples, CATEGORY);
+		List<Features> parallel = new TrainingSetGenerator(new FeaturesBuilder(), dao, new HashMap<>(), 4, 2)
+				.computeFeaturesOnTrainingSet(pExamples, nExamples, CATEGORY);
+		// pairs without linked pages of w1 are skipped
+		Assert.assertEquals(3, parallel.size());
+		Assert.assertEquals(sequential.toString(), parallel.toString());
+	}
+
 	public List<Entry<Specifications, SourceProductPage>> fullCList(String a1, String a2, String website2) {
 		return Arrays.asList(
 				pair(spec(entry(a1, "0")), 0, website2, spec(entry(a2, "0"))),
@@ -0,0 +1,75 @@
+package models.matcher;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Test on {@link BitmapPostingList}
+ *
+ */
+public class BitmapPostingListTest {
+
+	@Test
+	public void testSparseLists() {
+		BitmapPostingList l1 = BitmapPostingList.of(1, 5, 9, 70000);
+		BitmapPostingList l2 = BitmapPostingList.of(2, 9, 70000, 140000);
+		assertTrue(l1.intersects(l2));
+		assertEquals(2, l1.andCardinality(l2));
+		assertArrayEquals(new int[] { 9, 70000 }, l1.and(l2).toArray());
+		assertFalse(l1.intersects(BitmapPostingList.of(2, 3, 140000)));
+		assertTrue(new BitmapPostingList().and(l1).isEmpty());
+	}
+
+	@Test
+	public void testUnorderedAndDuplicateInsertions() {
+		BitmapPostingList list = BitmapPostingList.of(10, 3, 10, 65536, 0, 3);
+		assertEquals(4, list.getCardinality());
+		assertArrayEquals(new int[] { 0, 3, 10, 65536 }, list.toArray());
+		assertTrue(list.contains(65536));
+		assertFalse(list.contains(65537));
+	}
+
+	/**
+	 * Compare with a plain set, with enough values to use both sparse and dense
+	 * containers
+	 */
+	@Test
+	public void testRandomListsAgainstSets() {
+		Random random = new Random(42);
+		for (int test = 0; test < 20; test++) {
+			TreeSet<Integer> s1 = new TreeSet<>();
+			TreeSet<Integer> s2 = new TreeSet<>();
+			BitmapPostingList l1 = new BitmapPostingList();
+			BitmapPostingList l2 = new BitmapPostingList();
+			int range = 1 + random.nextInt(300000);
+			int size1 = random.nextInt(20000);
+			int size2 = random.nextInt(20000);
+			for (int i = 0; i < size1; i++) {
+				int value = random.nextInt(range);
+				s1.add(value);
+				l1.add(value);
+			}
+			for (int i = 0; i < size2; i++) {
+				int value = random.nextInt(range);
+				s2.add(value);
+				l2.add(value);
+			}
+			TreeSet<Integer> intersection = new TreeSet<>(s1);
+			intersection.retainAll(s2);
+
+			assertEquals(s1.size(), l1.getCardinality());
+			assertArrayEquals(s1.stream().mapToInt(Integer::intValue).toArray(), l1.toArray());
+			assertEquals(intersection.size(), l1.andCardinality(l2));
+			assertEquals(!intersection.isEmpty(), l1.intersects(l2));
+			assertArrayEquals(intersection.stream().mapToInt(Integer::intValue).toArray(), l1.and(l2).toArray());
+			assertArrayEquals(intersection.stream().mapToInt(Integer::intValue).toArray(), l2.and(l1).toArray());
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package models.matcher;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import models.matcher.DataFrame.FeatureColumn;
+
+/**
+ * Test on the {@link DataFrame} class
+ *
+ */
+public class DataFrameTest {
+
+	@Test
+	public void testAddAndGrow() {
+		DataFrame df = frame(100);
+		assertEquals(100, df.size());
+		assertEquals(99.0, df.getValue(FeatureColumn.JSDs, 99), 0);
+		assertEquals("c3", df.getCatalogAttribute(13));
+		assertEquals("s1", df.getSourceAttribute(13));
+		assertEquals(df.getDictionary().getId("s1"), df.getSourceAttributeId(13));
+	}
+
+	@Test
+	public void testLogicalDeletionAndCompaction() {
+		DataFrame df = frame(5);
+		// indexes do not change until compaction
+		df.removeByIndexes(Arrays.asList(1, 3));
+		df.removeByIndex(4);
+		assertEquals(2, df.size());
+		assertArrayEquals(new double[] { 0, 2 }, df.getColumn(FeatureColumn.JSDs), 0);
+		assertEquals("c2", df.getCatalogAttribute(1));
+		assertEquals(Arrays.asList(0, 2), df.getSourceRanges());
+	}
+
+	@Test
+	public void testColumnsAreSharedAndStillGrowable() {
+		DataFrame df = frame(3);
+		double[] column = df.getColumn(FeatureColumn.MIc);
+		assertSame(column, df.getColumn(FeatureColumn.MIc));
+		df.addRow(features(3), "c3", "s3");
+		assertArrayEquals(new double[] { 0, 1, 2, 3 }, df.getColumn(FeatureColumn.MIc), 0);
+	}
+
+	private static DataFrame frame(int size) {
+		DataFrame df = new DataFrame();
+		for (int i = 0; i < size; i++)
+			df.addRow(features(i), "c" + (i % 10), "s" + (i / 10));
+		return df;
+	}
+
+	private static Features features(double value) {
+		Features features = new Features();
+		features.setSourceJSD(value);
+		features.setCategoryMI(value);
+		return features;
+	}
+}
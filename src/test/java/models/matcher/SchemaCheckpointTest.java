@@ -0,0 +1,83 @@
+package models.matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test on the {@link SchemaCheckpoint} class
+ *
+ */
+public class SchemaCheckpointTest {
+
+	private Path folder;
+
+	@Before
+	public void setUp() throws IOException {
+		this.folder = Files.createTempDirectory("checkpoints");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.list(this.folder)) {
+			for (Path file : (Iterable<Path>) files::iterator)
+				Files.delete(file);
+		}
+		Files.delete(this.folder);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Schema schema = new Schema("a.com");
+		AttributeDictionary dictionary = schema.getDictionary();
+		int brand = dictionary.getId("brand", "a.com");
+		int unmatched = dictionary.getId("color", "a.com");
+		int brandB = dictionary.getId("marca", "b.com");
+		schema.putAttribute(brand, brand);
+		schema.putAttribute(brandB, brand);
+		schema.putMatchLinkage(brandB, 7);
+		schema.setTotalLinkage(Collections.singletonMap("b.com", 12));
+
+		Path path = this.folder.resolve("checkpoint.bin");
+		new SchemaCheckpoint("camera", Arrays.asList("a.com", "b.com", "c.com"), 2, schema).write(path);
+		assertFalse(Files.exists(path.resolveSibling("checkpoint.bin.tmp")));
+
+		SchemaCheckpoint checkpoint = SchemaCheckpoint.read(path);
+		assertEquals("camera", checkpoint.getCategory());
+		assertEquals(Arrays.asList("a.com", "b.com", "c.com"), checkpoint.getOrderedWebsites());
+		assertEquals(2, checkpoint.getCompletedSources());
+		Schema read = checkpoint.getSchema();
+		assertEquals("a.com", read.getSourceCatalogueName());
+		assertEquals(brandB, read.getDictionary().findId("marca###b.com"));
+		assertEquals(unmatched, read.getDictionary().findId("color###a.com"));
+		assertEquals(schema.getAttributesMap(), read.getAttributesMap());
+		assertEquals(schema.getMatchLinkage(), read.getMatchLinkage());
+		assertEquals(schema.getTotalLinkage(), read.getTotalLinkage());
+		assertEquals(schema.schema2Clusters(), read.schema2Clusters());
+	}
+
+	@Test
+	public void testOverwrite() throws IOException {
+		Path path = this.folder.resolve("checkpoint.bin");
+		new SchemaCheckpoint("camera", Arrays.asList("a.com"), 1, new Schema("a.com")).write(path);
+		new SchemaCheckpoint("camera", Arrays.asList("a.com", "b.com"), 2, new Schema("a.com")).write(path);
+		assertEquals(2, SchemaCheckpoint.read(path).getCompletedSources());
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotACheckpoint() throws IOException {
+		Path path = this.folder.resolve("other.bin");
+		Files.write(path, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		SchemaCheckpoint.read(path);
+	}
+}
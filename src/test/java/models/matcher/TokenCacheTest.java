@@ -0,0 +1,40 @@
+package models.matcher;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Test on the {@link TokenCache} class
+ *
+ */
+public class TokenCacheTest {
+
+	@Test
+	public void testTokensShareDictionary() {
+		TokenCache cache = new TokenCache();
+		int[] tokens = cache.getTokens("16 GB###black");
+		assertArrayEquals(new int[] { cache.getId("16"), cache.getId("GB"), cache.getId("black") }, tokens);
+		assertArrayEquals(new int[] { cache.getId("black"), cache.getId("16") }, cache.getTokens("black  16"));
+		assertEquals(3, cache.size());
+		assertEquals("black".hashCode(), cache.getHash(cache.getId("black")));
+	}
+
+	@Test
+	public void testValuesAreTokenizedOnce() {
+		TokenCache cache = new TokenCache();
+		assertSame(cache.getTokens("a b"), cache.getTokens("a b"));
+		assertSame(cache.getValues("a b###c"), cache.getValues("a b###c"));
+		assertArrayEquals(new int[] { cache.getId("a b"), cache.getId("c") }, cache.getValues("a b###c"));
+	}
+
+	@Test
+	public void testEmptyTokensAreKept() {
+		TokenCache cache = new TokenCache();
+		// same as String.split(regex, -1)
+		assertEquals(2, cache.getTokens("###").length);
+		assertEquals(1, cache.getTokens("").length);
+	}
+}
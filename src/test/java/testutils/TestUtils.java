@@ -1,9 +1,12 @@
 package testutils;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 
 import model.AbstractProductPage.Specifications;
 import model.SourceProductPage;
@@ -63,5 +66,49 @@ public class TestUtils {
 		}
 		return sourceProductPage;
 	}
-	
+
+	/**
+	 * Random linked pages with attributes a1 (catalog, values may be merged with
+	 * "###") and a2 (source), with words from a vocabulary of random size.
+	 * Values may also be empty or start and end with separators.
+	 * 
+	 * @param words
+	 *            all the words that can be used
+	 */
+	public static List<Entry<Specifications, SourceProductPage>> randomLinkedPages(Random random, String[] words) {
+		int vocabulary = 1 + random.nextInt(words.length);
+		List<Entry<Specifications, SourceProductPage>> docs = new ArrayList<>();
+		for (int i = 1 + random.nextInt(60); i > 0; i--) {
+			String catalogValue = randomValue(random, words, vocabulary, random.nextBoolean() ? "###" : " ");
+			String sourceValue = randomValue(random, words, vocabulary, " ");
+			docs.add(entry(spec(entry("a1", catalogValue)), spp(entry("a2", sourceValue))));
+		}
+		return docs;
+	}
+
+	/**
+	 * @return random words, as used by {@link #randomLinkedPages(Random, String[])}
+	 */
+	public static String[] randomWords(Random random, int size) {
+		String[] words = new String[size];
+		for (int i = 0; i < words.length; i++)
+			words[i] = Integer.toString(random.nextInt(100000), 36);
+		return words;
+	}
+
+	private static String randomValue(Random random, String[] words, int vocabulary, String separator) {
+		int edgeCase = random.nextInt(20);
+		if (edgeCase == 0)
+			return "";
+		if (edgeCase == 1)
+			return separator;
+		StringBuilder value = new StringBuilder(words[random.nextInt(vocabulary)]);
+		for (int k = random.nextInt(3); k > 0; k--)
+			value.append(separator).append(words[random.nextInt(vocabulary)]);
+		if (edgeCase == 2)
+			value.insert(0, separator);
+		if (edgeCase == 3)
+			value.append(separator);
+		return value.toString();
+	}
 }
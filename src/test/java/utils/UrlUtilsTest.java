@@ -16,4 +16,9 @@ public class UrlUtilsTest {
 		assertEquals("www.prova--s--T.com", UrlUtils.getDomain("www.prova--s--T.com"));
 	}
 
+	@Test
+	public void testGetDomainWithUnderscore() {
+		assertEquals("web2_linked.com", UrlUtils.getDomain("web2_linked.com/0"));
+	}
+
 }